@@ -0,0 +1,176 @@
+import java.util.Arrays;
+import java.util.Stack;
+
+/**
+ * This class finds hop distances with a breadth-first search that grows from
+ * both endpoints at once. Each step expands one whole level of whichever
+ * frontier is smaller, and the search stops as soon as the two sides meet. On a
+ * graph with average degree d and distance k this visits about d^(k/2) vertices
+ * from each side instead of d^k from one.
+ *
+ * @author amandhillon
+ *
+ */
+public final class BidirectionalSearch {
+
+    /**
+     * Hop limit that never cuts a search short.
+     */
+    public static final int NO_LIMIT = Integer.MAX_VALUE;
+
+    /**
+     * This class only has static methods.
+     */
+    private BidirectionalSearch() {
+    }
+
+    /**
+     * Determines the number of edges on a shortest path between two vertices.
+     *
+     * @param <T>         is type of vertex.
+     * @param graph       is the graph to search.
+     * @param origin      is the beginning vertex.
+     * @param destination is the ending vertex.
+     * @param maxHops     is the largest distance of interest.
+     * @return the distance, or -1 if the vertices are not connected by a path of
+     *         at most maxHops edges.
+     */
+    public static <T> int distance(IndexedGraph<T> graph, T origin, T destination, int maxHops) {
+        return shortestPath(graph, origin, destination, maxHops, null);
+    }
+
+    /**
+     * Determines the number of edges on a shortest path between two vertices, and
+     * pushes the path so that the origin is on top.
+     *
+     * @param <T>         is type of vertex.
+     * @param graph       is the graph to search.
+     * @param origin      is the beginning vertex.
+     * @param destination is the ending vertex.
+     * @param maxHops     is the largest distance of interest.
+     * @param path        receives the vertices of the path, may be null.
+     * @return the distance, or -1 if the vertices are not connected by a path of
+     *         at most maxHops edges.
+     */
+    public static <T> int shortestPath(IndexedGraph<T> graph, T origin, T destination, int maxHops,
+            Stack<T> path) {
+        int start = graph.indexOf(origin);
+        int target = graph.indexOf(destination);
+        if (start < 0 || target < 0 || maxHops < 0) {
+            return -1;
+        }
+        if (start == target) {
+            if (path != null) {
+                path.push(origin);
+            }
+            return 0;
+        }
+
+        TraversalScratch scratch = TraversalScratch.begin(graph.indexBound());
+        try {
+            int[] forward = scratch.queue;
+            int[] backward = scratch.backwardQueue;
+            int[] predecessor = scratch.predecessor;
+            int[] side = scratch.distance;
+            int forwardHead = 0;
+            int forwardTail = 0;
+            int backwardHead = 0;
+            int backwardTail = 0;
+            int forwardDepth = 0;
+            int backwardDepth = 0;
+
+            scratch.visit(start);
+            side[start] = 0;
+            predecessor[start] = -1;
+            forward[forwardTail++] = start;
+            scratch.visit(target);
+            side[target] = 1;
+            predecessor[target] = -1;
+            backward[backwardTail++] = target;
+
+            while (forwardHead < forwardTail && backwardHead < backwardTail) {
+                if (forwardDepth + backwardDepth >= maxHops) {
+                    return -1;
+                }
+                boolean growForward = forwardTail - forwardHead <= backwardTail - backwardHead;
+                int[] queue = growForward ? forward : backward;
+                int head = growForward ? forwardHead : backwardHead;
+                int tail = growForward ? forwardTail : backwardTail;
+                int mySide = growForward ? 0 : 1;
+                int levelEnd = tail;
+                int meetNear = -1;
+                int meetFar = -1;
+
+                for (; head < levelEnd && meetNear < 0; head++) {
+                    int v = queue[head];
+                    int[] adj = graph.adjacency(v);
+                    int from = graph.adjacencyStart(v);
+                    int to = from + graph.degree(v);
+                    for (int i = from; i < to; i++) {
+                        int n = adj[i];
+                        if (scratch.visit(n)) {
+                            side[n] = mySide;
+                            predecessor[n] = v;
+                            queue[tail++] = n;
+                        } else if (side[n] != mySide) {
+                            meetNear = v;
+                            meetFar = n;
+                            break;
+                        }
+                    }
+                }
+
+                if (meetNear >= 0) {
+                    if (path != null) {
+                        int forwardEnd = growForward ? meetNear : meetFar;
+                        int backwardEnd = growForward ? meetFar : meetNear;
+                        pushPath(graph, predecessor, forwardEnd, backwardEnd, path);
+                    }
+                    return forwardDepth + backwardDepth + 1;
+                }
+
+                if (growForward) {
+                    forwardHead = head;
+                    forwardTail = tail;
+                    forwardDepth++;
+                } else {
+                    backwardHead = head;
+                    backwardTail = tail;
+                    backwardDepth++;
+                }
+            }
+            return -1;
+        } finally {
+            scratch.end();
+        }
+    }
+
+    /**
+     * Helper function that pushes the path through the meeting edge so that the
+     * origin ends up on top.
+     *
+     * @param <T>         is type of vertex.
+     * @param graph       is the graph searched.
+     * @param predecessor holds the parent of each visited index on its side.
+     * @param forwardEnd  is the meeting vertex reached from the origin.
+     * @param backwardEnd is the meeting vertex reached from the destination.
+     * @param path        receives the vertices of the path.
+     */
+    private static <T> void pushPath(IndexedGraph<T> graph, int[] predecessor, int forwardEnd, int backwardEnd,
+            Stack<T> path) {
+        int[] reversed = new int[16];
+        int count = 0;
+        for (int v = backwardEnd; v >= 0; v = predecessor[v]) {
+            if (count == reversed.length) {
+                reversed = Arrays.copyOf(reversed, count * 2);
+            }
+            reversed[count++] = v;
+        }
+        for (int i = count - 1; i >= 0; i--) {
+            path.push(graph.labelAt(reversed[i]));
+        }
+        for (int v = forwardEnd; v >= 0; v = predecessor[v]) {
+            path.push(graph.labelAt(v));
+        }
+    }
+}
@@ -0,0 +1,359 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+
+/**
+ * This class is a lazy breadth-first traversal. Vertices come out in the same
+ * order as from getBreadthFirstTraversal, but the search only goes on when the
+ * next vertex is asked for, and only until it finds one. So the first results
+ * are available right away, and a caller that stops early never pays for the
+ * rest of the component. The traversal can stop at a maximum depth and after a
+ * maximum number of results.
+ *
+ * The visited vertices are kept in a hash set of their own, sized to what the
+ * traversal has reached instead of to the graph. The graph should not change
+ * while the traversal is in progress.
+ *
+ * @author amandhillon
+ *
+ * @param <T> is type of vertex.
+ */
+abstract class BreadthFirstIterator<T> implements Iterator<T> {
+
+    /**
+     * Indices of the vertices reached so far.
+     */
+    private final LongIntHashMap visited = new LongIntHashMap(-1);
+
+    /**
+     * Depth below which vertices are expanded.
+     */
+    private final int maxDepth;
+
+    /**
+     * Number of vertices that may still be returned.
+     */
+    private int remaining;
+
+    /**
+     * Depth of the vertex being expanded.
+     */
+    private int depth;
+
+    /**
+     * Queue position where the level after the one being expanded starts.
+     */
+    private int levelEnd;
+
+    /**
+     * Queue position of the vertex being expanded.
+     */
+    protected int expanding;
+
+    /**
+     * Queue position of the next vertex to return.
+     */
+    protected int head;
+
+    /**
+     * Queue position after the last reached vertex.
+     */
+    protected int tail;
+
+    /**
+     * Constructor for a traversal.
+     *
+     * @param maxDepth   is the greatest number of edges between the origin and a
+     *                   returned vertex.
+     * @param maxResults is the greatest number of vertices to return.
+     * @throws IllegalArgumentException if a limit is negative.
+     */
+    protected BreadthFirstIterator(int maxDepth, int maxResults) {
+        if (maxDepth < 0 || maxResults < 0) {
+            throw new IllegalArgumentException("negative limit " + Math.min(maxDepth, maxResults));
+        }
+        this.maxDepth = maxDepth;
+        this.remaining = maxResults;
+    }
+
+    /**
+     * Creates a traversal of an indexed graph.
+     *
+     * @param <T>        is type of vertex.
+     * @param graph      is the graph to traverse.
+     * @param origin     is the beginning of vertex.
+     * @param maxDepth   is the greatest depth to return.
+     * @param maxResults is the greatest number of vertices to return.
+     * @return the traversal, empty if origin is not in the graph.
+     */
+    static <T> BreadthFirstIterator<T> of(IndexedGraph<T> graph, T origin, int maxDepth, int maxResults) {
+        return new Indexed<T>(graph, graph.indexOf(origin), maxDepth, maxResults);
+    }
+
+    /**
+     * Creates a traversal of a graph of vertex objects.
+     *
+     * @param <T>        is type of vertex.
+     * @param origin     is the vertex to start from, or null if it is not in the
+     *                   graph.
+     * @param maxDepth   is the greatest depth to return.
+     * @param maxResults is the greatest number of vertices to return.
+     * @param locks      gives the lock to hold while reading the edges of a
+     *                   vertex, or is null if the graph needs no locking.
+     * @return the traversal, empty if origin is null.
+     */
+    static <T> BreadthFirstIterator<T> of(VertexInterface<T> origin, int maxDepth, int maxResults,
+            Function<T, Lock> locks) {
+        return new Linked<T>(origin, maxDepth, maxResults, locks);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() {
+        if (remaining <= 0) {
+            return false;
+        }
+        while (head == tail) {
+            if (expanding == tail) {
+                return false;
+            }
+            if (expanding == levelEnd) {
+                depth++;
+                levelEnd = tail;
+            }
+            if (depth >= maxDepth) {
+                return false;
+            }
+            if (scan(expanding)) {
+                expanding++;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        remaining--;
+        return labelAt(head++);
+    }
+
+    /**
+     * Helper function that marks a vertex as reached.
+     *
+     * @param index is the index of the vertex.
+     * @return true if the vertex was not reached before.
+     */
+    protected boolean visit(int index) {
+        if (visited.containsKey(index)) {
+            return false;
+        }
+        visited.put(index, 0);
+        return true;
+    }
+
+    /**
+     * Helper function that starts the queue with the origin.
+     */
+    protected void started() {
+        levelEnd = tail;
+    }
+
+    /**
+     * Goes on through the neighbors of the vertex at a queue position and appends
+     * the unreached ones to the queue, stopping once it has appended some.
+     *
+     * @param position is the position in the queue.
+     * @return true if all neighbors of the vertex have been looked at.
+     */
+    protected abstract boolean scan(int position);
+
+    /**
+     * Gets the vertex at a queue position.
+     *
+     * @param position is the position in the queue.
+     * @return the vertex.
+     */
+    protected abstract T labelAt(int position);
+
+    /**
+     * This is the traversal of an indexed graph, queueing vertex indices.
+     */
+    private static final class Indexed<T> extends BreadthFirstIterator<T> {
+
+        /**
+         * The graph.
+         */
+        private final IndexedGraph<T> graph;
+
+        /**
+         * The queue of reached indices.
+         */
+        private int[] queue = new int[16];
+
+        /**
+         * Number of neighbors of the vertex being expanded looked at so far.
+         */
+        private int cursor;
+
+        /**
+         * Constructor for the traversal of an indexed graph.
+         *
+         * @param graph      is the graph.
+         * @param start      is the index of the origin, or -1.
+         * @param maxDepth   is the greatest depth to return.
+         * @param maxResults is the greatest number of vertices to return.
+         */
+        private Indexed(IndexedGraph<T> graph, int start, int maxDepth, int maxResults) {
+            super(maxDepth, maxResults);
+            this.graph = graph;
+            if (start >= 0) {
+                visit(start);
+                queue[tail++] = start;
+            }
+            started();
+        }
+
+        /**
+         * {@inheritDoc} A vertex is scanned until its first unreached neighbor.
+         */
+        @Override
+        protected boolean scan(int position) {
+            int v = queue[position];
+            int[] adj = graph.adjacency(v);
+            int to = graph.adjacencyStart(v) + graph.degree(v);
+            for (int i = graph.adjacencyStart(v) + cursor; i < to; i++) {
+                int n = adj[i];
+                if (visit(n)) {
+                    if (tail == queue.length) {
+                        queue = Arrays.copyOf(queue, tail * 2);
+                    }
+                    queue[tail++] = n;
+                    if (i + 1 < to) {
+                        cursor = i + 1 - graph.adjacencyStart(v);
+                        return false;
+                    }
+                }
+            }
+            cursor = 0;
+            return true;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected T labelAt(int position) {
+            return graph.labelAt(queue[position]);
+        }
+    }
+
+    /**
+     * This is the traversal of a graph of vertex objects, queueing the vertices.
+     * Each vertex is scanned whole, so no neighbor iterator is kept between two
+     * calls, and is dropped from the queue once it is scanned.
+     */
+    private static final class Linked<T> extends BreadthFirstIterator<T> {
+
+        /**
+         * The queue of reached vertices, used as a ring.
+         */
+        private VertexInterface<?>[] queue = new VertexInterface<?>[16];
+
+        /**
+         * Gives the lock to hold while scanning a vertex, or null.
+         */
+        private final Function<T, Lock> locks;
+
+        /**
+         * Constructor for the traversal of a graph of vertex objects.
+         *
+         * @param origin     is the origin, or null.
+         * @param maxDepth   is the greatest depth to return.
+         * @param maxResults is the greatest number of vertices to return.
+         * @param locks      gives the lock to hold while scanning a vertex, or
+         *                   null.
+         */
+        private Linked(VertexInterface<T> origin, int maxDepth, int maxResults, Function<T, Lock> locks) {
+            super(maxDepth, maxResults);
+            this.locks = locks;
+            if (origin != null) {
+                visit(origin.getIndex());
+                queue[tail++] = origin;
+            }
+            started();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected boolean scan(int position) {
+            VertexInterface<T> v = vertexAt(position);
+            Lock lock = locks == null ? null : locks.apply(v.getLabel());
+            if (lock != null) {
+                lock.lock();
+            }
+            try {
+                Iterator<VertexInterface<T>> neighbors = v.getNeighborIterator();
+                while (neighbors.hasNext()) {
+                    VertexInterface<T> n = neighbors.next();
+                    if (visit(n.getIndex())) {
+                        if (tail - position == queue.length) {
+                            grow(position);
+                        }
+                        queue[tail++ & (queue.length - 1)] = n;
+                    }
+                }
+            } finally {
+                if (lock != null) {
+                    lock.unlock();
+                }
+            }
+            queue[position & (queue.length - 1)] = null;
+            return true;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected T labelAt(int position) {
+            return vertexAt(position).getLabel();
+        }
+
+        /**
+         * Helper function that gets the vertex at a queue position.
+         *
+         * @param position is the position in the queue.
+         * @return the vertex.
+         */
+        @SuppressWarnings("unchecked")
+        private VertexInterface<T> vertexAt(int position) {
+            return (VertexInterface<T>) queue[position & (queue.length - 1)];
+        }
+
+        /**
+         * Helper function that doubles the ring, keeping the queued vertices at
+         * their positions.
+         *
+         * @param first is the position of the first queued vertex.
+         */
+        private void grow(int first) {
+            VertexInterface<?>[] larger = new VertexInterface<?>[queue.length * 2];
+            for (int p = first; p < tail; p++) {
+                larger[p & (larger.length - 1)] = queue[p & (queue.length - 1)];
+            }
+            queue = larger;
+        }
+    }
+}
@@ -0,0 +1,461 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * This class builds a MasonConnect network from a users file and an edge-list
+ * file, such as a nightly export. Both files are split into chunks that are
+ * mapped and parsed in parallel. The friendships are then packed into longs,
+ * sorted and deduplicated in one pass, and the adjacency arrays are built in one
+ * go, so no friendship goes through createFriendship and the import time grows
+ * with the size of the files instead of with the degrees.
+ *
+ * <pre>
+ * users CSV: id,name,status    (the status is the rest of the line)
+ * edges CSV: id,id
+ * edges BINARY: long id, long id  (big-endian, 16 bytes per friendship)
+ * </pre>
+ *
+ * CSV lines that do not start with a digit, such as a header, are skipped.
+ * Friendships of a user with themself are left out. A friendship with a user
+ * that is not in the users file, or an id too large for a long, fails the
+ * import, so a mismatched pair of files cannot load as a smaller network.
+ *
+ * @author amandhillon
+ *
+ */
+public final class BulkLoader {
+
+    /**
+     * The formats of an edge-list file.
+     */
+    public enum EdgeFormat {
+        /**
+         * One "id,id" line per friendship.
+         */
+        CSV,
+
+        /**
+         * Two big-endian longs per friendship.
+         */
+        BINARY
+    }
+
+    /**
+     * Size of the chunks the files are parsed in.
+     */
+    private static final int CHUNK_SIZE = 1 << 24;
+
+    /**
+     * Size of a friendship in a binary edge-list file.
+     */
+    private static final int BINARY_EDGE_SIZE = 16;
+
+    /**
+     * Number of bytes read when looking for the end of a line at a chunk border.
+     */
+    private static final int PROBE_SIZE = 4096;
+
+    /**
+     * This class only has static methods.
+     */
+    private BulkLoader() {
+    }
+
+    /**
+     * Loads a network into a new MasonConnect backed by a CompactGraph.
+     *
+     * @param users  is the users file.
+     * @param edges  is the edge-list file.
+     * @param format is the format of the edge-list file.
+     * @return the network.
+     * @throws IOException if a file cannot be read, is malformed, lists a user
+     *                     id twice or has a friendship with an unknown user.
+     */
+    public static MasonConnect load(Path users, Path edges, EdgeFormat format) throws IOException {
+        Profile[] profiles = readUsers(users);
+        int n = profiles.length;
+        LongIntHashMap index = new LongIntHashMap(n, -1);
+        for (int i = 0; i < n; i++) {
+            if (index.put(profiles[i].getId(), i) != -1) {
+                throw new IOException("user id " + profiles[i].getId() + " appears twice in " + users);
+            }
+        }
+
+        long[] keys = readEdges(edges, format, index);
+        Arrays.parallelSort(keys);
+        int unique = 0;
+        for (int k = 0; k < keys.length; k++) {
+            if (k == 0 || keys[k] != keys[k - 1]) {
+                keys[unique++] = keys[k];
+            }
+        }
+
+        int[] offsets = new int[n + 1];
+        for (int k = 0; k < unique; k++) {
+            offsets[(int) (keys[k] >>> 32) + 1]++;
+            offsets[(int) keys[k] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] targets = new int[offsets[n]];
+        int[] fill = Arrays.copyOf(offsets, n);
+        for (int k = 0; k < unique; k++) {
+            int low = (int) (keys[k] >>> 32);
+            int high = (int) keys[k];
+            targets[fill[low]++] = high;
+            targets[fill[high]++] = low;
+        }
+        return new MasonConnect(CompactGraph.fromAdjacency(profiles, offsets, targets));
+    }
+
+    /**
+     * Helper function that parses the users file in parallel chunks.
+     *
+     * @param file is the users file.
+     * @return the profiles in file order.
+     * @throws IOException if the file cannot be read or is malformed.
+     */
+    private static Profile[] readUsers(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] bounds = lineChunks(channel);
+            List<List<Profile>> parts = parallel(bounds.length - 1, c -> {
+                ByteBuffer chunk = map(channel, bounds[c], bounds[c + 1]);
+                List<Profile> profiles = new ArrayList<Profile>();
+                byte[] line = new byte[256];
+                while (chunk.hasRemaining()) {
+                    int length = nextLine(chunk);
+                    if (length > line.length) {
+                        line = new byte[length];
+                    }
+                    chunk.get(line, 0, length);
+                    skipNewline(chunk);
+                    if (length > 0 && isDigit(line[0])) {
+                        profiles.add(parseUser(line, length, file));
+                    }
+                }
+                return profiles;
+            });
+            int total = 0;
+            for (List<Profile> part : parts) {
+                total += part.size();
+            }
+            Profile[] profiles = new Profile[total];
+            int position = 0;
+            for (List<Profile> part : parts) {
+                for (Profile p : part) {
+                    profiles[position++] = p;
+                }
+            }
+            return profiles;
+        }
+    }
+
+    /**
+     * Helper function that parses the edge-list file in parallel chunks into
+     * friendships between dense user indices, each packed into a long with the
+     * smaller index in the upper half.
+     *
+     * @param file   is the edge-list file.
+     * @param format is the format of the file.
+     * @param index  maps each user id to its dense index.
+     * @return the packed friendships, possibly with duplicates.
+     * @throws IOException if the file cannot be read, is malformed or has a
+     *                     friendship with an unknown user.
+     */
+    private static long[] readEdges(Path file, EdgeFormat format, LongIntHashMap index) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] bounds;
+            if (format == EdgeFormat.BINARY) {
+                if (channel.size() % BINARY_EDGE_SIZE != 0) {
+                    throw new IOException(file + " is not a binary edge list");
+                }
+                int chunks = (int) Math.max(1, (channel.size() + CHUNK_SIZE - 1) / CHUNK_SIZE);
+                bounds = new long[chunks + 1];
+                for (int c = 1; c < chunks; c++) {
+                    bounds[c] = (long) c * CHUNK_SIZE;
+                }
+                bounds[chunks] = channel.size();
+            } else {
+                bounds = lineChunks(channel);
+            }
+            List<long[]> parts = parallel(bounds.length - 1, c -> {
+                ByteBuffer chunk = map(channel, bounds[c], bounds[c + 1]);
+                long[] keys = new long[Math.max(16, chunk.remaining() / BINARY_EDGE_SIZE)];
+                int size = 0;
+                while (chunk.hasRemaining()) {
+                    long a;
+                    long b;
+                    if (format == EdgeFormat.BINARY) {
+                        a = chunk.getLong();
+                        b = chunk.getLong();
+                    } else {
+                        if (!isDigit(chunk.get(chunk.position()))) {
+                            chunk.position(chunk.position() + nextLine(chunk));
+                            skipNewline(chunk);
+                            continue;
+                        }
+                        a = parseId(chunk, file);
+                        if (!chunk.hasRemaining() || chunk.get() != ',') {
+                            throw new IOException("malformed edge in " + file);
+                        }
+                        b = parseId(chunk, file);
+                        chunk.position(chunk.position() + nextLine(chunk));
+                        skipNewline(chunk);
+                    }
+                    int x = index.get(a);
+                    int y = index.get(b);
+                    if (x < 0 || y < 0) {
+                        throw new IOException("friendship with unknown user id " + (x < 0 ? a : b) + " in " + file);
+                    }
+                    if (x != y) {
+                        if (size == keys.length) {
+                            keys = Arrays.copyOf(keys, size * 2);
+                        }
+                        keys[size++] = ((long) Math.min(x, y) << 32) | Math.max(x, y);
+                    }
+                }
+                return Arrays.copyOf(keys, size);
+            });
+            int total = 0;
+            for (long[] part : parts) {
+                total = Math.addExact(total, part.length);
+            }
+            long[] keys = new long[total];
+            int position = 0;
+            for (long[] part : parts) {
+                System.arraycopy(part, 0, keys, position, part.length);
+                position += part.length;
+            }
+            return keys;
+        }
+    }
+
+    /**
+     * Helper function that parses one line of the users file.
+     *
+     * @param line   holds the line.
+     * @param length is the length of the line.
+     * @param file   is the users file, for messages.
+     * @return the profile.
+     * @throws IOException if the line is malformed.
+     */
+    private static Profile parseUser(byte[] line, int length, Path file) throws IOException {
+        int end = length;
+        if (line[end - 1] == '\r') {
+            end--;
+        }
+        int first = indexOf(line, 0, end, (byte) ',');
+        if (first < 0) {
+            throw new IOException("malformed user in " + file);
+        }
+        long id = 0;
+        for (int i = 0; i < first; i++) {
+            if (!isDigit(line[i])) {
+                throw new IOException("malformed user id in " + file);
+            }
+            id = appendDigit(id, line[i], file);
+        }
+        if (id == Long.MAX_VALUE) {
+            throw new IOException("user id " + id + " out of range in " + file);
+        }
+        int second = indexOf(line, first + 1, end, (byte) ',');
+        int nameEnd = second < 0 ? end : second;
+        String name = new String(line, first + 1, nameEnd - first - 1, StandardCharsets.UTF_8);
+        String status = second < 0 ? "" : new String(line, second + 1, end - second - 1, StandardCharsets.UTF_8);
+        return new Profile(id, name, status);
+    }
+
+    /**
+     * Helper function that parses a user id at the position of a chunk.
+     *
+     * @param chunk is the chunk.
+     * @param file  is the file, for messages.
+     * @return the id.
+     * @throws IOException if there is no id or it is too large for a long.
+     */
+    private static long parseId(ByteBuffer chunk, Path file) throws IOException {
+        int start = chunk.position();
+        long id = 0;
+        while (chunk.hasRemaining() && isDigit(chunk.get(chunk.position()))) {
+            id = appendDigit(id, chunk.get(), file);
+        }
+        if (chunk.position() == start) {
+            throw new IOException("malformed edge in " + file);
+        }
+        return id;
+    }
+
+    /**
+     * Helper function that appends a decimal digit to an id.
+     *
+     * @param id    is the id so far.
+     * @param digit is the ASCII digit.
+     * @param file  is the file, for messages.
+     * @return the id with the digit appended.
+     * @throws IOException if the id no longer fits in a long.
+     */
+    private static long appendDigit(long id, byte digit, Path file) throws IOException {
+        try {
+            return Math.addExact(Math.multiplyExact(id, 10), digit - '0');
+        } catch (ArithmeticException e) {
+            throw new IOException("user id out of range in " + file, e);
+        }
+    }
+
+    /**
+     * Helper function that splits a text file into chunks of about CHUNK_SIZE
+     * bytes that end after a newline.
+     *
+     * @param channel is the file.
+     * @return the start of each chunk, followed by the size of the file.
+     * @throws IOException if the file cannot be read.
+     */
+    private static long[] lineChunks(FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<Long> bounds = new ArrayList<Long>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+        long position = CHUNK_SIZE;
+        while (position < size) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            int newline = indexOf(probe.array(), 0, Math.max(read, 0), (byte) '\n');
+            if (newline < 0) {
+                position += Math.max(read, 1);
+                continue;
+            }
+            position += newline + 1;
+            if (position < size) {
+                bounds.add(position);
+            }
+            position += CHUNK_SIZE;
+        }
+        long[] result = new long[bounds.size() + 1];
+        for (int i = 0; i < bounds.size(); i++) {
+            result[i] = bounds.get(i);
+        }
+        result[bounds.size()] = size;
+        return result;
+    }
+
+    /**
+     * Helper function that maps a part of a file.
+     *
+     * @param channel is the file.
+     * @param start   is the start of the part.
+     * @param end     is the end of the part.
+     * @return the mapped part.
+     * @throws IOException if the part cannot be mapped.
+     */
+    private static MappedByteBuffer map(FileChannel channel, long start, long end) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+    }
+
+    /**
+     * Helper function that finds the length of the line at the position of a
+     * chunk, without moving the position.
+     *
+     * @param chunk is the chunk.
+     * @return the number of bytes before the newline or the end of the chunk.
+     */
+    private static int nextLine(ByteBuffer chunk) {
+        int start = chunk.position();
+        int limit = chunk.limit();
+        int i = start;
+        while (i < limit && chunk.get(i) != '\n') {
+            i++;
+        }
+        return i - start;
+    }
+
+    /**
+     * Helper function that steps over the newline at the position of a chunk.
+     *
+     * @param chunk is the chunk.
+     */
+    private static void skipNewline(ByteBuffer chunk) {
+        if (chunk.hasRemaining()) {
+            chunk.get();
+        }
+    }
+
+    /**
+     * Helper function that finds a byte in part of an array.
+     *
+     * @param bytes is the array.
+     * @param from  is the first position to look at.
+     * @param to    is one past the last position to look at.
+     * @param b     is the byte to find.
+     * @return the position of the byte, or -1.
+     */
+    private static int indexOf(byte[] bytes, int from, int to, byte b) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Helper function that checks if a byte is an ASCII digit.
+     *
+     * @param b is the byte.
+     * @return true if it is a digit.
+     */
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    /**
+     * Helper function that runs a chunk parser on every chunk in parallel.
+     *
+     * @param <R>    is the result type of the parser.
+     * @param chunks is the number of chunks.
+     * @param parser parses one chunk.
+     * @return the results in chunk order.
+     * @throws IOException if a chunk cannot be parsed.
+     */
+    private static <R> List<R> parallel(int chunks, ChunkParser<R> parser) throws IOException {
+        try {
+            return IntStream.range(0, chunks).parallel().mapToObj(c -> {
+                try {
+                    return parser.parse(c);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Parses one chunk of a file.
+     *
+     * @param <R> is the result type.
+     */
+    private interface ChunkParser<R> {
+
+        /**
+         * Parses a chunk.
+         *
+         * @param chunk is the number of the chunk.
+         * @return the result.
+         * @throws IOException if the chunk cannot be read or is malformed.
+         */
+        R parse(int chunk) throws IOException;
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * This class is an immutable reading of the counters of a cache, taken at one
+ * point in time, for sizing the cache against the queries it serves.
+ *
+ * @author amandhillon
+ *
+ */
+public final class CacheStatistics {
+
+    /**
+     * Number of lookups answered from the cache.
+     */
+    private final long hits;
+
+    /**
+     * Number of lookups that had to be computed.
+     */
+    private final long misses;
+
+    /**
+     * Number of entries dropped to make room.
+     */
+    private final long evictions;
+
+    /**
+     * Number of entries dropped because the network changed.
+     */
+    private final long invalidations;
+
+    /**
+     * Number of entries held.
+     */
+    private final int size;
+
+    /**
+     * Greatest number of entries held.
+     */
+    private final int capacity;
+
+    /**
+     * Constructor for a reading.
+     *
+     * @param hits          is the number of hits.
+     * @param misses        is the number of misses.
+     * @param evictions     is the number of evictions.
+     * @param invalidations is the number of invalidations.
+     * @param size          is the number of entries.
+     * @param capacity      is the greatest number of entries.
+     */
+    CacheStatistics(long hits, long misses, long evictions, long invalidations, int size, int capacity) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.invalidations = invalidations;
+        this.size = size;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Gets the number of lookups answered from the cache.
+     *
+     * @return the number of hits.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of lookups that had to be computed.
+     *
+     * @return the number of misses.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the share of lookups answered from the cache.
+     *
+     * @return the hit rate between 0 and 1, or 0 if there were no lookups.
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Gets the number of entries dropped to make room for newer ones.
+     *
+     * @return the number of evictions.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Gets the number of entries dropped because a mutation touched them.
+     *
+     * @return the number of invalidations.
+     */
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Gets the number of entries held.
+     *
+     * @return the size of the cache.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the greatest number of entries the cache holds.
+     *
+     * @return the capacity of the cache.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "Hits: " + hits + " Misses: " + misses + " Evictions: " + evictions + " Invalidations: "
+                + invalidations + " Size: " + size + "/" + capacity;
+    }
+}
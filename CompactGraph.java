@@ -0,0 +1,1087 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Stack;
+
+/**
+ * This is a generic undirected graph that implements the GraphInterface with
+ * primitive adjacency arrays. Every vertex label is mapped to a dense int id,
+ * and the neighbors and weights of a vertex are kept in growable int[] and
+ * double[] arrays instead of a linked list of Edge objects.
+ *
+ * @author amandhillon
+ *
+ * @param <T> is type of Graph.
+ */
+public class CompactGraph<T> implements GraphInterface<T>, IndexedGraph<T> {
+
+    /**
+     * Initial number of vertex slots.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Initial length of a neighbor array once a vertex gets its first edge.
+     */
+    private static final int INITIAL_DEGREE = 4;
+
+    /**
+     * Length of neighbor array from which on a row is covered by the edge index.
+     */
+    private static final int INDEXED_DEGREE = 32;
+
+    /**
+     * Shared neighbor array for vertices without edges.
+     */
+    private static final int[] NO_NEIGHBORS = new int[0];
+
+    /**
+     * Shared weight array for vertices without edges.
+     */
+    private static final double[] NO_WEIGHTS = new double[0];
+
+    /**
+     * Maps each vertex label to its dense id.
+     */
+    protected Map<T, Integer> ids;
+
+    /**
+     * Label of each id, null if the id is free.
+     */
+    protected Object[] labels;
+
+    /**
+     * Neighbor ids of each vertex, only the first degrees[id] entries are used.
+     */
+    protected int[][] neighbors;
+
+    /**
+     * Edge weights of each vertex, parallel to neighbors.
+     */
+    protected double[][] weights;
+
+    /**
+     * Number of neighbors of each vertex.
+     */
+    protected int[] degrees;
+
+    /**
+     * Position of each neighbor in the rows whose arrays reached INDEXED_DEGREE,
+     * keyed by the vertex id in the upper and the neighbor id in the lower half.
+     * Shorter rows are scanned, which is faster than hashing at that size.
+     */
+    protected LongIntHashMap edgePositions;
+
+    /**
+     * One past the largest id handed out so far.
+     */
+    protected int bound;
+
+    /**
+     * Ids of removed vertices that can be handed out again.
+     */
+    private int[] freeIds;
+
+    /**
+     * Number of entries in freeIds.
+     */
+    private int freeCount;
+
+    /**
+     * Represents the number of edges in the graph, counted the same way as Graph.
+     */
+    protected int numOfEdges;
+
+    /**
+     * Default constructor for compact graph.
+     */
+    public CompactGraph() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructor for compact graph that reserves room for a number of vertices.
+     *
+     * @param expectedVertices is the number of vertices to reserve room for.
+     */
+    public CompactGraph(int expectedVertices) {
+        int capacity = Math.max(expectedVertices, 1);
+        this.ids = new HashMap<T, Integer>();
+        this.labels = new Object[capacity];
+        this.neighbors = new int[capacity][];
+        this.weights = new double[capacity][];
+        this.degrees = new int[capacity];
+        this.edgePositions = new LongIntHashMap(-1);
+        this.freeIds = new int[INITIAL_DEGREE];
+        this.bound = 0;
+        this.freeCount = 0;
+        this.numOfEdges = 0;
+    }
+
+    /**
+     * Builds a compact graph in one pass from compressed-sparse-row adjacency. The
+     * neighbors of vertex i are targets[offsets[i]] to targets[offsets[i + 1] -
+     * 1], and every edge must appear in the rows of both of its vertices, once,
+     * and not as a loop. All edges get weight 0.
+     *
+     * @param <T>     is type of Graph.
+     * @param labels  is the label of each vertex, all different.
+     * @param offsets is the start of each row in targets, with one extra entry.
+     * @param targets are the neighbor indices, row after row.
+     * @return the graph.
+     * @throws IllegalArgumentException if two vertices have the same label.
+     */
+    public static <T> CompactGraph<T> fromAdjacency(T[] labels, int[] offsets, int[] targets) {
+        return fromAdjacency(labels, offsets, targets, null);
+    }
+
+    /**
+     * Builds a compact graph in one pass from compressed-sparse-row adjacency
+     * with edge weights. The weight of each edge must be the same in the rows of
+     * both of its vertices.
+     *
+     * @param <T>     is type of Graph.
+     * @param labels  is the label of each vertex, all different.
+     * @param offsets is the start of each row in targets, with one extra entry.
+     * @param targets are the neighbor indices, row after row.
+     * @param weights are the edge weights, parallel to targets, or null to give
+     *                all edges weight 0.
+     * @return the graph.
+     * @throws IllegalArgumentException if two vertices have the same label.
+     */
+    public static <T> CompactGraph<T> fromAdjacency(T[] labels, int[] offsets, int[] targets, double[] weights) {
+        int n = labels.length;
+        CompactGraph<T> graph = new CompactGraph<T>(n);
+        graph.ids = new HashMap<T, Integer>(Math.max(16, (int) (n / 0.75f) + 1));
+        for (int i = 0; i < n; i++) {
+            if (graph.ids.put(labels[i], i) != null) {
+                throw new IllegalArgumentException("duplicate vertex " + labels[i]);
+            }
+            int from = offsets[i];
+            int degree = offsets[i + 1] - from;
+            graph.labels[i] = labels[i];
+            graph.degrees[i] = degree;
+            if (degree == 0) {
+                graph.neighbors[i] = NO_NEIGHBORS;
+                graph.weights[i] = NO_WEIGHTS;
+            } else {
+                graph.neighbors[i] = Arrays.copyOfRange(targets, from, from + degree);
+                graph.weights[i] = weights == null ? new double[degree]
+                        : Arrays.copyOfRange(weights, from, from + degree);
+                if (graph.isIndexed(i)) {
+                    for (int k = 0; k < degree; k++) {
+                        graph.edgePositions.put(edgeKey(i, targets[from + k]), k);
+                    }
+                }
+            }
+        }
+        graph.bound = n;
+        graph.numOfEdges = offsets[n];
+        return graph;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addVertex(T vertexLabel) {
+        if (ids.containsKey(vertexLabel)) {
+            return false;
+        }
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            if (bound == labels.length) {
+                growVertices();
+            }
+            id = bound++;
+        }
+        labels[id] = vertexLabel;
+        neighbors[id] = NO_NEIGHBORS;
+        weights[id] = NO_WEIGHTS;
+        degrees[id] = 0;
+        ids.put(vertexLabel, id);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VertexInterface<T> removeVertex(T vertexLabel) {
+        Integer boxed = ids.remove(vertexLabel);
+        if (boxed == null) {
+            return null;
+        }
+        int id = boxed;
+        int[] adj = neighbors[id];
+        boolean indexed = isIndexed(id);
+        for (int i = 0; i < degrees[id]; i++) {
+            removeNeighbor(adj[i], id);
+            if (indexed) {
+                edgePositions.remove(edgeKey(id, adj[i]));
+            }
+            numOfEdges = numOfEdges - 2;
+        }
+        release(id);
+
+        return new Vertex<T>(vertexLabel);
+    }
+
+    /**
+     * {@inheritDoc} The vertices are removed in one pass: an edge between two
+     * removed vertices is dropped with them, and every other edge costs one
+     * constant-time removal from the surviving neighbor.
+     */
+    @Override
+    public boolean[] removeVertices(List<T> vertexLabels) {
+        boolean[] removed = new boolean[vertexLabels.size()];
+        int[] doomed = new int[removed.length];
+        int count = 0;
+        TraversalScratch scratch = TraversalScratch.begin(bound);
+        try {
+            for (int i = 0; i < removed.length; i++) {
+                Integer boxed = ids.remove(vertexLabels.get(i));
+                if (boxed != null) {
+                    removed[i] = true;
+                    doomed[count++] = boxed;
+                    scratch.visit(boxed);
+                }
+            }
+            for (int d = 0; d < count; d++) {
+                int id = doomed[d];
+                int[] adj = neighbors[id];
+                boolean indexed = isIndexed(id);
+                for (int i = 0; i < degrees[id]; i++) {
+                    int n = adj[i];
+                    if (scratch.isVisited(n)) {
+                        numOfEdges = numOfEdges - 1;
+                    } else {
+                        removeNeighbor(n, id);
+                        numOfEdges = numOfEdges - 2;
+                    }
+                    if (indexed) {
+                        edgePositions.remove(edgeKey(id, n));
+                    }
+                }
+            }
+            for (int d = 0; d < count; d++) {
+                release(doomed[d]);
+            }
+        } finally {
+            scratch.end();
+        }
+        return removed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addEdge(T begin, T end, double edgeWeight) {
+        int b = indexOf(begin);
+        int e = indexOf(end);
+        if (b < 0 || e < 0 || b == e || positionOf(b, e) >= 0) {
+            return false;
+        }
+        appendNeighbor(b, e, edgeWeight);
+        appendNeighbor(e, b, edgeWeight);
+        numOfEdges = numOfEdges + 2;
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addEdge(T begin, T end) {
+        return addEdge(begin, end, 0.0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean removeEdge(T begin, T end, double edgeWeight) {
+        return removeEdge(begin, end, false, edgeWeight);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean removeEdge(T begin, T end) {
+        return removeEdge(begin, end, true, 0.0);
+    }
+
+    /**
+     * Helper function that removes an edge if it has the given weight, or
+     * whatever its weight.
+     *
+     * @param begin      is the beginning vertex of the edge.
+     * @param end        is the end vertex of the edge.
+     * @param anyWeight  is true to remove the edge whatever its weight.
+     * @param edgeWeight is the weight the edge must have otherwise.
+     * @return true if the edge is removed.
+     */
+    private boolean removeEdge(T begin, T end, boolean anyWeight, double edgeWeight) {
+        int b = indexOf(begin);
+        int e = indexOf(end);
+        if (b < 0 || e < 0) {
+            return false;
+        }
+        int position = positionOf(b, e);
+        if (position < 0 || (!anyWeight && weights[b][position] != edgeWeight)) {
+            return false;
+        }
+        removeNeighbor(b, e);
+        removeNeighbor(e, b);
+        numOfEdges = numOfEdges - 2;
+        return true;
+    }
+
+    /**
+     * {@inheritDoc} The edges are grouped by vertex, and each group is checked
+     * against one pass over the neighbors of its vertex instead of one scan per
+     * edge.
+     */
+    @Override
+    public boolean[] addEdges(List<T> begins, List<T> ends) {
+        boolean[] added = new boolean[begins.size()];
+        int[] otherIds = new int[added.length];
+        long[] order = groupByVertex(begins, ends, otherIds);
+        int k = 0;
+        while (k < order.length) {
+            int b = (int) (order[k] >>> 32);
+            TraversalScratch scratch = TraversalScratch.begin(bound);
+            try {
+                boolean indexed = isIndexed(b);
+                if (!indexed) {
+                    int[] adj = neighbors[b];
+                    for (int i = 0; i < degrees[b]; i++) {
+                        scratch.visit(adj[i]);
+                    }
+                }
+                for (; k < order.length && (int) (order[k] >>> 32) == b; k++) {
+                    int item = (int) order[k];
+                    int e = otherIds[item];
+                    if (e == b || (indexed ? positionOf(b, e) >= 0 : !scratch.visit(e))) {
+                        continue;
+                    }
+                    appendNeighbor(b, e, 0.0);
+                    appendNeighbor(e, b, 0.0);
+                    numOfEdges = numOfEdges + 2;
+                    added[item] = true;
+                }
+            } finally {
+                scratch.end();
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Adds a batch of unweighted edges given by the ids of their vertices, the
+     * i-th between begins[i] and ends[i], with the same outcome as addEdges. This
+     * skips resolving labels for callers that already hold the ids, such as a
+     * replay of a mutation log. The neighbor arrays of each vertex grow once for
+     * all of its edges in the batch, instead of step by step, and each edge is
+     * looked for in the shorter row of its two vertices.
+     *
+     * @param begins are the ids of the beginning vertices, all in this graph.
+     * @param ends   are the ids of the end vertices, all in this graph.
+     * @param count  is the number of edges.
+     * @return for each edge, true if it was added.
+     */
+    boolean[] addEdgesAt(int[] begins, int[] ends, int count) {
+        int[] extra = new int[bound];
+        for (int i = 0; i < count; i++) {
+            extra[begins[i]]++;
+            extra[ends[i]]++;
+        }
+        for (int i = 0; i < count; i++) {
+            reserveNeighbors(begins[i], extra);
+            reserveNeighbors(ends[i], extra);
+        }
+        boolean[] added = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            int b = begins[i];
+            int e = ends[i];
+            if (b == e || (degrees[b] <= degrees[e] ? positionOf(b, e) : positionOf(e, b)) >= 0) {
+                continue;
+            }
+            appendNeighbor(b, e, 0.0);
+            appendNeighbor(e, b, 0.0);
+            numOfEdges = numOfEdges + 2;
+            added[i] = true;
+        }
+        return added;
+    }
+
+    /**
+     * {@inheritDoc} The edges are grouped by vertex, and the neighbors of each
+     * vertex are compacted in one pass that drops all of its group.
+     */
+    @Override
+    public boolean[] removeEdges(List<T> begins, List<T> ends) {
+        boolean[] removed = new boolean[begins.size()];
+        int[] otherIds = new int[removed.length];
+        long[] order = groupByVertex(begins, ends, otherIds);
+        int k = 0;
+        while (k < order.length) {
+            int b = (int) (order[k] >>> 32);
+            if (isIndexed(b)) {
+                for (; k < order.length && (int) (order[k] >>> 32) == b; k++) {
+                    int item = (int) order[k];
+                    int e = otherIds[item];
+                    int position = positionOf(b, e);
+                    if (position >= 0) {
+                        removeNeighbor(b, e);
+                        removeNeighbor(e, b);
+                        numOfEdges = numOfEdges - 2;
+                        removed[item] = true;
+                    }
+                }
+                continue;
+            }
+            TraversalScratch scratch = TraversalScratch.begin(bound);
+            try {
+                for (; k < order.length && (int) (order[k] >>> 32) == b; k++) {
+                    int item = (int) order[k];
+                    int e = otherIds[item];
+                    if (scratch.visit(e)) {
+                        scratch.predecessor[e] = item;
+                    }
+                }
+                int[] adj = neighbors[b];
+                double[] w = weights[b];
+                int kept = 0;
+                for (int i = 0; i < degrees[b]; i++) {
+                    int n = adj[i];
+                    if (scratch.isVisited(n)) {
+                        removeNeighbor(n, b);
+                        numOfEdges = numOfEdges - 2;
+                        removed[scratch.predecessor[n]] = true;
+                    } else {
+                        adj[kept] = n;
+                        w[kept] = w[i];
+                        kept++;
+                    }
+                }
+                degrees[b] = kept;
+            } finally {
+                scratch.end();
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasEdge(T begin, T end) {
+        int b = indexOf(begin);
+        int e = indexOf(end);
+        return b >= 0 && e >= 0 && positionOf(b, e) >= 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsVertex(T vertexLabel) {
+        return ids.containsKey(vertexLabel);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNumberOfVertices() {
+        return ids.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNumberOfEdges() {
+        return numOfEdges;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty() {
+        return ids.isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<VertexInterface<T>> getVertices() {
+        if (ids.isEmpty()) {
+            return null;
+        }
+        ArrayList<VertexInterface<T>> valueList = new ArrayList<VertexInterface<T>>(ids.size());
+        for (int id = 0; id < bound; id++) {
+            if (labels[id] != null) {
+                valueList.add(new CompactVertex(id));
+            }
+        }
+        return valueList;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        ids.clear();
+        edgePositions.clear();
+        Arrays.fill(labels, 0, bound, null);
+        Arrays.fill(neighbors, 0, bound, null);
+        Arrays.fill(weights, 0, bound, null);
+        Arrays.fill(degrees, 0, bound, 0);
+        bound = 0;
+        freeCount = 0;
+        numOfEdges = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Queue<T> getBreadthFirstTraversal(T origin) {
+        return GraphSearch.breadthFirstTraversal(this, origin);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<T> breadthFirstIterator(T origin, int maxDepth, int maxResults) {
+        return BreadthFirstIterator.of(this, origin, maxDepth, maxResults);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getShortestPath(T origin, T destination, Stack<T> path) {
+        return GraphSearch.shortestPath(this, origin, destination, path);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getCheapestPath(T origin, T destination, Stack<T> path) {
+        return WeightedSearch.bidirectionalShortestPath(this, origin, destination, path);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int indexOf(T vertexLabel) {
+        Integer id = ids.get(vertexLabel);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public T labelAt(int index) {
+        return (T) labels[index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int indexBound() {
+        return bound;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int degree(int index) {
+        return degrees[index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] adjacency(int index) {
+        return neighbors[index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int adjacencyStart(int index) {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double[] adjacencyWeights(int index) {
+        return weights[index];
+    }
+
+    /**
+     * Helper function that resolves a batch of edges to vertex ids and groups it
+     * by the smaller id of each edge, so that both directions of an edge land in
+     * the same group. Within a group the batch order is kept.
+     *
+     * @param begins   are the beginning vertices of the edges.
+     * @param ends     are the end vertices of the edges.
+     * @param otherIds receives the larger id of each edge.
+     * @return the smaller id in the upper and the position in the batch in the
+     *         lower half of each edge whose vertices are both in the graph.
+     */
+    private long[] groupByVertex(List<T> begins, List<T> ends, int[] otherIds) {
+        long[] order = new long[otherIds.length];
+        int size = 0;
+        for (int i = 0; i < otherIds.length; i++) {
+            int b = indexOf(begins.get(i));
+            int e = indexOf(ends.get(i));
+            if (b >= 0 && e >= 0) {
+                otherIds[i] = Math.max(b, e);
+                order[size++] = ((long) Math.min(b, e) << 32) | i;
+            }
+        }
+        Arrays.sort(order, 0, size);
+        return size == order.length ? order : Arrays.copyOf(order, size);
+    }
+
+    /**
+     * Helper function that finds end in the neighbor array of begin, through the
+     * edge index for long rows and by scanning short ones.
+     *
+     * @param begin is the id of the vertex to search.
+     * @param end   is the id of the neighbor to look for.
+     * @return position of end in the neighbor array of begin, or -1.
+     */
+    private int positionOf(int begin, int end) {
+        if (isIndexed(begin)) {
+            return edgePositions.get(edgeKey(begin, end));
+        }
+        int[] adj = neighbors[begin];
+        for (int i = 0; i < degrees[begin]; i++) {
+            if (adj[i] == end) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Helper function that appends a neighbor to a vertex, growing its arrays if
+     * needed.
+     *
+     * @param begin  is the id of the vertex.
+     * @param end    is the id of the new neighbor.
+     * @param weight is the weight of the edge.
+     */
+    private void appendNeighbor(int begin, int end, double weight) {
+        int degree = degrees[begin];
+        if (degree == neighbors[begin].length) {
+            growNeighbors(begin, Math.max(INITIAL_DEGREE, degree + (degree >> 1)));
+        }
+        neighbors[begin][degree] = end;
+        weights[begin][degree] = weight;
+        degrees[begin] = degree + 1;
+        if (isIndexed(begin)) {
+            edgePositions.put(edgeKey(begin, end), degree);
+        }
+    }
+
+    /**
+     * Helper function that makes room for the neighbors a batch adds to a vertex,
+     * once per vertex.
+     *
+     * @param id    is the id of the vertex.
+     * @param extra is the number of neighbors the batch adds to each vertex, set
+     *              to 0 once room is made.
+     */
+    private void reserveNeighbors(int id, int[] extra) {
+        int needed = degrees[id] + extra[id];
+        if (extra[id] > 0 && needed > neighbors[id].length) {
+            growNeighbors(id, needed);
+        }
+        extra[id] = 0;
+    }
+
+    /**
+     * Helper function that grows the neighbor arrays of a vertex, indexing its
+     * edges once the row gets long enough.
+     *
+     * @param id     is the id of the vertex.
+     * @param length is the new length of the arrays.
+     */
+    private void growNeighbors(int id, int length) {
+        boolean wasIndexed = isIndexed(id);
+        neighbors[id] = Arrays.copyOf(neighbors[id], length);
+        weights[id] = Arrays.copyOf(weights[id], length);
+        if (!wasIndexed && isIndexed(id)) {
+            for (int i = 0; i < degrees[id]; i++) {
+                edgePositions.put(edgeKey(id, neighbors[id][i]), i);
+            }
+        }
+    }
+
+    /**
+     * Helper function that removes a neighbor from a vertex by moving the last
+     * neighbor into its slot.
+     *
+     * @param begin is the id of the vertex.
+     * @param end   is the id of the neighbor to remove.
+     */
+    private void removeNeighbor(int begin, int end) {
+        int position = positionOf(begin, end);
+        if (position >= 0) {
+            int last = --degrees[begin];
+            int moved = neighbors[begin][last];
+            neighbors[begin][position] = moved;
+            weights[begin][position] = weights[begin][last];
+            if (isIndexed(begin)) {
+                edgePositions.remove(edgeKey(begin, end));
+                if (position != last) {
+                    edgePositions.put(edgeKey(begin, moved), position);
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper function that checks if the row of a vertex is in the edge index.
+     * Rows never shrink, so once indexed a row stays indexed.
+     *
+     * @param id is the id of the vertex.
+     * @return true if the row is indexed.
+     */
+    private boolean isIndexed(int id) {
+        return neighbors[id].length >= INDEXED_DEGREE;
+    }
+
+    /**
+     * Helper function that packs a directed vertex pair into an edge index key.
+     *
+     * @param begin is the id of the vertex.
+     * @param end   is the id of the neighbor.
+     * @return the key of the pair.
+     */
+    private static long edgeKey(int begin, int end) {
+        return ((long) begin << 32) | (end & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Helper function that frees the slot of a removed vertex so its id can be
+     * handed out again.
+     *
+     * @param id is the id of the vertex.
+     */
+    private void release(int id) {
+        labels[id] = null;
+        neighbors[id] = null;
+        weights[id] = null;
+        degrees[id] = 0;
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = id;
+    }
+
+    /**
+     * Helper function that doubles the number of vertex slots.
+     */
+    private void growVertices() {
+        int capacity = labels.length * 2;
+        labels = Arrays.copyOf(labels, capacity);
+        neighbors = Arrays.copyOf(neighbors, capacity);
+        weights = Arrays.copyOf(weights, capacity);
+        degrees = Arrays.copyOf(degrees, capacity);
+    }
+
+    /**
+     * This is a lightweight VertexInterface view of a vertex id. Edges made
+     * through a view are always undirected edges of the graph, and the traversal
+     * marks only live as long as the view itself.
+     *
+     * @author amandhillon
+     *
+     */
+    private class CompactVertex implements VertexInterface<T> {
+
+        /**
+         * id of the vertex.
+         */
+        private final int id;
+
+        /**
+         * Stores if the vertex is visited or not, true if visited.
+         */
+        private boolean visited;
+
+        /**
+         * previous vertex on path to this vertex.
+         */
+        private VertexInterface<T> previousVertex;
+
+        /**
+         * cost of path to this vertex.
+         */
+        private double cost;
+
+        /**
+         * Constructor for a vertex view.
+         *
+         * @param vertexId is the id of the vertex.
+         */
+        private CompactVertex(int vertexId) {
+            this.id = vertexId;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public T getLabel() {
+            return labelAt(id);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getIndex() {
+            return id;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getNumberOfNeighbors() {
+            return degrees[id];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void visit() {
+            this.visited = true;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void unvisit() {
+            this.visited = false;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isVisited() {
+            return this.visited;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean connect(VertexInterface<T> endVertex, double edgeWeight) {
+            return addEdge(getLabel(), endVertex.getLabel(), edgeWeight);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean connect(VertexInterface<T> endVertex) {
+            return connect(endVertex, 0.0);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean disconnect(VertexInterface<T> endVertex, double edgeWeight) {
+            return removeEdge(getLabel(), endVertex.getLabel(), edgeWeight);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean disconnect(VertexInterface<T> endVertex) {
+            return removeEdge(getLabel(), endVertex.getLabel());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Iterator<VertexInterface<T>> getNeighborIterator() {
+            return new Iterator<VertexInterface<T>>() {
+                private int position = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return position < degrees[id];
+                }
+
+                @Override
+                public VertexInterface<T> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return new CompactVertex(neighbors[id][position++]);
+                }
+            };
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Iterator<Double> getWeightIterator() {
+            return new Iterator<Double>() {
+                private int position = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return position < degrees[id];
+                }
+
+                @Override
+                public Double next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return weights[id][position++];
+                }
+            };
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean hasNeighbor() {
+            return degrees[id] > 0;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean hasNeighbor(VertexInterface<T> endVertex) {
+            return hasEdge(getLabel(), endVertex.getLabel());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public double getEdgeWeight(VertexInterface<T> endVertex) {
+            int end = indexOf(endVertex.getLabel());
+            int position = end < 0 ? -1 : positionOf(id, end);
+            return position < 0 ? Double.NaN : weights[id][position];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public VertexInterface<T> getUnvisitedNeighbor() {
+            return hasNeighbor() ? new CompactVertex(neighbors[id][0]) : null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void setPredecessor(VertexInterface<T> predecessor) {
+            this.previousVertex = predecessor;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public VertexInterface<T> getPredecessor() {
+            return this.previousVertex;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean hasPredecessor() {
+            return this.previousVertex != null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void setCost(double newCost) {
+            this.cost = newCost;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public double getCost() {
+            return this.cost;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof VertexInterface)) {
+                return false;
+            }
+            Object otherLabel = ((VertexInterface<?>) obj).getLabel();
+            return getLabel() == null ? otherLabel == null : getLabel().equals(otherLabel);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return getLabel() == null ? 0 : getLabel().hashCode();
+        }
+    }
+}
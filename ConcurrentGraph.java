@@ -0,0 +1,508 @@
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * This is a thread-safe undirected graph. The vertices live in a
+ * ConcurrentHashMap and every vertex is guarded by one of a fixed set of
+ * striped read-write locks. An edge update write-locks the stripes of its two
+ * vertices in stripe order, so updates on unrelated vertices run in parallel
+ * and two updates can never wait on each other in a cycle. Whole-graph reads
+ * read-lock every stripe in the same order. Traversals keep their state out of
+ * the vertices, so any number of them run at the same time.
+ *
+ * @author amandhillon
+ *
+ * @param <T> is type of Graph.
+ */
+public class ConcurrentGraph<T> extends Graph<T> {
+
+    /**
+     * Locks that guard the vertices, a vertex uses the stripe of its label hash.
+     */
+    private final ReentrantReadWriteLock[] stripes;
+
+    /**
+     * Represents the number of edges in the graph, counted the same way as Graph.
+     */
+    private final LongAdder edgeCount;
+
+    /**
+     * Default constructor for concurrent graph, with four stripes per processor.
+     */
+    public ConcurrentGraph() {
+        this(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * Constructor for concurrent graph with a given number of lock stripes.
+     *
+     * @param concurrency is the minimum number of lock stripes.
+     */
+    public ConcurrentGraph(int concurrency) {
+        super();
+        this.vertices = new ConcurrentHashMap<T, VertexInterface<T>>();
+        int count = Integer.highestOneBit(Math.max(16, concurrency) - 1) << 1;
+        this.stripes = new ReentrantReadWriteLock[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+        this.edgeCount = new LongAdder();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addVertex(T vertexLabel) {
+        if (vertices.containsKey(vertexLabel)) {
+            return false;
+        }
+        return withEdgeLocked(vertexLabel, vertexLabel, () -> {
+            Vertex<T> toAdd = new Vertex<T>(vertexLabel);
+            toAdd.setIndex(allocateIndex());
+            if (vertices.putIfAbsent(vertexLabel, toAdd) != null) {
+                releaseIndex(toAdd.getIndex());
+                return false;
+            }
+            return true;
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected synchronized int allocateIndex() {
+        return super.allocateIndex();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected synchronized void releaseIndex(int index) {
+        super.releaseIndex(index);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VertexInterface<T> removeVertex(T vertexLabel) {
+        return withNeighborhoodLocked(vertexLabel, () -> {
+            VertexInterface<T> toRemove = vertices.get(vertexLabel);
+            if (toRemove != null) {
+                Iterator<VertexInterface<T>> neighbor = toRemove.getNeighborIterator();
+                Iterator<Double> weight = toRemove.getWeightIterator();
+                while (neighbor.hasNext()) {
+                    neighbor.next().disconnect(toRemove, weight.next());
+                    edgeCount.add(-2);
+                }
+                if (vertices.remove(vertexLabel, toRemove)) {
+                    releaseIndex(toRemove.getIndex());
+                }
+            }
+            return toRemove;
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addEdge(T begin, T end, double edgeWeight) {
+        return withEdgeLocked(begin, end, () -> addEdgeLocked(begin, end, edgeWeight));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean removeEdge(T begin, T end, double edgeWeight) {
+        return withEdgeLocked(begin, end, () -> removeEdgeLocked(begin, end, false, edgeWeight));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean removeEdge(T begin, T end) {
+        return withEdgeLocked(begin, end, () -> removeEdgeLocked(begin, end, true, 0.0));
+    }
+
+    /**
+     * {@inheritDoc} The locks of all vertices in the batch are taken once, in
+     * stripe order, for the whole batch.
+     */
+    @Override
+    public boolean[] addEdges(List<T> begins, List<T> ends) {
+        return withVerticesLocked(begins, ends, () -> {
+            boolean[] added = new boolean[begins.size()];
+            for (int i = 0; i < added.length; i++) {
+                added[i] = addEdgeLocked(begins.get(i), ends.get(i), 0.0);
+            }
+            return added;
+        });
+    }
+
+    /**
+     * {@inheritDoc} The locks of all vertices in the batch are taken once, in
+     * stripe order, for the whole batch.
+     */
+    @Override
+    public boolean[] removeEdges(List<T> begins, List<T> ends) {
+        return withVerticesLocked(begins, ends, () -> {
+            boolean[] removed = new boolean[begins.size()];
+            for (int i = 0; i < removed.length; i++) {
+                removed[i] = removeEdgeLocked(begins.get(i), ends.get(i), true, 0.0);
+            }
+            return removed;
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasEdge(T begin, T end) {
+        ReentrantReadWriteLock.ReadLock lock = stripeOf(begin).readLock();
+        lock.lock();
+        try {
+            return super.hasEdge(begin, end);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNumberOfEdges() {
+        return edgeCount.intValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        for (ReentrantReadWriteLock stripe : stripes) {
+            stripe.writeLock().lock();
+        }
+        try {
+            super.clear();
+            edgeCount.reset();
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                stripes[i].writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Queue<T> getBreadthFirstTraversal(T origin) {
+        return readLocked(() -> super.getBreadthFirstTraversal(origin));
+    }
+
+    /**
+     * {@inheritDoc} Each vertex is expanded under the read lock of its own
+     * stripe, so the traversal never blocks more than one stripe at a time and
+     * holds no lock between two calls.
+     */
+    @Override
+    public Iterator<T> breadthFirstIterator(T origin, int maxDepth, int maxResults) {
+        return BreadthFirstIterator.of(vertices.get(origin), maxDepth, maxResults,
+                label -> stripeOf(label).readLock());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getShortestPath(T origin, T destination, Stack<T> path) {
+        return readLocked(() -> super.getShortestPath(origin, destination, path));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getCheapestPath(T origin, T destination, Stack<T> path) {
+        return readLocked(() -> super.getCheapestPath(origin, destination, path));
+    }
+
+    /**
+     * Compiles a consistent snapshot of the graph while edge updates wait.
+     *
+     * @return the snapshot of the graph.
+     */
+    public GraphSnapshot<T> snapshot() {
+        return readLocked(() -> GraphSnapshot.of(this));
+    }
+
+    /**
+     * Runs an action while holding the write locks of two vertices, taken in
+     * stripe order.
+     *
+     * @param <R>    is the result type of the action.
+     * @param begin  is one vertex of the edge.
+     * @param end    is the other vertex of the edge.
+     * @param action is the action to run.
+     * @return the result of the action.
+     */
+    public <R> R withEdgeLocked(T begin, T end, Supplier<R> action) {
+        int first = stripeIndex(begin);
+        int second = stripeIndex(end);
+        int low = Math.min(first, second);
+        int high = Math.max(first, second);
+        stripes[low].writeLock().lock();
+        try {
+            if (high != low) {
+                stripes[high].writeLock().lock();
+            }
+            try {
+                return action.get();
+            } finally {
+                if (high != low) {
+                    stripes[high].writeLock().unlock();
+                }
+            }
+        } finally {
+            stripes[low].writeLock().unlock();
+        }
+    }
+
+    /**
+     * Runs an action while holding the write locks of every vertex in two lists,
+     * taken in stripe order. Each stripe is locked once. Stripes the thread
+     * already holds, for example around a batch of profile updates, are not
+     * locked again, so such a thread must already hold all stripes involved.
+     *
+     * @param <R>    is the result type of the action.
+     * @param first  is a list of vertices.
+     * @param second is another list of vertices.
+     * @param action is the action to run.
+     * @return the result of the action.
+     */
+    public <R> R withVerticesLocked(List<T> first, List<T> second, Supplier<R> action) {
+        boolean[] wanted = new boolean[stripes.length];
+        for (T vertexLabel : first) {
+            wanted[stripeIndex(vertexLabel)] = true;
+        }
+        for (T vertexLabel : second) {
+            wanted[stripeIndex(vertexLabel)] = true;
+        }
+        for (int i = 0; i < stripes.length; i++) {
+            if (wanted[i] && stripes[i].isWriteLockedByCurrentThread()) {
+                wanted[i] = false;
+            }
+        }
+        int held = 0;
+        try {
+            for (; held < stripes.length; held++) {
+                if (wanted[held]) {
+                    stripes[held].writeLock().lock();
+                }
+            }
+            return action.get();
+        } finally {
+            for (int i = held - 1; i >= 0; i--) {
+                if (wanted[i]) {
+                    stripes[i].writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs an action while holding the write locks of a vertex and all of its
+     * neighbors, taken in stripe order. If the neighbors change before all locks
+     * are held, the locks are released and taken again.
+     *
+     * @param <R>         is the result type of the action.
+     * @param vertexLabel is the vertex whose neighborhood is locked.
+     * @param action      is the action to run.
+     * @return the result of the action.
+     */
+    public <R> R withNeighborhoodLocked(T vertexLabel, Supplier<R> action) {
+        while (true) {
+            boolean[] wanted = new boolean[stripes.length];
+            wanted[stripeIndex(vertexLabel)] = true;
+            ReentrantReadWriteLock.ReadLock own = stripeOf(vertexLabel).readLock();
+            own.lock();
+            try {
+                VertexInterface<T> vertex = vertices.get(vertexLabel);
+                if (vertex != null) {
+                    Iterator<VertexInterface<T>> neighbor = vertex.getNeighborIterator();
+                    while (neighbor.hasNext()) {
+                        wanted[stripeIndex(neighbor.next().getLabel())] = true;
+                    }
+                }
+            } finally {
+                own.unlock();
+            }
+
+            int held = 0;
+            try {
+                for (; held < stripes.length; held++) {
+                    if (wanted[held]) {
+                        stripes[held].writeLock().lock();
+                    }
+                }
+                if (coversNeighborhood(vertexLabel, wanted)) {
+                    return action.get();
+                }
+            } finally {
+                for (int i = held - 1; i >= 0; i--) {
+                    if (wanted[i]) {
+                        stripes[i].writeLock().unlock();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs an action while holding the read lock of a vertex, so no edge of the
+     * vertex changes at the same time.
+     *
+     * @param <R>         is the result type of the action.
+     * @param vertexLabel is the vertex to lock.
+     * @param action      is the action to run.
+     * @return the result of the action.
+     */
+    public <R> R withVertexReadLocked(T vertexLabel, Supplier<R> action) {
+        ReentrantReadWriteLock.ReadLock lock = stripeOf(vertexLabel).readLock();
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs an action while holding the read locks of all stripes, so no edge
+     * update runs at the same time.
+     *
+     * @param <R>    is the result type of the action.
+     * @param action is the action to run.
+     * @return the result of the action.
+     */
+    public <R> R readLocked(Supplier<R> action) {
+        int held = 0;
+        try {
+            for (; held < stripes.length; held++) {
+                stripes[held].readLock().lock();
+            }
+            return action.get();
+        } finally {
+            for (int i = held - 1; i >= 0; i--) {
+                stripes[i].readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Helper function that adds an edge while the locks of both vertices are held.
+     *
+     * @param begin      is the beginning vertex of the edge.
+     * @param end        is the end vertex of the edge.
+     * @param edgeWeight is the weight of the edge.
+     * @return true if the edge is added.
+     */
+    private boolean addEdgeLocked(T begin, T end, double edgeWeight) {
+        VertexInterface<T> beginVertex = vertices.get(begin);
+        VertexInterface<T> endVertex = vertices.get(end);
+        boolean wasAdded = false;
+
+        if ((beginVertex != null) && (endVertex != null) && !beginVertex.hasNeighbor(endVertex))
+            wasAdded = (beginVertex.connect(endVertex, edgeWeight) && endVertex.connect(beginVertex, edgeWeight));
+
+        if (wasAdded) {
+            edgeCount.add(2);
+        }
+        return wasAdded;
+    }
+
+    /**
+     * Helper function that removes an edge while the locks of both vertices are
+     * held.
+     *
+     * @param begin      is the beginning vertex of the edge.
+     * @param end        is the end vertex of the edge.
+     * @param anyWeight  is true to remove the edge whatever its weight.
+     * @param edgeWeight is the weight the edge must have otherwise.
+     * @return true if the edge is removed.
+     */
+    private boolean removeEdgeLocked(T begin, T end, boolean anyWeight, double edgeWeight) {
+        VertexInterface<T> beginVertex = vertices.get(begin);
+        VertexInterface<T> endVertex = vertices.get(end);
+        boolean wasRemoved = false;
+
+        if ((beginVertex != null) && (endVertex != null))
+            wasRemoved = anyWeight ? beginVertex.disconnect(endVertex) && endVertex.disconnect(beginVertex)
+                    : beginVertex.disconnect(endVertex, edgeWeight) && endVertex.disconnect(beginVertex, edgeWeight);
+
+        if (wasRemoved) {
+            edgeCount.add(-2);
+        }
+        return wasRemoved;
+    }
+
+    /**
+     * Helper function that checks if all neighbors of a vertex are in the locked
+     * stripes.
+     *
+     * @param vertexLabel is the vertex to check.
+     * @param locked      marks the stripes that are held.
+     * @return true if every neighbor is guarded by a held stripe.
+     */
+    private boolean coversNeighborhood(T vertexLabel, boolean[] locked) {
+        VertexInterface<T> vertex = vertices.get(vertexLabel);
+        if (vertex == null) {
+            return true;
+        }
+        Iterator<VertexInterface<T>> neighbor = vertex.getNeighborIterator();
+        while (neighbor.hasNext()) {
+            if (!locked[stripeIndex(neighbor.next().getLabel())]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Helper function that finds the lock stripe of a vertex.
+     *
+     * @param vertexLabel is the label of the vertex.
+     * @return the lock stripe of the vertex.
+     */
+    private ReentrantReadWriteLock stripeOf(T vertexLabel) {
+        return stripes[stripeIndex(vertexLabel)];
+    }
+
+    /**
+     * Helper function that finds the index of the lock stripe of a vertex.
+     *
+     * @param vertexLabel is the label of the vertex.
+     * @return the index of the lock stripe.
+     */
+    private int stripeIndex(T vertexLabel) {
+        int h = vertexLabel.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h & (stripes.length - 1);
+    }
+}
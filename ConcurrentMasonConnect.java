@@ -0,0 +1,257 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * This is a thread-safe version of MasonConnect built on a ConcurrentGraph.
+ * Each friendship update locks only the two users involved, so updates on
+ * unrelated users scale across cores. Removing a user locks the user and all
+ * of their friends. Adding a user locks the user too, so a mutation log always
+ * records the user before any of their friendships. The locks are taken by the
+ * GraphInterface methods that the MasonConnect methods are built on, so both
+ * ways of changing the network are safe. With a mutation log that commits on
+ * every mutation, the records are forced to disk after the locks are released,
+ * so writers waiting for the same locks do not wait for the disk. A traversal locks one user at a time,
+ * as it reaches them.
+ * 
+ * @author amandhillon
+ *
+ */
+public class ConcurrentMasonConnect extends MasonConnect {
+
+    /**
+     * The concurrent graph that backs the social network.
+     */
+    private final ConcurrentGraph<Profile> graph;
+
+    /**
+     * initializes the social networking app.
+     */
+    public ConcurrentMasonConnect() {
+        this(new ConcurrentGraph<Profile>());
+    }
+
+    /**
+     * initializes the social networking app on top of the given concurrent graph.
+     * 
+     * @param graph is the graph that stores the profiles.
+     */
+    public ConcurrentMasonConnect(ConcurrentGraph<Profile> graph) {
+        super(graph);
+        this.graph = graph;
+        this.profilesById = new ConcurrentHashMap<Long, Profile>(this.profilesById);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addVertex(Profile vertexLabel) {
+        return committedAfter(() -> graph.withEdgeLocked(vertexLabel, vertexLabel, () -> super.addVertex(vertexLabel)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public VertexInterface<Profile> removeVertex(Profile vertexLabel) {
+        return committedAfter(() -> graph.withNeighborhoodLocked(vertexLabel, () -> super.removeVertex(vertexLabel)));
+    }
+
+    /**
+     * {@inheritDoc} Each user is removed under the locks of their own
+     * neighborhood, so the batch never holds more locks than a single removal.
+     */
+    @Override
+    public boolean[] removeVertices(List<Profile> vertexLabels) {
+        return committedAfter(() -> {
+            boolean[] removed = new boolean[vertexLabels.size()];
+            for (int i = 0; i < removed.length; i++) {
+                Profile p = vertexLabels.get(i);
+                removed[i] = graph.withNeighborhoodLocked(p, () -> super.removeVertex(p) != null);
+            }
+            return removed;
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addEdge(Profile begin, Profile end, double edgeWeight) {
+        return committedAfter(() -> graph.withEdgeLocked(begin, end, () -> super.addEdge(begin, end, edgeWeight)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addEdge(Profile begin, Profile end) {
+        return committedAfter(() -> graph.withEdgeLocked(begin, end, () -> super.addEdge(begin, end)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean removeEdge(Profile begin, Profile end, double edgeWeight) {
+        return committedAfter(() -> graph.withEdgeLocked(begin, end, () -> super.removeEdge(begin, end, edgeWeight)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean removeEdge(Profile begin, Profile end) {
+        return committedAfter(() -> graph.withEdgeLocked(begin, end, () -> super.removeEdge(begin, end)));
+    }
+
+    /**
+     * {@inheritDoc} The locks of all users in the batch are taken once, in
+     * stripe order, for the whole batch.
+     */
+    @Override
+    public boolean[] addEdges(List<Profile> begins, List<Profile> ends) {
+        return committedAfter(() -> graph.withVerticesLocked(begins, ends, () -> super.addEdges(begins, ends)));
+    }
+
+    /**
+     * {@inheritDoc} The locks of all users in the batch are taken once, in
+     * stripe order, for the whole batch.
+     */
+    @Override
+    public boolean[] removeEdges(List<Profile> begins, List<Profile> ends) {
+        return committedAfter(() -> graph.withVerticesLocked(begins, ends, () -> super.removeEdges(begins, ends)));
+    }
+
+    /**
+     * Helper function that runs a mutation that takes locks, committing its
+     * records to the mutation log, if there is one, once the locks are released.
+     *
+     * @param <R>    is the result type of the mutation.
+     * @param locked is the mutation, taking and releasing its locks.
+     * @return the result of the mutation.
+     */
+    private <R> R committedAfter(Supplier<R> locked) {
+        MutationLog current = this.log;
+        return current == null ? locked.get() : current.deferringCommit(locked);
+    }
+
+    /**
+     * {@inheritDoc} Here the list is a copy of the friends, taken while the
+     * user's friendships cannot change, so it stays consistent while other
+     * threads update the network.
+     */
+    @Override
+    public List<Profile> getFriends(Profile user) {
+        return graph.withVertexReadLocked(user,
+                () -> Collections.unmodifiableList(new ArrayList<Profile>(liveFriends(user))));
+    }
+
+    /**
+     * {@inheritDoc} Updates wait until the components are labeled, so none of
+     * them is missed.
+     */
+    @Override
+    protected void rebuildComponents() {
+        graph.readLocked(() -> {
+            super.rebuildComponents();
+            return null;
+        });
+    }
+
+    /**
+     * {@inheritDoc} The cache is turned on while updates wait, so no update that
+     * is in progress can miss it.
+     */
+    @Override
+    public void enableDistanceCache(int capacity) {
+        graph.readLocked(() -> {
+            super.enableDistanceCache(capacity);
+            return null;
+        });
+    }
+
+    /**
+     * {@inheritDoc} Updates wait until the index is built, so none of them is
+     * missed.
+     */
+    @Override
+    public void enableFriendIndex() {
+        graph.readLocked(() -> {
+            super.enableFriendIndex();
+            return null;
+        });
+    }
+
+    /**
+     * {@inheritDoc} Without a published snapshot, the friendships are read while
+     * updates wait.
+     */
+    @Override
+    public List<Profile> friendSuggestion(Profile user, int limit, FriendRecommender.Scoring scoring) {
+        if (frozen != null) {
+            return super.friendSuggestion(user, limit, scoring);
+        }
+        return graph.readLocked(() -> super.friendSuggestion(user, limit, scoring));
+    }
+
+    /**
+     * {@inheritDoc} Without the friend index, the friendships are read while
+     * updates wait.
+     */
+    @Override
+    public List<Profile> mutualFriends(Profile a, Profile b) {
+        if (friendIndex != null || frozen != null) {
+            return super.mutualFriends(a, b);
+        }
+        return graph.readLocked(() -> super.mutualFriends(a, b));
+    }
+
+    /**
+     * {@inheritDoc} Without the friend index, the friendships are read while
+     * updates wait.
+     */
+    @Override
+    public int mutualFriendCount(Profile a, Profile b) {
+        if (friendIndex != null || frozen != null) {
+            return super.mutualFriendCount(a, b);
+        }
+        return graph.readLocked(() -> super.mutualFriendCount(a, b));
+    }
+
+    /**
+     * {@inheritDoc} Without the friend index, the friendships are read while
+     * updates wait.
+     */
+    @Override
+    public int[] mutualFriendCounts(Profile viewer, List<Profile> targets) {
+        if (friendIndex != null || frozen != null) {
+            return super.mutualFriendCounts(viewer, targets);
+        }
+        return graph.readLocked(() -> super.mutualFriendCounts(viewer, targets));
+    }
+
+    /**
+     * {@inheritDoc} Without a published snapshot, the friends and their
+     * friendships are read while updates wait.
+     */
+    @Override
+    public double clusteringCoefficient(Profile user) {
+        if (frozen != null) {
+            return super.clusteringCoefficient(user);
+        }
+        return graph.readLocked(() -> super.clusteringCoefficient(user));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public GraphSnapshot<Profile> snapshot() {
+        return graph.snapshot();
+    }
+
+}
@@ -0,0 +1,380 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This class keeps the connected components of a network in a union-find
+ * structure keyed by user id. It is built in one parallel pass over a snapshot
+ * of the network and then follows every new friendship with a union, so
+ * telling whether two users are connected at all takes two near-constant
+ * finds.
+ *
+ * Removing a friendship or a user can split a component, which a union-find
+ * cannot follow. The structure then stays as it is and is marked inexact:
+ * users it puts in different components are still never connected, but users
+ * in the same component may no longer be, and the sizes may be too large. The
+ * network rebuilds it before answering a question that needs it exact.
+ *
+ * Queries share a read lock and find representatives without changing the
+ * structure, so they never wait for each other. A new friendship between users
+ * that are already connected, the common case once the network is dense, is
+ * settled under the read lock too. Only a union that merges two components
+ * takes the write lock, and it compresses the paths it walks.
+ *
+ * @author amandhillon
+ *
+ */
+final class ConnectedComponents {
+
+    /**
+     * Number of vertices a chunk of the parallel pass handles at least.
+     */
+    private static final int GRAIN = 4096;
+
+    /**
+     * Slot of each user id.
+     */
+    private final LongIntHashMap slots;
+
+    /**
+     * User id of each slot.
+     */
+    private long[] ids;
+
+    /**
+     * Parent slot of each slot, the slot itself for a representative.
+     */
+    private int[] parent;
+
+    /**
+     * Number of slots in the component of each representative.
+     */
+    private int[] size;
+
+    /**
+     * Number of slots in use.
+     */
+    private int count;
+
+    /**
+     * Number of components among the slots.
+     */
+    private int components;
+
+    /**
+     * False once a friendship or user was removed since the build.
+     */
+    private volatile boolean exact;
+
+    /**
+     * Lock shared by queries and taken alone by unions.
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Constructor for the components of a snapshot, labeled in parallel.
+     *
+     * @param graph is the snapshot of the network.
+     * @param pool  is the pool that runs the parallel pass.
+     */
+    ConnectedComponents(GraphSnapshot<Profile> graph, ForkJoinPool pool) {
+        int bound = graph.indexBound();
+        int[] roots = label(graph, pool);
+        this.slots = new LongIntHashMap(Math.max(16, bound), -1);
+        this.ids = new long[Math.max(16, bound)];
+        this.parent = new int[ids.length];
+        this.size = new int[ids.length];
+        for (int v = 0; v < bound; v++) {
+            ids[v] = graph.labelAt(v).getId();
+            slots.put(ids[v], v);
+            parent[v] = roots[v];
+            size[roots[v]]++;
+            if (roots[v] == v) {
+                components++;
+            }
+        }
+        this.count = bound;
+        this.exact = true;
+    }
+
+    /**
+     * Merges the components of two users after a friendship was created between
+     * them.
+     *
+     * @param a is a user.
+     * @param b is a user.
+     */
+    void friendshipCreated(Profile a, Profile b) {
+        lock.readLock().lock();
+        try {
+            int sa = slots.get(a.getId());
+            int sb = slots.get(b.getId());
+            if (sa >= 0 && sb >= 0 && root(sa) == root(sb)) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            int ra = find(slotOf(a.getId()));
+            int rb = find(slotOf(b.getId()));
+            if (ra != rb) {
+                if (size[ra] < size[rb]) {
+                    int swap = ra;
+                    ra = rb;
+                    rb = swap;
+                }
+                parent[rb] = ra;
+                size[ra] += size[rb];
+                components--;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks the components as inexact after a friendship or user was removed.
+     */
+    void invalidate() {
+        exact = false;
+    }
+
+    /**
+     * Checks if the components still match the network exactly.
+     *
+     * @return true if nothing was removed since the build.
+     */
+    boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Checks if two users are in the same component. If the components are
+     * inexact, a false answer is still right.
+     *
+     * @param a is a user.
+     * @param b is a user.
+     * @return true if the users are in the same component.
+     */
+    boolean connected(Profile a, Profile b) {
+        if (a.getId() == b.getId()) {
+            return true;
+        }
+        lock.readLock().lock();
+        try {
+            int sa = slots.get(a.getId());
+            int sb = slots.get(b.getId());
+            return sa >= 0 && sb >= 0 && root(sa) == root(sb);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets an id shared by all users of the component of a user: the user id of
+     * one of them. It changes when the component merges with another one.
+     *
+     * @param user is a user.
+     * @return the id of the component.
+     */
+    long componentId(Profile user) {
+        lock.readLock().lock();
+        try {
+            int slot = slots.get(user.getId());
+            return slot < 0 ? user.getId() : ids[root(slot)];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of users in the component of a user.
+     *
+     * @param user is a user.
+     * @return the size of the component.
+     */
+    int componentSize(Profile user) {
+        lock.readLock().lock();
+        try {
+            int slot = slots.get(user.getId());
+            return slot < 0 ? 1 : size[root(slot)];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of components, not counting users added after the build
+     * that have no friends yet.
+     *
+     * @return the number of components.
+     */
+    int numberOfComponents() {
+        lock.readLock().lock();
+        try {
+            return components;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of users the components cover, which leaves out users added
+     * after the build that have no friends yet.
+     *
+     * @return the number of users.
+     */
+    int numberOfUsers() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Helper function that finds the representative of a slot without changing
+     * the structure, for callers that hold the read lock.
+     *
+     * @param slot is the slot.
+     * @return the representative.
+     */
+    private int root(int slot) {
+        while (parent[slot] != slot) {
+            slot = parent[slot];
+        }
+        return slot;
+    }
+
+    /**
+     * Helper function that finds the representative of a slot, halving the path
+     * on the way, for callers that hold the write lock.
+     *
+     * @param slot is the slot.
+     * @return the representative.
+     */
+    private int find(int slot) {
+        while (parent[slot] != slot) {
+            parent[slot] = parent[parent[slot]];
+            slot = parent[slot];
+        }
+        return slot;
+    }
+
+    /**
+     * Helper function that gets the slot of a user id, giving a new user a
+     * component of its own.
+     *
+     * @param id is the user id.
+     * @return the slot.
+     */
+    private int slotOf(long id) {
+        int slot = slots.get(id);
+        if (slot < 0) {
+            if (count == ids.length) {
+                int length = count * 2;
+                ids = Arrays.copyOf(ids, length);
+                parent = Arrays.copyOf(parent, length);
+                size = Arrays.copyOf(size, length);
+            }
+            slot = count++;
+            ids[slot] = id;
+            parent[slot] = slot;
+            size[slot] = 1;
+            slots.put(id, slot);
+            components++;
+        }
+        return slot;
+    }
+
+    /**
+     * Helper function that labels every vertex of a graph with the smallest
+     * index of its component. The edges are united in parallel chunks on a
+     * lock-free union-find that always links the larger of two roots below the
+     * smaller one, so concurrent unions cannot form a cycle.
+     *
+     * @param graph is the graph.
+     * @param pool  is the pool that runs the chunks.
+     * @return the label of each vertex.
+     */
+    private static int[] label(IndexedGraph<?> graph, ForkJoinPool pool) {
+        int bound = graph.indexBound();
+        AtomicIntegerArray parents = new AtomicIntegerArray(bound);
+        int chunks = ParallelSearch.chunks(bound, GRAIN, pool);
+        ParallelSearch.run(pool, chunks, bound, (from, to) -> {
+            for (int v = from; v < to; v++) {
+                parents.set(v, v);
+            }
+        });
+        ParallelSearch.run(pool, chunks, bound, (from, to) -> {
+            for (int v = from; v < to; v++) {
+                int[] adj = graph.adjacency(v);
+                int first = graph.adjacencyStart(v);
+                int last = first + graph.degree(v);
+                for (int e = first; e < last; e++) {
+                    if (adj[e] < v) {
+                        unite(parents, v, adj[e]);
+                    }
+                }
+            }
+        });
+        int[] roots = new int[bound];
+        ParallelSearch.run(pool, chunks, bound, (from, to) -> {
+            for (int v = from; v < to; v++) {
+                roots[v] = findShared(parents, v);
+            }
+        });
+        return roots;
+    }
+
+    /**
+     * Helper function that unites the components of two vertices in a shared
+     * union-find.
+     *
+     * @param parents is the parent of each vertex.
+     * @param a       is a vertex.
+     * @param b       is a vertex.
+     */
+    private static void unite(AtomicIntegerArray parents, int a, int b) {
+        while (true) {
+            int ra = findShared(parents, a);
+            int rb = findShared(parents, b);
+            if (ra == rb) {
+                return;
+            }
+            if (ra < rb) {
+                int swap = ra;
+                ra = rb;
+                rb = swap;
+            }
+            if (parents.compareAndSet(ra, ra, rb)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Helper function that finds the root of a vertex in a shared union-find,
+     * halving the path on the way when no other thread changed it.
+     *
+     * @param parents is the parent of each vertex.
+     * @param v       is the vertex.
+     * @return the root.
+     */
+    private static int findShared(AtomicIntegerArray parents, int v) {
+        int p = parents.get(v);
+        while (p != v) {
+            int grand = parents.get(p);
+            if (grand != p) {
+                parents.compareAndSet(v, p, grand);
+            }
+            v = p;
+            p = parents.get(v);
+        }
+        return v;
+    }
+}
@@ -0,0 +1,467 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class caches the users within two friendships of a user and the
+ * friendship distance between two users up to MAX_HOPS, so the same viewer and
+ * profile pairs do not run a fresh search each time. It holds at most a fixed
+ * number of entries and evicts the least recently used one to make room.
+ *
+ * Each entry watches the users whose friendships it depends on: a neighborhood
+ * watches every user in it, and a distance of k hops watches the users within
+ * k - 1 hops of one end. A friendship that is created or removed, or a user
+ * that is removed, only drops the entries that watch a user it touches, so
+ * entries about other parts of the network stay. A lookup whose search
+ * overlapped a mutation is answered but not stored.
+ *
+ * All methods may be called from several threads. The monitor of the cache is
+ * only held for bookkeeping, never while the network is read, so it can be
+ * taken under any lock of the network.
+ *
+ * @author amandhillon
+ *
+ */
+final class DistanceCache {
+
+    /**
+     * Greatest distance the cache stores exactly.
+     */
+    static final int MAX_HOPS = 3;
+
+    /**
+     * Distance of two users that are more than MAX_HOPS apart.
+     */
+    static final int BEYOND = Integer.MAX_VALUE;
+
+    /**
+     * Greatest number of entries held.
+     */
+    private final int capacity;
+
+    /**
+     * Entries by key, least recently used first.
+     */
+    private final LinkedHashMap<Object, Entry> entries;
+
+    /**
+     * Entries watching each user id. Dropped entries are removed lazily.
+     */
+    private final Map<Long, List<Entry>> watchers;
+
+    /**
+     * Number of entries in the watcher lists, dropped ones included.
+     */
+    private long references;
+
+    /**
+     * Number of entries in the watcher lists that are still held.
+     */
+    private long liveReferences;
+
+    /**
+     * Number of mutations started.
+     */
+    private long started;
+
+    /**
+     * Number of mutations started and not finished.
+     */
+    private int inFlight;
+
+    /**
+     * Number of lookups answered from the cache.
+     */
+    private long hits;
+
+    /**
+     * Number of lookups that had to be computed.
+     */
+    private long misses;
+
+    /**
+     * Number of entries dropped to make room.
+     */
+    private long evictions;
+
+    /**
+     * Number of entries dropped by mutations.
+     */
+    private long invalidations;
+
+    /**
+     * Constructor for an empty cache.
+     *
+     * @param capacity is the greatest number of entries to hold.
+     * @throws IllegalArgumentException if capacity is not positive.
+     */
+    DistanceCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity " + capacity);
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true);
+        this.watchers = new HashMap<Long, List<Entry>>();
+    }
+
+    /**
+     * Gets the users within two friendships of a user, nearest first.
+     *
+     * @param network is the network to search on a miss.
+     * @param user    is a user in the network.
+     * @return the users, not including the user.
+     */
+    List<Profile> twoHopNeighborhood(GraphInterface<Profile> network, Profile user) {
+        Profile[] members = around(network, user).watched;
+        return Collections.unmodifiableList(Arrays.asList(members).subList(1, members.length));
+    }
+
+    /**
+     * Gets the friendship distance between two different users if it is at most
+     * MAX_HOPS.
+     *
+     * @param network is the network to search on a miss.
+     * @param a       is a user in the network.
+     * @param b       is another user in the network.
+     * @return the distance, or BEYOND if the users are further apart.
+     */
+    int distance(GraphInterface<Profile> network, Profile a, Profile b) {
+        Pair key = new Pair(a.getId(), b.getId());
+        long stamp;
+        synchronized (this) {
+            Entry hit = entries.get(key);
+            if (hit != null) {
+                hits++;
+                return ((Distance) hit).hops;
+            }
+            misses++;
+            stamp = stamp();
+        }
+
+        Neighborhood near = around(network, a);
+        int hops = near.levels.get(b.getId());
+        if (hops < 0) {
+            hops = BEYOND;
+            Iterator<Profile> friends = network.breadthFirstIterator(b, 1, Integer.MAX_VALUE);
+            while (friends.hasNext()) {
+                if (near.levels.get(friends.next().getId()) == 2) {
+                    hops = 3;
+                    break;
+                }
+            }
+        }
+        int watched = hops == 1 ? 1 : hops == 2 ? near.friendsEnd : near.watched.length;
+        store(new Distance(key, near.watched, watched, hops), stamp);
+        return hops;
+    }
+
+    /**
+     * Notes that a mutation of the network is about to start. Every call must be
+     * followed by one to mutated or cleared.
+     */
+    synchronized void mutating() {
+        started++;
+        inFlight++;
+    }
+
+    /**
+     * Drops the entries that watch a user a finished mutation touched.
+     *
+     * @param touched are the users whose friendships changed.
+     */
+    synchronized void mutated(Collection<Profile> touched) {
+        for (Profile user : touched) {
+            List<Entry> watching = watchers.remove(user.getId());
+            if (watching != null) {
+                references -= watching.size();
+                for (Entry entry : watching) {
+                    if (entry.live) {
+                        entries.remove(entry.key);
+                        drop(entry);
+                        invalidations++;
+                    }
+                }
+            }
+        }
+        inFlight--;
+        if (references > 2 * liveReferences + 1024) {
+            sweep();
+        }
+    }
+
+    /**
+     * Drops every entry after a finished mutation emptied the network.
+     */
+    synchronized void cleared() {
+        invalidations += entries.size();
+        entries.clear();
+        watchers.clear();
+        references = 0;
+        liveReferences = 0;
+        inFlight--;
+    }
+
+    /**
+     * Reads the counters of the cache.
+     *
+     * @return the counters.
+     */
+    synchronized CacheStatistics statistics() {
+        return new CacheStatistics(hits, misses, evictions, invalidations, entries.size(), capacity);
+    }
+
+    /**
+     * Helper function that gets the users within two friendships of a user with
+     * their distances.
+     *
+     * @param network is the network to search on a miss.
+     * @param user    is a user in the network.
+     * @return the neighborhood.
+     */
+    private Neighborhood around(GraphInterface<Profile> network, Profile user) {
+        Long key = user.getId();
+        long stamp;
+        synchronized (this) {
+            Entry hit = entries.get(key);
+            if (hit != null) {
+                hits++;
+                return (Neighborhood) hit;
+            }
+            misses++;
+            stamp = stamp();
+        }
+
+        List<Profile> members = new ArrayList<Profile>();
+        Iterator<Profile> friends = network.breadthFirstIterator(user, 1, Integer.MAX_VALUE);
+        while (friends.hasNext()) {
+            members.add(friends.next());
+        }
+        int friendsEnd = members.size();
+        LongIntHashMap levels = new LongIntHashMap(friendsEnd * 4, -1);
+        for (int i = 0; i < friendsEnd; i++) {
+            levels.put(members.get(i).getId(), i == 0 ? 0 : 1);
+        }
+        Iterator<Profile> twoHops = network.breadthFirstIterator(user, 2, Integer.MAX_VALUE);
+        while (twoHops.hasNext()) {
+            Profile next = twoHops.next();
+            if (!levels.containsKey(next.getId())) {
+                levels.put(next.getId(), 2);
+                members.add(next);
+            }
+        }
+        Neighborhood near = new Neighborhood(key, members.toArray(new Profile[0]), friendsEnd, levels);
+        store(near, stamp);
+        return near;
+    }
+
+    /**
+     * Helper function that gets the number of started mutations if none is in
+     * progress.
+     *
+     * @return the stamp to store an entry with, or -1 if a mutation is in
+     *         progress.
+     */
+    private long stamp() {
+        return inFlight > 0 ? -1 : started;
+    }
+
+    /**
+     * Helper function that adds an entry unless a mutation started since its
+     * search did, evicting the least recently used entries beyond the capacity.
+     *
+     * @param entry is the entry.
+     * @param stamp is the stamp taken before the search.
+     */
+    private synchronized void store(Entry entry, long stamp) {
+        if (stamp < 0 || stamp != stamp()) {
+            return;
+        }
+        Entry previous = entries.put(entry.key, entry);
+        if (previous != null) {
+            drop(previous);
+        }
+        for (int i = 0; i < entry.watchedCount; i++) {
+            watchers.computeIfAbsent(entry.watched[i].getId(), id -> new ArrayList<Entry>(2)).add(entry);
+        }
+        references += entry.watchedCount;
+        liveReferences += entry.watchedCount;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > capacity) {
+            Entry evicted = eldest.next();
+            eldest.remove();
+            drop(evicted);
+            evictions++;
+        }
+    }
+
+    /**
+     * Helper function that marks an entry as no longer held.
+     *
+     * @param entry is the entry.
+     */
+    private void drop(Entry entry) {
+        entry.live = false;
+        liveReferences -= entry.watchedCount;
+    }
+
+    /**
+     * Helper function that removes dropped entries from the watcher lists.
+     */
+    private void sweep() {
+        Iterator<List<Entry>> lists = watchers.values().iterator();
+        while (lists.hasNext()) {
+            List<Entry> watching = lists.next();
+            watching.removeIf(entry -> !entry.live);
+            if (watching.isEmpty()) {
+                lists.remove();
+            }
+        }
+        references = liveReferences;
+    }
+
+    /**
+     * This is a cached result with the users it watches.
+     */
+    private static class Entry {
+
+        /**
+         * Key of the entry.
+         */
+        final Object key;
+
+        /**
+         * The watched users are the first watchedCount of these.
+         */
+        final Profile[] watched;
+
+        /**
+         * Number of watched users.
+         */
+        final int watchedCount;
+
+        /**
+         * False once the entry is evicted or invalidated.
+         */
+        boolean live = true;
+
+        /**
+         * Constructor for an entry.
+         *
+         * @param key          is the key.
+         * @param watched      holds the watched users first.
+         * @param watchedCount is the number of watched users.
+         */
+        Entry(Object key, Profile[] watched, int watchedCount) {
+            this.key = key;
+            this.watched = watched;
+            this.watchedCount = watchedCount;
+        }
+    }
+
+    /**
+     * This is the users within two friendships of a user, the user first, then
+     * the friends, then their friends. It watches all of them.
+     */
+    private static final class Neighborhood extends Entry {
+
+        /**
+         * Position after the last friend in watched.
+         */
+        final int friendsEnd;
+
+        /**
+         * Distance of each user id in watched.
+         */
+        final LongIntHashMap levels;
+
+        /**
+         * Constructor for a neighborhood.
+         *
+         * @param key        is the user id.
+         * @param members    are the users by distance.
+         * @param friendsEnd is the position after the last friend.
+         * @param levels     is the distance of each user id.
+         */
+        Neighborhood(Long key, Profile[] members, int friendsEnd, LongIntHashMap levels) {
+            super(key, members, members.length);
+            this.friendsEnd = friendsEnd;
+            this.levels = levels;
+        }
+    }
+
+    /**
+     * This is the distance between two users. It shares the user array of the
+     * neighborhood of one end and watches the users within hops - 1 of it: a
+     * friendship that shortens the distance, or that lies on every shortest
+     * path, has an end among them.
+     */
+    private static final class Distance extends Entry {
+
+        /**
+         * The distance, or BEYOND.
+         */
+        final int hops;
+
+        /**
+         * Constructor for a distance.
+         *
+         * @param key          is the pair of user ids.
+         * @param watched      holds the watched users first.
+         * @param watchedCount is the number of watched users.
+         * @param hops         is the distance.
+         */
+        Distance(Pair key, Profile[] watched, int watchedCount, int hops) {
+            super(key, watched, watchedCount);
+            this.hops = hops;
+        }
+    }
+
+    /**
+     * This is the key of a distance, the same in both directions.
+     */
+    private static final class Pair {
+
+        /**
+         * The smaller user id.
+         */
+        private final long low;
+
+        /**
+         * The larger user id.
+         */
+        private final long high;
+
+        /**
+         * Constructor for the key of two user ids.
+         *
+         * @param a is a user id.
+         * @param b is a user id.
+         */
+        Pair(long a, long b) {
+            this.low = Math.min(a, b);
+            this.high = Math.max(a, b);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Pair && ((Pair) obj).low == low && ((Pair) obj).high == high;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return Long.hashCode(low * 0x9E3779B97F4A7C15L + high);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class indexes the friends of every user as a sorted array of user ids,
+ * so that whether two users are within two friendships of each other, and how
+ * many friends they have in common, is one merge of two arrays instead of a
+ * search through the network. Users without friends have no array.
+ *
+ * The arrays are never changed once published: a friendship that is created or
+ * removed replaces the arrays of its two users with updated copies. Lookups
+ * therefore take no lock and always see a whole array, though they may see one
+ * end of a friendship that is being updated before the other.
+ *
+ * @author amandhillon
+ *
+ */
+final class FriendIndex {
+
+    /**
+     * Array of friends for a user without friends.
+     */
+    private static final long[] NONE = new long[0];
+
+    /**
+     * Sorted friend ids of each user id.
+     */
+    private final ConcurrentHashMap<Long, long[]> friends;
+
+    /**
+     * Constructor for the index of a snapshot.
+     *
+     * @param graph is the snapshot of the network.
+     */
+    FriendIndex(GraphSnapshot<Profile> graph) {
+        int bound = graph.indexBound();
+        this.friends = new ConcurrentHashMap<Long, long[]>(Math.max(16, bound * 2));
+        for (int v = 0; v < bound; v++) {
+            int degree = graph.degree(v);
+            if (degree > 0) {
+                int[] adj = graph.adjacency(v);
+                int from = graph.adjacencyStart(v);
+                long[] ids = new long[degree];
+                for (int i = 0; i < degree; i++) {
+                    ids[i] = graph.labelAt(adj[from + i]).getId();
+                }
+                Arrays.sort(ids);
+                friends.put(graph.labelAt(v).getId(), ids);
+            }
+        }
+    }
+
+    /**
+     * Adds a new friendship to the arrays of both users.
+     *
+     * @param a is a user.
+     * @param b is a user.
+     */
+    void friendshipCreated(Profile a, Profile b) {
+        long ia = a.getId();
+        long ib = b.getId();
+        friends.compute(ia, (id, ids) -> with(ids, ib));
+        friends.compute(ib, (id, ids) -> with(ids, ia));
+    }
+
+    /**
+     * Removes a friendship from the arrays of both users.
+     *
+     * @param a is a user.
+     * @param b is a user.
+     */
+    void friendshipRemoved(Profile a, Profile b) {
+        long ia = a.getId();
+        long ib = b.getId();
+        friends.computeIfPresent(ia, (id, ids) -> without(ids, ib));
+        friends.computeIfPresent(ib, (id, ids) -> without(ids, ia));
+    }
+
+    /**
+     * Removes a user together with all of their friendships.
+     *
+     * @param user is the removed user.
+     */
+    void userRemoved(Profile user) {
+        long id = user.getId();
+        long[] removed = friends.remove(id);
+        if (removed != null) {
+            for (long friend : removed) {
+                friends.computeIfPresent(friend, (key, ids) -> without(ids, id));
+            }
+        }
+    }
+
+    /**
+     * Removes every user.
+     */
+    void clear() {
+        friends.clear();
+    }
+
+    /**
+     * Gets the sorted friend ids of a user.
+     *
+     * @param id is the user id.
+     * @return the friend ids, not to be changed, empty if the user has none.
+     */
+    long[] friendsOf(long id) {
+        long[] ids = friends.get(id);
+        return ids == null ? NONE : ids;
+    }
+
+    /**
+     * Gets the friendship distance between two users if it is at most two.
+     *
+     * @param a is a user id.
+     * @param b is a user id.
+     * @return 0, 1 or 2, or -1 if the users are further apart.
+     */
+    int distanceWithinTwo(long a, long b) {
+        if (a == b) {
+            return 0;
+        }
+        long[] fa = friendsOf(a);
+        long[] fb = friendsOf(b);
+        if (fa.length == 0 || fb.length == 0) {
+            return -1;
+        }
+        if (Arrays.binarySearch(fa.length <= fb.length ? fa : fb, fa.length <= fb.length ? b : a) >= 0) {
+            return 1;
+        }
+        return hasCommon(fa, fb) ? 2 : -1;
+    }
+
+    /**
+     * Counts the friends two users have in common.
+     *
+     * @param a is a user id.
+     * @param b is a user id.
+     * @return the number of mutual friends.
+     */
+    int mutualFriendCount(long a, long b) {
+        return SortedIntersection.intersect(friendsOf(a), friendsOf(b), null);
+    }
+
+    /**
+     * Finds the friends two users have in common.
+     *
+     * @param a is a user id.
+     * @param b is a user id.
+     * @return the sorted ids of the mutual friends.
+     */
+    long[] mutualFriends(long a, long b) {
+        long[] fa = friendsOf(a);
+        long[] fb = friendsOf(b);
+        long[] common = new long[Math.min(fa.length, fb.length)];
+        int count = SortedIntersection.intersect(fa, fb, common);
+        return count == common.length ? common : Arrays.copyOf(common, count);
+    }
+
+    /**
+     * Counts the friends one user has in common with each of many users.
+     *
+     * @param viewer  is the user id the counts are relative to.
+     * @param targets are the user ids to count for.
+     * @return the count of each target in order.
+     */
+    int[] mutualFriendCounts(long viewer, long[] targets) {
+        long[] fv = friendsOf(viewer);
+        int[] counts = new int[targets.length];
+        if (fv.length > 0) {
+            for (int k = 0; k < targets.length; k++) {
+                counts[k] = SortedIntersection.intersect(fv, friendsOf(targets[k]), null);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Helper function that checks if two sorted arrays share an id, stopping at
+     * the first one.
+     *
+     * @param fa is a sorted array.
+     * @param fb is a sorted array.
+     * @return true if an id is in both.
+     */
+    private static boolean hasCommon(long[] fa, long[] fb) {
+        if (fa[fa.length - 1] < fb[0] || fb[fb.length - 1] < fa[0]) {
+            return false;
+        }
+        int i = 0;
+        int j = 0;
+        while (i < fa.length && j < fb.length) {
+            if (fa[i] < fb[j]) {
+                i++;
+            } else if (fa[i] > fb[j]) {
+                j++;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Helper function that copies a sorted array with an id added.
+     *
+     * @param ids is the sorted array, or null for none.
+     * @param id  is the id to add.
+     * @return the new array, or ids if it already holds the id.
+     */
+    private static long[] with(long[] ids, long id) {
+        if (ids == null) {
+            return new long[] { id };
+        }
+        int at = Arrays.binarySearch(ids, id);
+        if (at >= 0) {
+            return ids;
+        }
+        at = -at - 1;
+        long[] copy = new long[ids.length + 1];
+        System.arraycopy(ids, 0, copy, 0, at);
+        copy[at] = id;
+        System.arraycopy(ids, at, copy, at + 1, ids.length - at);
+        return copy;
+    }
+
+    /**
+     * Helper function that copies a sorted array with an id removed.
+     *
+     * @param ids is the sorted array.
+     * @param id  is the id to remove.
+     * @return the new array, ids if it does not hold the id, or null if it
+     *         becomes empty.
+     */
+    private static long[] without(long[] ids, long id) {
+        int at = Arrays.binarySearch(ids, id);
+        if (at < 0) {
+            return ids;
+        }
+        if (ids.length == 1) {
+            return null;
+        }
+        long[] copy = new long[ids.length - 1];
+        System.arraycopy(ids, 0, copy, 0, at);
+        System.arraycopy(ids, at + 1, copy, at, copy.length - at);
+        return copy;
+    }
+}
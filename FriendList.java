@@ -0,0 +1,245 @@
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.RandomAccess;
+
+/**
+ * This class is the read-only friend list of a profile, a live view of the
+ * neighbors of the profile in the graph that backs its network. Nothing is
+ * copied, so the list always matches the friendships in the graph, and
+ * membership is answered by the graph's own edge lookup. A list reads the graph
+ * without locking it, so it is meant for the thread that changes the network,
+ * or for readers that keep the network from changing while they use it.
+ *
+ * @author amandhillon
+ *
+ */
+abstract class FriendList extends AbstractList<Profile> {
+
+    /**
+     * The graph that holds the friendships.
+     */
+    protected final GraphInterface<Profile> graph;
+
+    /**
+     * The profile whose friends are listed.
+     */
+    protected final Profile owner;
+
+    /**
+     * Constructor for a friend list.
+     *
+     * @param graph is the graph that holds the friendships.
+     * @param owner is the profile whose friends are listed.
+     */
+    protected FriendList(GraphInterface<Profile> graph, Profile owner) {
+        this.graph = graph;
+        this.owner = owner;
+    }
+
+    /**
+     * Creates the friend list of a profile in an indexed graph.
+     *
+     * @param graph   is the graph that holds the friendships.
+     * @param indexed is the same graph, as an indexed graph.
+     * @param owner   is the profile whose friends are listed.
+     * @return the friend list.
+     */
+    static FriendList of(GraphInterface<Profile> graph, IndexedGraph<Profile> indexed, Profile owner) {
+        return new Indexed(graph, indexed, owner);
+    }
+
+    /**
+     * Creates the friend list of a vertex in a graph of vertex objects.
+     *
+     * @param graph  is the graph that holds the friendships.
+     * @param vertex is the vertex of the profile, or null if it is not in the
+     *               graph.
+     * @return the friend list.
+     */
+    static FriendList of(GraphInterface<Profile> graph, Vertex<Profile> vertex) {
+        return new Linked(graph, vertex);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Profile && graph.hasEdge(owner, (Profile) o);
+    }
+
+    /**
+     * This is the friend list of a profile in an indexed graph, reading the
+     * neighbor array of the profile's index directly.
+     */
+    private static final class Indexed extends FriendList implements RandomAccess {
+
+        /**
+         * The graph, as an indexed graph.
+         */
+        private final IndexedGraph<Profile> indexed;
+
+        /**
+         * Index of the owner when it was last looked up.
+         */
+        private int index;
+
+        /**
+         * Constructor for the friend list of a profile in an indexed graph.
+         *
+         * @param graph   is the graph that holds the friendships.
+         * @param indexed is the same graph, as an indexed graph.
+         * @param owner   is the profile whose friends are listed.
+         */
+        private Indexed(GraphInterface<Profile> graph, IndexedGraph<Profile> indexed, Profile owner) {
+            super(graph, owner);
+            this.indexed = indexed;
+            this.index = indexed.indexOf(owner);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Profile get(int position) {
+            int i = index();
+            if (i < 0 || position < 0 || position >= indexed.degree(i)) {
+                throw new IndexOutOfBoundsException("Index: " + position + ", Size: " + size());
+            }
+            return indexed.labelAt(indexed.adjacency(i)[indexed.adjacencyStart(i) + position]);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            int i = index();
+            return i < 0 ? 0 : indexed.degree(i);
+        }
+
+        /**
+         * Helper function that finds the index of the owner, looking it up again
+         * only if the owner was removed or moved since.
+         *
+         * @return the index of the owner, or -1 if it is not in the graph.
+         */
+        private int index() {
+            int i = index;
+            if (i < 0 || i >= indexed.indexBound() || indexed.labelAt(i) != owner) {
+                i = indexed.indexOf(owner);
+                index = i;
+            }
+            return i;
+        }
+    }
+
+    /**
+     * This is the friend list of a vertex in a graph of vertex objects, walking
+     * the neighbor iterator of the vertex. Positional access reads a copy of the
+     * neighbors, taken again only once the edges of the vertex change.
+     */
+    private static final class Linked extends FriendList {
+
+        /**
+         * The vertex of the owner, null if it is not in the graph.
+         */
+        private final Vertex<Profile> vertex;
+
+        /**
+         * The neighbors of the vertex when they were last copied, or null.
+         */
+        private Profile[] copy;
+
+        /**
+         * Number of edge changes of the vertex when the copy was taken.
+         */
+        private int copied;
+
+        /**
+         * Constructor for the friend list of a vertex.
+         *
+         * @param graph  is the graph that holds the friendships.
+         * @param vertex is the vertex of the profile, or null.
+         */
+        private Linked(GraphInterface<Profile> graph, Vertex<Profile> vertex) {
+            super(graph, vertex == null ? null : vertex.getLabel());
+            this.vertex = vertex;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Profile get(int position) {
+            Profile[] friends = friends();
+            if (position < 0 || position >= friends.length) {
+                throw new IndexOutOfBoundsException("Index: " + position + ", Size: " + friends.length);
+            }
+            return friends[position];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return vertex == null ? 0 : vertex.getNumberOfNeighbors();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean contains(Object o) {
+            return vertex != null && super.contains(o);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Iterator<Profile> iterator() {
+            if (vertex == null) {
+                return Collections.emptyIterator();
+            }
+            Iterator<VertexInterface<Profile>> neighbors = vertex.getNeighborIterator();
+            return new Iterator<Profile>() {
+                @Override
+                public boolean hasNext() {
+                    return neighbors.hasNext();
+                }
+
+                @Override
+                public Profile next() {
+                    return neighbors.next().getLabel();
+                }
+            };
+        }
+
+        /**
+         * Helper function that gets the neighbors of the vertex in order, copying
+         * them again only if an edge of the vertex changed since the last copy.
+         *
+         * @return the neighbors of the vertex.
+         */
+        private Profile[] friends() {
+            if (vertex == null) {
+                return new Profile[0];
+            }
+            Profile[] friends = copy;
+            int modifications = vertex.getModifications();
+            if (friends == null || copied != modifications) {
+                friends = new Profile[vertex.getNumberOfNeighbors()];
+                Iterator<Profile> neighbors = iterator();
+                for (int i = 0; i < friends.length; i++) {
+                    friends[i] = neighbors.next();
+                }
+                copy = friends;
+                copied = modifications;
+            }
+            return friends;
+        }
+    }
+}
@@ -0,0 +1,369 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * This class ranks friend-of-friend candidates for a user. It counts the mutual
+ * friends of every candidate in the per-thread TraversalScratch, skipping the
+ * user and existing friends, and keeps the best candidates in a bounded heap,
+ * so a query costs the sum of the friends' degrees plus n log k. Graphs that
+ * are not indexed are walked through their friend lists instead, counting in a
+ * hash map, so no snapshot has to be built for one user.
+ *
+ * @author amandhillon
+ *
+ */
+public final class FriendRecommender {
+
+    /**
+     * This interface scores a candidate from its mutual friends. The score is the
+     * sum of contribution over the mutual friends, passed through finish.
+     *
+     * @author amandhillon
+     *
+     */
+    public interface Scoring {
+
+        /**
+         * Gets the share of the score one mutual friend contributes.
+         *
+         * @param mutualFriendDegree is the number of friends of the mutual friend.
+         * @return the contribution of the mutual friend.
+         */
+        double contribution(int mutualFriendDegree);
+
+        /**
+         * Turns the summed contributions into the final score.
+         *
+         * @param sum             is the sum of the contributions.
+         * @param mutualFriends   is the number of mutual friends.
+         * @param userDegree      is the number of friends of the user.
+         * @param candidateDegree is the number of friends of the candidate.
+         * @return the score of the candidate, higher is better.
+         */
+        double finish(double sum, int mutualFriends, int userDegree, int candidateDegree);
+    }
+
+    /**
+     * Ranks by the number of mutual friends.
+     */
+    public static final Scoring MUTUAL_FRIENDS = new Scoring() {
+        @Override
+        public double contribution(int mutualFriendDegree) {
+            return 1.0;
+        }
+
+        @Override
+        public double finish(double sum, int mutualFriends, int userDegree, int candidateDegree) {
+            return mutualFriends;
+        }
+    };
+
+    /**
+     * Ranks by Adamic-Adar: mutual friends with few friends count more.
+     */
+    public static final Scoring ADAMIC_ADAR = new Scoring() {
+        @Override
+        public double contribution(int mutualFriendDegree) {
+            return 1.0 / Math.log(Math.max(2, mutualFriendDegree));
+        }
+
+        @Override
+        public double finish(double sum, int mutualFriends, int userDegree, int candidateDegree) {
+            return sum;
+        }
+    };
+
+    /**
+     * Ranks by Jaccard similarity of the two friend sets.
+     */
+    public static final Scoring JACCARD = new Scoring() {
+        @Override
+        public double contribution(int mutualFriendDegree) {
+            return 1.0;
+        }
+
+        @Override
+        public double finish(double sum, int mutualFriends, int userDegree, int candidateDegree) {
+            return (double) mutualFriends / (userDegree + candidateDegree - mutualFriends);
+        }
+    };
+
+    /**
+     * Marks the user and existing friends in the scratch.
+     */
+    private static final int EXCLUDED = -1;
+
+    /**
+     * This class only has static methods.
+     */
+    private FriendRecommender() {
+    }
+
+    /**
+     * Finds the best ranked friend-of-friend candidates for a user.
+     *
+     * @param <T>     is type of vertex.
+     * @param graph   is the graph of friendships.
+     * @param user    is the user to recommend friends to.
+     * @param limit   is the largest number of candidates to return.
+     * @param scoring ranks the candidates.
+     * @return the candidates, best first, or null if the user is not in the
+     *         graph.
+     * @throws IllegalArgumentException if limit is negative.
+     */
+    public static <T> List<T> recommend(IndexedGraph<T> graph, T user, int limit, Scoring scoring) {
+        checkLimit(limit);
+        int u = graph.indexOf(user);
+        if (u < 0) {
+            return null;
+        }
+        TraversalScratch scratch = TraversalScratch.begin(graph.indexBound());
+        try {
+            int[] count = scratch.distance;
+            double[] sum = scratch.weight;
+            int[] candidates = scratch.queue;
+            int found = 0;
+
+            scratch.visit(u);
+            count[u] = EXCLUDED;
+            int[] adj = graph.adjacency(u);
+            int from = graph.adjacencyStart(u);
+            int to = from + graph.degree(u);
+            for (int i = from; i < to; i++) {
+                scratch.visit(adj[i]);
+                count[adj[i]] = EXCLUDED;
+            }
+
+            for (int i = from; i < to; i++) {
+                int friend = adj[i];
+                double share = scoring.contribution(graph.degree(friend));
+                int[] friendAdj = graph.adjacency(friend);
+                int friendFrom = graph.adjacencyStart(friend);
+                int friendTo = friendFrom + graph.degree(friend);
+                for (int k = friendFrom; k < friendTo; k++) {
+                    int candidate = friendAdj[k];
+                    if (scratch.visit(candidate)) {
+                        count[candidate] = 1;
+                        sum[candidate] = share;
+                        candidates[found++] = candidate;
+                    } else if (count[candidate] != EXCLUDED) {
+                        count[candidate]++;
+                        sum[candidate] += share;
+                    }
+                }
+            }
+
+            int userDegree = graph.degree(u);
+            for (int c = 0; c < found; c++) {
+                int candidate = candidates[c];
+                sum[candidate] = scoring.finish(sum[candidate], count[candidate], userDegree, graph.degree(candidate));
+            }
+            int[] best = best(sum, candidates, found, limit);
+            List<T> result = new ArrayList<T>(best.length);
+            for (int candidate : best) {
+                result.add(graph.labelAt(candidate));
+            }
+            return result;
+        } finally {
+            scratch.end();
+        }
+    }
+
+    /**
+     * Finds the best ranked friend-of-friend candidates for a user of a graph
+     * that is not indexed, reading the friends of each user from a function.
+     * Ties are broken by the order in which the candidates are first reached.
+     *
+     * @param <T>       is type of vertex.
+     * @param user      is the user to recommend friends to, who must be in the
+     *                  graph.
+     * @param friendsOf gets the friends of a user.
+     * @param limit     is the largest number of candidates to return.
+     * @param scoring   ranks the candidates.
+     * @return the candidates, best first.
+     * @throws IllegalArgumentException if limit is negative.
+     */
+    public static <T> List<T> recommend(T user, Function<T, ? extends Collection<T>> friendsOf, int limit,
+            Scoring scoring) {
+        checkLimit(limit);
+        Collection<T> friends = friendsOf.apply(user);
+        Map<T, Integer> positions = new HashMap<T, Integer>();
+        positions.put(user, EXCLUDED);
+        for (T friend : friends) {
+            positions.put(friend, EXCLUDED);
+        }
+        List<T> candidates = new ArrayList<T>();
+        int[] count = new int[16];
+        double[] sum = new double[16];
+
+        for (T friend : friends) {
+            Collection<T> friendsOfFriend = friendsOf.apply(friend);
+            double share = scoring.contribution(friendsOfFriend.size());
+            for (T candidate : friendsOfFriend) {
+                Integer position = positions.get(candidate);
+                if (position == null) {
+                    int found = candidates.size();
+                    if (found == count.length) {
+                        count = Arrays.copyOf(count, found * 2);
+                        sum = Arrays.copyOf(sum, found * 2);
+                    }
+                    positions.put(candidate, found);
+                    candidates.add(candidate);
+                    count[found] = 1;
+                    sum[found] = share;
+                } else if (position != EXCLUDED) {
+                    count[position]++;
+                    sum[position] += share;
+                }
+            }
+        }
+
+        int found = candidates.size();
+        double[] scores = new double[found];
+        int[] order = new int[found];
+        for (int c = 0; c < found; c++) {
+            scores[c] = scoring.finish(sum[c], count[c], friends.size(), friendsOf.apply(candidates.get(c)).size());
+            order[c] = c;
+        }
+        int[] best = best(scores, order, found, limit);
+        List<T> result = new ArrayList<T>(best.length);
+        for (int position : best) {
+            result.add(candidates.get(position));
+        }
+        return result;
+    }
+
+    /**
+     * Helper function that checks the number of candidates asked for.
+     *
+     * @param limit is the largest number of candidates to return.
+     * @throws IllegalArgumentException if limit is negative.
+     */
+    private static void checkLimit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit " + limit);
+        }
+    }
+
+    /**
+     * Helper function that picks the best candidates with a bounded heap that
+     * keeps the worst of the best on top.
+     *
+     * @param scores is the score of each candidate, found at its key.
+     * @param keys   is the key of each candidate, which breaks ties, lower first.
+     * @param found  is the number of candidates.
+     * @param limit  is the largest number of candidates to pick.
+     * @return the keys of the picked candidates, best first.
+     */
+    private static int[] best(double[] scores, int[] keys, int found, int limit) {
+        int capacity = Math.min(limit, found);
+        double[] heapScore = new double[capacity];
+        int[] heapIndex = new int[capacity];
+        int size = 0;
+        for (int c = 0; c < found; c++) {
+            double score = scores[keys[c]];
+            if (size < capacity) {
+                heapScore[size] = score;
+                heapIndex[size] = keys[c];
+                siftUp(heapScore, heapIndex, size++);
+            } else if (capacity > 0 && better(score, keys[c], heapScore[0], heapIndex[0])) {
+                heapScore[0] = score;
+                heapIndex[0] = keys[c];
+                siftDown(heapScore, heapIndex, 0, size);
+            }
+        }
+
+        int[] ranked = new int[size];
+        while (size > 0) {
+            ranked[size - 1] = heapIndex[0];
+            size--;
+            heapScore[0] = heapScore[size];
+            heapIndex[0] = heapIndex[size];
+            siftDown(heapScore, heapIndex, 0, size);
+        }
+        return ranked;
+    }
+
+    /**
+     * Helper function that orders candidates by score, breaking ties by index so
+     * the ranking is stable.
+     *
+     * @param score      is the score of the first candidate.
+     * @param index      is the index of the first candidate.
+     * @param otherScore is the score of the second candidate.
+     * @param otherIndex is the index of the second candidate.
+     * @return true if the first candidate ranks above the second.
+     */
+    private static boolean better(double score, int index, double otherScore, int otherIndex) {
+        return score > otherScore || (score == otherScore && index < otherIndex);
+    }
+
+    /**
+     * Helper function that moves a heap entry up until its parent ranks above it.
+     * The heap keeps the worst candidate on top.
+     *
+     * @param score    holds the scores of the heap.
+     * @param index    holds the indices of the heap.
+     * @param position is the entry to move.
+     */
+    private static void siftUp(double[] score, int[] index, int position) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!better(score[parent], index[parent], score[position], index[position])) {
+                return;
+            }
+            swap(score, index, parent, position);
+            position = parent;
+        }
+    }
+
+    /**
+     * Helper function that moves a heap entry down until both children rank above
+     * it.
+     *
+     * @param score    holds the scores of the heap.
+     * @param index    holds the indices of the heap.
+     * @param position is the entry to move.
+     * @param size     is the number of entries in the heap.
+     */
+    private static void siftDown(double[] score, int[] index, int position, int size) {
+        while (true) {
+            int worst = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < size && better(score[worst], index[worst], score[left], index[left])) {
+                worst = left;
+            }
+            if (right < size && better(score[worst], index[worst], score[right], index[right])) {
+                worst = right;
+            }
+            if (worst == position) {
+                return;
+            }
+            swap(score, index, worst, position);
+            position = worst;
+        }
+    }
+
+    /**
+     * Helper function that swaps two heap entries.
+     *
+     * @param score holds the scores of the heap.
+     * @param index holds the indices of the heap.
+     * @param i     is the first entry.
+     * @param j     is the second entry.
+     */
+    private static void swap(double[] score, int[] index, int i, int j) {
+        double s = score[i];
+        score[i] = score[j];
+        score[j] = s;
+        int x = index[i];
+        index[i] = index[j];
+        index[j] = x;
+    }
+}
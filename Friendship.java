@@ -0,0 +1,92 @@
+/**
+ * This class is an immutable friendship between two users, as handed to the
+ * batch operations of MasonConnect. Friendships are undirected, so a friendship
+ * equals the one with its users swapped.
+ * 
+ * @author amandhillon
+ *
+ */
+public final class Friendship {
+
+    /**
+     * The first user.
+     */
+    private final Profile first;
+
+    /**
+     * The second user.
+     */
+    private final Profile second;
+
+    /**
+     * Constructor for a friendship.
+     * 
+     * @param first  is the first user.
+     * @param second is the second user.
+     */
+    private Friendship(Profile first, Profile second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    /**
+     * Creates a friendship between two users.
+     * 
+     * @param first  is the first user.
+     * @param second is the second user.
+     * @return the friendship.
+     */
+    public static Friendship of(Profile first, Profile second) {
+        return new Friendship(first, second);
+    }
+
+    /**
+     * Gets the first user.
+     * 
+     * @return the first user.
+     */
+    public Profile getFirst() {
+        return first;
+    }
+
+    /**
+     * Gets the second user.
+     * 
+     * @return the second user.
+     */
+    public Profile getSecond() {
+        return second;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Friendship)) {
+            return false;
+        }
+        Friendship other = (Friendship) obj;
+        return (first.equals(other.first) && second.equals(other.second))
+                || (first.equals(other.second) && second.equals(other.first));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return first.hashCode() ^ second.hashCode();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return first.getId() + "-" + second.getId();
+    }
+}
@@ -0,0 +1,111 @@
+import java.util.Arrays;
+
+/**
+ * This class is the immutable result of a friendship distance query: the number
+ * of hops between two users and the user ids along one shortest path, from the
+ * first user to the second.
+ * 
+ * @author amandhillon
+ *
+ */
+public final class FriendshipPath {
+
+    /**
+     * The result for two users that are not connected.
+     */
+    public static final FriendshipPath UNREACHABLE = new FriendshipPath(new long[0]);
+
+    /**
+     * User ids along the path, empty if there is none.
+     */
+    private final long[] userIds;
+
+    /**
+     * Constructor for a path.
+     * 
+     * @param userIds are the user ids along the path, owned by this object.
+     */
+    private FriendshipPath(long[] userIds) {
+        this.userIds = userIds;
+    }
+
+    /**
+     * Creates a path from the user ids along it.
+     * 
+     * @param userIds are the user ids from the first user to the second.
+     * @return the path, or UNREACHABLE if there are no ids.
+     */
+    public static FriendshipPath of(long... userIds) {
+        return userIds.length == 0 ? UNREACHABLE : new FriendshipPath(userIds.clone());
+    }
+
+    /**
+     * Gets the number of hops between the two users.
+     * 
+     * @return the friendship distance, or -1 if the users are not connected.
+     */
+    public int getDistance() {
+        return userIds.length - 1;
+    }
+
+    /**
+     * Checks if the two users are connected.
+     * 
+     * @return true if there is a path.
+     */
+    public boolean isReachable() {
+        return userIds.length > 0;
+    }
+
+    /**
+     * Gets the number of users on the path, both ends included.
+     * 
+     * @return the number of users on the path.
+     */
+    public int length() {
+        return userIds.length;
+    }
+
+    /**
+     * Gets the user id at a position of the path without copying the path.
+     * 
+     * @param position is the position, 0 being the first user.
+     * @return the user id at the position.
+     */
+    public long userIdAt(int position) {
+        return userIds[position];
+    }
+
+    /**
+     * Gets a copy of the user ids along the path.
+     * 
+     * @return the user ids from the first user to the second.
+     */
+    public long[] getPath() {
+        return userIds.clone();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return this == obj || (obj instanceof FriendshipPath && Arrays.equals(userIds, ((FriendshipPath) obj).userIds));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(userIds);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "Distance: " + getDistance() + " Path: " + Arrays.toString(userIds);
+    }
+}
@@ -1,4 +1,5 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Queue;
@@ -26,6 +27,22 @@ public class Graph<T> implements GraphInterface<T> {
      */
     protected int numOfEdges;
 
+    /**
+     * One past the largest dense index given to a vertex so far.
+     */
+    protected int indexBound;
+
+    /**
+     * Indices of removed vertices, handed out again before new ones so that
+     * indexBound stays near the number of vertices.
+     */
+    private int[] freeIndices;
+
+    /**
+     * Number of entries in freeIndices.
+     */
+    private int freeCount;
+
     /**
      * Default constructor for graph.
      */
@@ -33,6 +50,9 @@ public class Graph<T> implements GraphInterface<T> {
 
         vertices = new HashMap<T, VertexInterface<T>>();
         this.numOfEdges = 0;
+        this.indexBound = 0;
+        this.freeIndices = new int[0];
+        this.freeCount = 0;
 
     }
 
@@ -41,9 +61,39 @@ public class Graph<T> implements GraphInterface<T> {
      */
     @Override
     public boolean addVertex(T vertexLabel) {
-        VertexInterface<T> toAdd = vertices.put(vertexLabel, new Vertex<T>(vertexLabel));
+        if (vertices.containsKey(vertexLabel)) {
+            return false;
+        }
+        Vertex<T> toAdd = new Vertex<T>(vertexLabel);
+        toAdd.setIndex(allocateIndex());
+        vertices.put(vertexLabel, toAdd);
 
-        return toAdd == null;
+        return true;
+    }
+
+    /**
+     * Hands out the dense index of a new vertex, reusing the index of a removed
+     * vertex if there is one.
+     * 
+     * @return the index for the vertex.
+     */
+    protected int allocateIndex() {
+        if (freeCount > 0) {
+            return freeIndices[--freeCount];
+        }
+        return indexBound++;
+    }
+
+    /**
+     * Takes back the dense index of a removed vertex.
+     * 
+     * @param index is the index of the removed vertex.
+     */
+    protected void releaseIndex(int index) {
+        if (freeCount == freeIndices.length) {
+            freeIndices = Arrays.copyOf(freeIndices, Math.max(16, freeCount * 2));
+        }
+        freeIndices[freeCount++] = index;
     }
 
     /**
@@ -52,30 +102,32 @@ public class Graph<T> implements GraphInterface<T> {
     @Override
     public VertexInterface<T> removeVertex(T vertexLabel) {
         VertexInterface<T> toRemove = vertices.get(vertexLabel);
-        ArrayList<T> edgeVertices = new ArrayList<T>();
-        if (toRemove.getLabel() != null && toRemove != null) {
-            if (toRemove.hasNeighbor()) {
-                Iterator<VertexInterface<T>> neighbor = toRemove.getNeighborIterator();
-
-                while (neighbor.hasNext()) {
-                    VertexInterface<T> curr = neighbor.next();
-                    edgeVertices.add(curr.getLabel());
-                }
-            }
-            for (int i = 0; i < edgeVertices.size(); i++) {
-                toRemove.disconnect(toRemove, i);
-                numOfEdges = numOfEdges - 2;
-
-            }
-
-            vertices.remove(toRemove.getLabel(), toRemove);
-
+        if (toRemove != null) {
+            dropReverseEdges(toRemove);
+            vertices.remove(vertexLabel, toRemove);
+            releaseIndex(toRemove.getIndex());
         }
 
         return toRemove;
 
     }
 
+    /**
+     * Removes the edges of the neighbors of a vertex that lead back to it, one
+     * constant-time map removal each, and uncounts the edges. The vertex keeps
+     * its own edge list.
+     * 
+     * @param toRemove is the vertex being removed.
+     */
+    protected void dropReverseEdges(VertexInterface<T> toRemove) {
+        Iterator<VertexInterface<T>> neighbor = toRemove.getNeighborIterator();
+        Iterator<Double> weight = toRemove.getWeightIterator();
+        while (neighbor.hasNext()) {
+            neighbor.next().disconnect(toRemove, weight.next());
+            numOfEdges = numOfEdges - 2;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -86,8 +138,7 @@ public class Graph<T> implements GraphInterface<T> {
         VertexInterface<T> beginVertex = vertices.get(begin);
         VertexInterface<T> endVertex = vertices.get(end);
 
-        if ((beginVertex != null) && (endVertex != null)
-                && (!(doesExist(begin, end, edgeWeight) || doesExist(end, begin, edgeWeight))))
+        if ((beginVertex != null) && (endVertex != null) && !beginVertex.hasNeighbor(endVertex))
             wasAdded = (beginVertex.connect(endVertex, edgeWeight) && endVertex.connect(beginVertex, edgeWeight));
 
         if (wasAdded) {
@@ -130,44 +181,47 @@ public class Graph<T> implements GraphInterface<T> {
      */
     @Override
     public boolean removeEdge(T begin, T end) {
-        return removeEdge(begin, end, 0.0);
+        boolean wasRemoved = false;
+        VertexInterface<T> beginVertex = vertices.get(begin);
+        VertexInterface<T> endVertex = vertices.get(end);
+
+        if ((beginVertex != null) && (endVertex != null))
+            wasRemoved = (beginVertex.disconnect(endVertex) && endVertex.disconnect(beginVertex));
+
+        if (wasRemoved) {
+            numOfEdges = numOfEdges - 2;
+        }
+
+        return wasRemoved;
     }
 
     /**
-     * Helper function to determine the existence of an edge between two vertices.
-     * 
-     * @param begin  vertex within graph.
-     * @param end    vertex within graph.
-     * @param weight is the weight of the edge.
-     * @return true if edge exists otherwise false.
+     * {@inheritDoc}
      */
-    private boolean doesExist(T begin, T end, double weight) {
-        boolean edgeExists = false;
+    @Override
+    public boolean hasEdge(T begin, T end) {
         VertexInterface<T> beginVertex = vertices.get(begin);
         VertexInterface<T> endVertex = vertices.get(end);
 
-        if ((beginVertex != null) && (endVertex != null)) {
-            Iterator<VertexInterface<T>> adj = beginVertex.getNeighborIterator();
-            Iterator<Double> w = beginVertex.getWeightIterator();
-            while (adj.hasNext() && w.hasNext()) {
-                VertexInterface<T> curr = adj.next();
-                Double curr2 = w.next();
-                if (endVertex.equals(curr) && curr2 == weight) {
-                    edgeExists = true;
-                }
-            }
-
-        }
+        return (beginVertex != null) && (endVertex != null) && beginVertex.hasNeighbor(endVertex);
+    }
 
-        return edgeExists;
+    /**
+     * Gets the vertex with the given label.
+     * 
+     * @param vertexLabel is the label of the vertex.
+     * @return the vertex, or null if it is not in this graph.
+     */
+    public VertexInterface<T> getVertex(T vertexLabel) {
+        return vertices.get(vertexLabel);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public boolean hasEdge(T begin, T end) {
-        return doesExist(begin, end, 0.0) || doesExist(end, begin, 0.0);
+    public boolean containsVertex(T vertexLabel) {
+        return vertices.containsKey(vertexLabel);
     }
 
     /**
@@ -214,47 +268,46 @@ public class Graph<T> implements GraphInterface<T> {
     public void clear() {
         vertices.clear();
         numOfEdges = 0;
-    }
-
-    /**
-     * Resets vertices of graph.
-     */
-    private void reset() {
-        for (VertexInterface<T> value : vertices.values()) {
-            value.unvisit();
-            value.setCost(0.0);
-            value.setPredecessor(null);
-        }
+        indexBound = 0;
+        freeCount = 0;
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
+    @SuppressWarnings("unchecked")
     public Queue<T> getBreadthFirstTraversal(T origin) {
 
-        reset();
-        Queue<VertexInterface<T>> queueOfVertices = new LinkedList<VertexInterface<T>>();
-        VertexInterface<T> start = vertices.get(origin);
-        start.visit();
         Queue<T> pathSequence = new LinkedList<T>();
-        pathSequence.add(origin);
-        queueOfVertices.add(start);
+        VertexInterface<T> start = vertices.get(origin);
+        if (start == null) {
+            return pathSequence;
+        }
+        TraversalScratch scratch = TraversalScratch.begin(indexBound);
+        int head = 0;
+        int tail = 0;
+        try {
+            scratch.visit(start.getIndex());
+            pathSequence.add(origin);
+            scratch.vertexQueue[tail++] = start;
 
-        while (!queueOfVertices.isEmpty()) {
-            VertexInterface<T> firstVertex = queueOfVertices.remove();
-            Iterator<VertexInterface<T>> adj = firstVertex.getNeighborIterator();
+            while (head < tail) {
+                VertexInterface<T> firstVertex = (VertexInterface<T>) scratch.vertexQueue[head++];
+                Iterator<VertexInterface<T>> adj = firstVertex.getNeighborIterator();
 
-            while (adj.hasNext()) {
+                while (adj.hasNext()) {
 
-                VertexInterface<T> curr = adj.next();
+                    VertexInterface<T> curr = adj.next();
 
-                if (!curr.isVisited()) {
-                    curr.visit();
-                    queueOfVertices.add(curr);
-                    pathSequence.add(curr.getLabel());
+                    if (scratch.visit(curr.getIndex())) {
+                        scratch.vertexQueue[tail++] = curr;
+                        pathSequence.add(curr.getLabel());
+                    }
                 }
             }
+        } finally {
+            scratch.end(tail);
         }
         return pathSequence;
     }
@@ -263,45 +316,137 @@ public class Graph<T> implements GraphInterface<T> {
      * {@inheritDoc}
      */
     @Override
+    public Iterator<T> breadthFirstIterator(T origin, int maxDepth, int maxResults) {
+        return BreadthFirstIterator.of(vertices.get(origin), maxDepth, maxResults, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
     public int getShortestPath(T origin, T destination, Stack<T> path) {
 
-        reset();
-        Queue<VertexInterface<T>> queueOfVertices = new LinkedList<VertexInterface<T>>();
         VertexInterface<T> start = vertices.get(origin);
-        start.visit();
-        queueOfVertices.add(start);
-
-        if (origin == destination) {
-            return (int) start.getCost();
+        if (start == null || !vertices.containsKey(destination)) {
+            return Integer.MAX_VALUE;
         }
-
-        while (!queueOfVertices.isEmpty()) {
-            VertexInterface<T> firstVertex = queueOfVertices.remove();
-            Iterator<VertexInterface<T>> adj = firstVertex.getNeighborIterator();
-
-            while (adj.hasNext()) {
-                VertexInterface<T> curr = adj.next();
-
-                if (!curr.isVisited()) {
-                    curr.visit();
-                    queueOfVertices.add(curr);
-                    curr.setPredecessor(firstVertex);
-                    curr.setCost(firstVertex.getCost() + 1);
-                    if (curr.getLabel().equals(destination)) {
-                        path.push(destination);
-
-                        VertexInterface<T> v = curr;
-                        while (v.getPredecessor() != null) {
-                            path.push(v.getPredecessor().getLabel());
-                            v = v.getPredecessor();
+        if (origin.equals(destination)) {
+            return 0;
+        }
+        TraversalScratch scratch = TraversalScratch.begin(indexBound);
+        int head = 0;
+        int tail = 0;
+        try {
+            scratch.visit(start.getIndex());
+            scratch.distance[tail] = 0;
+            scratch.predecessor[tail] = -1;
+            scratch.vertexQueue[tail++] = start;
+
+            while (head < tail) {
+                int firstPosition = head++;
+                VertexInterface<T> firstVertex = (VertexInterface<T>) scratch.vertexQueue[firstPosition];
+                Iterator<VertexInterface<T>> adj = firstVertex.getNeighborIterator();
+
+                while (adj.hasNext()) {
+                    VertexInterface<T> curr = adj.next();
+
+                    if (scratch.visit(curr.getIndex())) {
+                        int cost = scratch.distance[firstPosition] + 1;
+                        scratch.distance[tail] = cost;
+                        scratch.predecessor[tail] = firstPosition;
+                        scratch.vertexQueue[tail++] = curr;
+                        if (curr.getLabel().equals(destination)) {
+                            for (int p = tail - 1; p >= 0; p = scratch.predecessor[p]) {
+                                path.push(((VertexInterface<T>) scratch.vertexQueue[p]).getLabel());
+                            }
+                            return cost;
                         }
-                        return (int) curr.getCost();
-                    }
 
+                    }
                 }
             }
+        } finally {
+            scratch.end(tail);
         }
         return Integer.MAX_VALUE;
 
     }
+
+    /**
+     * {@inheritDoc} The vertices are settled with Dijkstra's algorithm from an
+     * IndexedHeap of vertex indices, and the vertex object of each index reached
+     * is kept in the vertex queue of the scratch at that index.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public double getCheapestPath(T origin, T destination, Stack<T> path) {
+
+        VertexInterface<T> start = vertices.get(origin);
+        VertexInterface<T> target = vertices.get(destination);
+        if (start == null || target == null) {
+            return WeightedSearch.UNREACHABLE;
+        }
+        if (start == target) {
+            path.push(origin);
+            return 0;
+        }
+        TraversalScratch scratch = TraversalScratch.begin(indexBound);
+        double[] cost = scratch.weight;
+        int[] predecessor = scratch.predecessor;
+        int[] reached = scratch.backwardQueue;
+        Object[] byIndex = scratch.vertexQueue;
+        IndexedHeap heap = new IndexedHeap(scratch.queue, scratch.distance, cost);
+        int count = 0;
+        try {
+            int s = start.getIndex();
+            scratch.visit(s);
+            cost[s] = 0;
+            predecessor[s] = -1;
+            byIndex[s] = start;
+            reached[count++] = s;
+            heap.push(s);
+
+            while (!heap.isEmpty()) {
+                int v = heap.poll();
+                if (v == target.getIndex()) {
+                    for (int p = v; p >= 0; p = predecessor[p]) {
+                        path.push(((VertexInterface<T>) byIndex[p]).getLabel());
+                    }
+                    return cost[v];
+                }
+                VertexInterface<T> vertex = (VertexInterface<T>) byIndex[v];
+                Iterator<VertexInterface<T>> adj = vertex.getNeighborIterator();
+                Iterator<Double> weights = vertex.getWeightIterator();
+
+                while (adj.hasNext()) {
+                    VertexInterface<T> curr = adj.next();
+                    double weight = weights.next();
+                    if (!(weight >= 0)) {
+                        throw new IllegalArgumentException("negative edge weight " + weight);
+                    }
+                    int n = curr.getIndex();
+                    double next = cost[v] + weight;
+                    if (scratch.visit(n)) {
+                        cost[n] = next;
+                        predecessor[n] = v;
+                        byIndex[n] = curr;
+                        reached[count++] = n;
+                        heap.push(n);
+                    } else if (heap.contains(n) && next < cost[n]) {
+                        cost[n] = next;
+                        predecessor[n] = v;
+                        heap.decreased(n);
+                    }
+                }
+            }
+        } finally {
+            for (int i = 0; i < count; i++) {
+                byIndex[reached[i]] = null;
+            }
+            scratch.end();
+        }
+        return WeightedSearch.UNREACHABLE;
+
+    }
 }
@@ -1,6 +1,11 @@
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.Stack;
 import java.util.Queue;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * This interface represents all the functionalities of the graph data structure
@@ -29,6 +34,20 @@ public interface GraphInterface<T> {
      */
     VertexInterface<T> removeVertex(T vertexLabel);
 
+    /**
+     * Removes a batch of vertices together with all of their edges.
+     * 
+     * @param vertexLabels are the vertices to remove.
+     * @return for each vertex, true if it was removed.
+     */
+    default boolean[] removeVertices(List<T> vertexLabels) {
+        boolean[] removed = new boolean[vertexLabels.size()];
+        for (int i = 0; i < removed.length; i++) {
+            removed[i] = removeVertex(vertexLabels.get(i)) != null;
+        }
+        return removed;
+    }
+
     /**
      * Adds a weighted edge between two given distinct vertices that are currently
      * in this graph. The desired edge must not already be in the graph. The graph
@@ -63,15 +82,49 @@ public interface GraphInterface<T> {
     boolean removeEdge(T begin, T end, double edgeWeight);
 
     /**
-     * Removes a unweighted edge between two given distinct vertices that are
-     * currently in this graph. The desired edge must already be in the graph.
+     * Removes the edge between two given distinct vertices that are currently in
+     * this graph, whatever its weight. The desired edge must already be in the
+     * graph.
      * 
      * @param begin is beginning vertex of the edge.
      * @param end   is end vertex of the edge.
-     * @return true if unweighted edge is removed.
+     * @return true if the edge is removed.
      */
     boolean removeEdge(T begin, T end);
 
+    /**
+     * Adds a batch of unweighted edges, the i-th between begins.get(i) and
+     * ends.get(i), with the same outcome as adding them one by one in order.
+     * 
+     * @param begins are the beginning vertices of the edges.
+     * @param ends   are the end vertices of the edges.
+     * @return for each edge, true if it was added.
+     */
+    default boolean[] addEdges(List<T> begins, List<T> ends) {
+        boolean[] added = new boolean[begins.size()];
+        for (int i = 0; i < added.length; i++) {
+            added[i] = addEdge(begins.get(i), ends.get(i));
+        }
+        return added;
+    }
+
+    /**
+     * Removes a batch of edges whatever their weights, the i-th between
+     * begins.get(i) and ends.get(i), with the same outcome as removing them one
+     * by one in order.
+     * 
+     * @param begins are the beginning vertices of the edges.
+     * @param ends   are the end vertices of the edges.
+     * @return for each edge, true if it was removed.
+     */
+    default boolean[] removeEdges(List<T> begins, List<T> ends) {
+        boolean[] removed = new boolean[begins.size()];
+        for (int i = 0; i < removed.length; i++) {
+            removed[i] = removeEdge(begins.get(i), ends.get(i));
+        }
+        return removed;
+    }
+
     /**
      * Checks whether an undirected edge exists between two given vertices.
      * 
@@ -81,6 +134,14 @@ public interface GraphInterface<T> {
      */
     boolean hasEdge(T begin, T end);
 
+    /**
+     * Checks whether a vertex with the given label is in this graph.
+     * 
+     * @param vertexLabel is the label of the vertex.
+     * @return true if the vertex is in this graph.
+     */
+    boolean containsVertex(T vertexLabel);
+
     /**
      * This method checks the number of Vertices in this graph.
      * 
@@ -123,6 +184,34 @@ public interface GraphInterface<T> {
      */
     Queue<T> getBreadthFirstTraversal(T origin);
 
+    /**
+     * Performs a lazy breadth-first traversal of a graph. The vertices come in the
+     * order of getBreadthFirstTraversal, each one found only when it is asked
+     * for, so stopping early skips the rest of the traversal.
+     * 
+     * @param origin     is the beginning of vertex.
+     * @param maxDepth   is the greatest number of edges between the origin and a
+     *                   returned vertex.
+     * @param maxResults is the greatest number of vertices to return.
+     * @return the traversal, empty if origin is not in the graph.
+     */
+    Iterator<T> breadthFirstIterator(T origin, int maxDepth, int maxResults);
+
+    /**
+     * Performs a lazy breadth-first traversal of a graph as a sequential stream.
+     * 
+     * @param origin     is the beginning of vertex.
+     * @param maxDepth   is the greatest number of edges between the origin and a
+     *                   returned vertex.
+     * @param maxResults is the greatest number of vertices to return.
+     * @return the stream of the traversal.
+     */
+    default Stream<T> breadthFirstStream(T origin, int maxDepth, int maxResults) {
+        Iterator<T> traversal = breadthFirstIterator(origin, maxDepth, maxResults);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(traversal,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
     /**
      * Determines the shortest distance between the origin and destination.
      * 
@@ -133,4 +222,17 @@ public interface GraphInterface<T> {
      */
     int getShortestPath(T origin, T destination, Stack<T> path);
 
+    /**
+     * Determines the cheapest path between the origin and destination, where the
+     * weight of an edge is its length.
+     * 
+     * @param origin      is the beginning vetex.
+     * @param destination is the ending vertex.
+     * @param path        is the edges connecting the cheapest path.
+     * @return the total weight of the path, or positive infinity if there is
+     *         none.
+     * @throws IllegalArgumentException if the search meets a negative weight.
+     */
+    double getCheapestPath(T origin, T destination, Stack<T> path);
+
 }
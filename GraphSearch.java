@@ -0,0 +1,121 @@
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.Stack;
+
+/**
+ * This class holds the breadth-first searches shared by the indexed graphs. The
+ * searches keep their visited marks and predecessors in the TraversalScratch of
+ * the calling thread, so they never write to the graph they walk and need no
+ * reset between queries.
+ *
+ * @author amandhillon
+ *
+ */
+public final class GraphSearch {
+
+    /**
+     * This class only has static methods.
+     */
+    private GraphSearch() {
+    }
+
+    /**
+     * Performs a breadth-first traversal of a graph and produces the queue that
+     * contains the result.
+     *
+     * @param <T>    is type of vertex.
+     * @param graph  is the graph to traverse.
+     * @param origin is the beginning of vertex.
+     * @return the resulting queue, empty if origin is not in the graph.
+     */
+    public static <T> Queue<T> breadthFirstTraversal(IndexedGraph<T> graph, T origin) {
+        Queue<T> pathSequence = new LinkedList<T>();
+        int start = graph.indexOf(origin);
+        if (start < 0) {
+            return pathSequence;
+        }
+        TraversalScratch scratch = TraversalScratch.begin(graph.indexBound());
+        try {
+            int[] queue = scratch.queue;
+            int head = 0;
+            int tail = 0;
+            scratch.visit(start);
+            queue[tail++] = start;
+
+            while (head < tail) {
+                int v = queue[head++];
+                pathSequence.add(graph.labelAt(v));
+                int[] adj = graph.adjacency(v);
+                int from = graph.adjacencyStart(v);
+                int to = from + graph.degree(v);
+                for (int i = from; i < to; i++) {
+                    int n = adj[i];
+                    if (scratch.visit(n)) {
+                        queue[tail++] = n;
+                    }
+                }
+            }
+        } finally {
+            scratch.end();
+        }
+        return pathSequence;
+    }
+
+    /**
+     * Determines the number of edges on a shortest path between the origin and
+     * destination, and pushes the path so that the origin is on top.
+     *
+     * @param <T>         is type of vertex.
+     * @param graph       is the graph to search.
+     * @param origin      is the beginning vetex.
+     * @param destination is the ending vertex.
+     * @param path        receives the vertices of the shortest path.
+     * @return the length of the path, or the maximum integer if there is none.
+     */
+    public static <T> int shortestPath(IndexedGraph<T> graph, T origin, T destination, Stack<T> path) {
+        int start = graph.indexOf(origin);
+        int target = graph.indexOf(destination);
+        if (start < 0 || target < 0) {
+            return Integer.MAX_VALUE;
+        }
+        if (start == target) {
+            return 0;
+        }
+        TraversalScratch scratch = TraversalScratch.begin(graph.indexBound());
+        try {
+            int[] queue = scratch.queue;
+            int[] predecessor = scratch.predecessor;
+            int[] cost = scratch.distance;
+            int head = 0;
+            int tail = 0;
+            scratch.visit(start);
+            cost[start] = 0;
+            queue[tail++] = start;
+
+            while (head < tail) {
+                int v = queue[head++];
+                int[] adj = graph.adjacency(v);
+                int from = graph.adjacencyStart(v);
+                int to = from + graph.degree(v);
+                for (int i = from; i < to; i++) {
+                    int n = adj[i];
+                    if (scratch.visit(n)) {
+                        predecessor[n] = v;
+                        cost[n] = cost[v] + 1;
+                        if (n == target) {
+                            for (int p = n; p != start; p = predecessor[p]) {
+                                path.push(graph.labelAt(p));
+                            }
+                            path.push(origin);
+                            return cost[n];
+                        }
+                        queue[tail++] = n;
+                    }
+                }
+            }
+        } finally {
+            scratch.end();
+        }
+        return Integer.MAX_VALUE;
+    }
+}
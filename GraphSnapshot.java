@@ -0,0 +1,366 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Stack;
+
+/**
+ * This class is an immutable compressed-sparse-row copy of an undirected graph.
+ * The neighbors of vertex i are targets[offsets[i]] to targets[offsets[i + 1] -
+ * 1], sorted by index, and the weights of their edges are at the same positions
+ * in weights. Since nothing in a snapshot ever changes, any number of
+ * threads can query it without locking while the live graph keeps changing.
+ *
+ * @author amandhillon
+ *
+ * @param <T> type of vertex.
+ */
+public final class GraphSnapshot<T> implements IndexedGraph<T> {
+
+    /**
+     * Maps each vertex label to its index.
+     */
+    private final Map<T, Integer> indices;
+
+    /**
+     * Label of each index.
+     */
+    private final Object[] labels;
+
+    /**
+     * Start of the neighbors of each index in targets, with one extra entry.
+     */
+    private final int[] offsets;
+
+    /**
+     * Neighbor indices of all vertices, row after row.
+     */
+    private final int[] targets;
+
+    /**
+     * Edge weights of all vertices, parallel to targets.
+     */
+    private final double[] weights;
+
+    /**
+     * Number of edges of the graph when the snapshot was taken.
+     */
+    private final int numOfEdges;
+
+    /**
+     * Constructor for a snapshot, use of() to build one.
+     *
+     * @param indices    maps each label to its index.
+     * @param labels     is the label of each index.
+     * @param offsets    is the start of each row in targets.
+     * @param targets    are the neighbor indices.
+     * @param weights    are the edge weights, parallel to targets.
+     * @param numOfEdges is the number of edges of the graph.
+     */
+    private GraphSnapshot(Map<T, Integer> indices, Object[] labels, int[] offsets, int[] targets,
+            double[] weights, int numOfEdges) {
+        this.indices = indices;
+        this.labels = labels;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.numOfEdges = numOfEdges;
+    }
+
+    /**
+     * Compiles the current state of a graph into a snapshot. The graph must not
+     * change while the snapshot is built.
+     *
+     * @param <T>   type of vertex.
+     * @param graph is the graph to copy.
+     * @return the snapshot of the graph.
+     */
+    public static <T> GraphSnapshot<T> of(GraphInterface<T> graph) {
+        if (graph instanceof IndexedGraph) {
+            @SuppressWarnings("unchecked")
+            IndexedGraph<T> indexed = (IndexedGraph<T>) graph;
+            return of(indexed, graph.getNumberOfEdges());
+        }
+
+        List<VertexInterface<T>> vertices = graph.getVertices();
+        int n = vertices == null ? 0 : vertices.size();
+        Map<T, Integer> indices = new HashMap<T, Integer>(n * 2);
+        Object[] labels = new Object[n];
+        for (int i = 0; i < n; i++) {
+            labels[i] = vertices.get(i).getLabel();
+            indices.put(vertices.get(i).getLabel(), i);
+        }
+        int[] offsets = new int[n + 1];
+        int[] targets = new int[Math.max(graph.getNumberOfEdges(), 0)];
+        double[] weights = new double[targets.length];
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            offsets[i] = size;
+            Iterator<VertexInterface<T>> adj = vertices.get(i).getNeighborIterator();
+            Iterator<Double> weight = vertices.get(i).getWeightIterator();
+            while (adj.hasNext()) {
+                Integer target = indices.get(adj.next().getLabel());
+                double w = weight.next();
+                if (target != null) {
+                    if (size == targets.length) {
+                        targets = Arrays.copyOf(targets, Math.max(16, size * 2));
+                        weights = Arrays.copyOf(weights, targets.length);
+                    }
+                    targets[size] = target;
+                    weights[size++] = w;
+                }
+            }
+            sortRow(targets, weights, offsets[i], size);
+        }
+        offsets[n] = size;
+        return new GraphSnapshot<T>(indices, labels, offsets, Arrays.copyOf(targets, size),
+                Arrays.copyOf(weights, size), graph.getNumberOfEdges());
+    }
+
+    /**
+     * Compiles an indexed graph into a snapshot, renumbering its vertices densely.
+     *
+     * @param <T>        type of vertex.
+     * @param graph      is the graph to copy.
+     * @param numOfEdges is the number of edges the graph reports.
+     * @return the snapshot of the graph.
+     */
+    private static <T> GraphSnapshot<T> of(IndexedGraph<T> graph, int numOfEdges) {
+        int bound = graph.indexBound();
+        int[] renumber = new int[bound];
+        int n = 0;
+        int size = 0;
+        for (int v = 0; v < bound; v++) {
+            if (graph.labelAt(v) != null) {
+                renumber[v] = n++;
+                size += graph.degree(v);
+            } else {
+                renumber[v] = -1;
+            }
+        }
+        Map<T, Integer> indices = new HashMap<T, Integer>(n * 2);
+        Object[] labels = new Object[n];
+        int[] offsets = new int[n + 1];
+        int[] targets = new int[size];
+        double[] weights = new double[size];
+        int position = 0;
+        for (int v = 0; v < bound; v++) {
+            int i = renumber[v];
+            if (i < 0) {
+                continue;
+            }
+            T label = graph.labelAt(v);
+            labels[i] = label;
+            indices.put(label, i);
+            offsets[i] = position;
+            int[] adj = graph.adjacency(v);
+            double[] adjWeights = graph.adjacencyWeights(v);
+            int from = graph.adjacencyStart(v);
+            int to = from + graph.degree(v);
+            for (int k = from; k < to; k++) {
+                targets[position] = renumber[adj[k]];
+                weights[position++] = adjWeights[k];
+            }
+            sortRow(targets, weights, offsets[i], position);
+        }
+        offsets[n] = position;
+        return new GraphSnapshot<T>(indices, labels, offsets, targets, weights, numOfEdges);
+    }
+
+    /**
+     * Helper function that sorts a row of neighbors by index, moving the edge
+     * weights along.
+     *
+     * @param targets are the neighbor indices.
+     * @param weights are the edge weights, parallel to targets.
+     * @param from    is the start of the row.
+     * @param to      is the end of the row.
+     */
+    private static void sortRow(int[] targets, double[] weights, int from, int to) {
+        if (to - from <= 32) {
+            for (int i = from + 1; i < to; i++) {
+                int target = targets[i];
+                double weight = weights[i];
+                int j = i - 1;
+                for (; j >= from && targets[j] > target; j--) {
+                    targets[j + 1] = targets[j];
+                    weights[j + 1] = weights[j];
+                }
+                targets[j + 1] = target;
+                weights[j + 1] = weight;
+            }
+            return;
+        }
+        long[] keys = new long[to - from];
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = (long) targets[from + k] << 32 | k;
+        }
+        Arrays.sort(keys);
+        double[] row = Arrays.copyOfRange(weights, from, to);
+        for (int k = 0; k < keys.length; k++) {
+            targets[from + k] = (int) (keys[k] >>> 32);
+            weights[from + k] = row[(int) keys[k]];
+        }
+    }
+
+    /**
+     * Checks whether an undirected edge existed between two given vertices.
+     *
+     * @param begin is beginning vertex of the edge.
+     * @param end   is the end vertex of the edge.
+     * @return true if edge between vertexes exists.
+     */
+    public boolean hasEdge(T begin, T end) {
+        int b = indexOf(begin);
+        int e = indexOf(end);
+        return b >= 0 && e >= 0 && Arrays.binarySearch(targets, offsets[b], offsets[b + 1], e) >= 0;
+    }
+
+    /**
+     * Checks whether a vertex with the given label was in the graph.
+     *
+     * @param vertexLabel is the label of the vertex.
+     * @return true if the vertex is in this snapshot.
+     */
+    public boolean containsVertex(T vertexLabel) {
+        return indices.containsKey(vertexLabel);
+    }
+
+    /**
+     * This method checks the number of Vertices in this snapshot.
+     *
+     * @return number of vertices in snapshot.
+     */
+    public int getNumberOfVertices() {
+        return labels.length;
+    }
+
+    /**
+     * This method checks the number of Edges in this snapshot, counted the same
+     * way as the graph it was taken from.
+     *
+     * @return number of edges in snapshot.
+     */
+    public int getNumberOfEdges() {
+        return numOfEdges;
+    }
+
+    /**
+     * Performs a breadth-first traversal of the snapshot and produces the queue
+     * that contains the result.
+     *
+     * @param origin is the beginning of vertex.
+     * @return the resulting queue.
+     */
+    public Queue<T> getBreadthFirstTraversal(T origin) {
+        return GraphSearch.breadthFirstTraversal(this, origin);
+    }
+
+    /**
+     * Performs a lazy breadth-first traversal of the snapshot.
+     *
+     * @param origin     is the beginning of vertex.
+     * @param maxDepth   is the greatest number of edges between the origin and a
+     *                   returned vertex.
+     * @param maxResults is the greatest number of vertices to return.
+     * @return the traversal, empty if origin is not in the snapshot.
+     */
+    public Iterator<T> breadthFirstIterator(T origin, int maxDepth, int maxResults) {
+        return BreadthFirstIterator.of(this, origin, maxDepth, maxResults);
+    }
+
+    /**
+     * Determines the shortest distance between the origin and destination.
+     *
+     * @param origin      is the beginning vetex.
+     * @param destination is the ending vertex.
+     * @param path        is the edges connecting the shortest path.
+     * @return the length of the path, or the maximum integer if there is none.
+     */
+    public int getShortestPath(T origin, T destination, Stack<T> path) {
+        return GraphSearch.shortestPath(this, origin, destination, path);
+    }
+
+    /**
+     * Determines the cheapest path between the origin and destination, where the
+     * weight of an edge is its length.
+     *
+     * @param origin      is the beginning vetex.
+     * @param destination is the ending vertex.
+     * @param path        is the edges connecting the cheapest path.
+     * @return the total weight of the path, or positive infinity if there is
+     *         none.
+     * @throws IllegalArgumentException if the search meets a negative weight.
+     */
+    public double getCheapestPath(T origin, T destination, Stack<T> path) {
+        return WeightedSearch.bidirectionalShortestPath(this, origin, destination, path);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int indexOf(T vertexLabel) {
+        Integer index = indices.get(vertexLabel);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public T labelAt(int index) {
+        return (T) labels[index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int indexBound() {
+        return labels.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int degree(int index) {
+        return offsets[index + 1] - offsets[index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] adjacency(int index) {
+        return targets;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int adjacencyStart(int index) {
+        return offsets[index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double[] adjacencyWeights(int index) {
+        return weights;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasSortedAdjacency() {
+        return true;
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * This interface represents a read view of an undirected graph whose vertices
+ * are numbered with dense int indices. The neighbors of a vertex are exposed as
+ * a slice of a primitive array so searches can walk them without allocating.
+ * 
+ * @author amandhillon
+ *
+ * @param <T> type of vertex.
+ */
+public interface IndexedGraph<T> {
+
+    /**
+     * Gets the index of a vertex.
+     * 
+     * @param vertexLabel is the label of the vertex.
+     * @return the index of the vertex, or -1 if it is not in this graph.
+     */
+    int indexOf(T vertexLabel);
+
+    /**
+     * Gets the label of the vertex with the given index.
+     * 
+     * @param index is the index of the vertex.
+     * @return the label of the vertex, or null if no vertex has this index.
+     */
+    T labelAt(int index);
+
+    /**
+     * Gets an upper bound of the vertex indices, every index is smaller than it.
+     * 
+     * @return one past the largest index in use.
+     */
+    int indexBound();
+
+    /**
+     * Gets the number of neighbors of a vertex.
+     * 
+     * @param index is the index of the vertex.
+     * @return the number of neighbors.
+     */
+    int degree(int index);
+
+    /**
+     * Gets the array that holds the neighbor indices of a vertex. The neighbors
+     * are the degree(index) entries starting at adjacencyStart(index). The array
+     * must not be modified.
+     * 
+     * @param index is the index of the vertex.
+     * @return the array holding the neighbors.
+     */
+    int[] adjacency(int index);
+
+    /**
+     * Gets the position of the first neighbor of a vertex in adjacency(index).
+     * 
+     * @param index is the index of the vertex.
+     * @return the position of the first neighbor.
+     */
+    int adjacencyStart(int index);
+
+    /**
+     * Gets the array that holds the edge weights of a vertex, at the same
+     * positions as its neighbors in adjacency(index). The array must not be
+     * modified.
+     * 
+     * @param index is the index of the vertex.
+     * @return the array holding the edge weights.
+     */
+    double[] adjacencyWeights(int index);
+
+    /**
+     * Checks if the neighbors of every vertex are sorted by index, so that two
+     * rows can be intersected by merging them.
+     * 
+     * @return true if the rows are sorted.
+     */
+    default boolean hasSortedAdjacency() {
+        return false;
+    }
+
+}
@@ -0,0 +1,170 @@
+/**
+ * This class is a binary min-heap of vertex indices ordered by a key array, for
+ * searches that settle vertices in order of distance. The position of every
+ * queued index is tracked, so lowering the key of a queued index moves it up in
+ * logarithmic time instead of queueing it a second time. All arrays are handed
+ * in by the search, usually from its TraversalScratch, so a query allocates
+ * nothing but the heap object itself.
+ *
+ * @author amandhillon
+ *
+ */
+final class IndexedHeap {
+
+    /**
+     * Position of an index that has not been queued in this search.
+     */
+    static final int UNSEEN = -2;
+
+    /**
+     * Position of an index that has been taken off the heap.
+     */
+    static final int SETTLED = -1;
+
+    /**
+     * The queued indices, in heap order.
+     */
+    private final int[] heap;
+
+    /**
+     * Position of each index in heap, or UNSEEN or SETTLED.
+     */
+    private final int[] position;
+
+    /**
+     * Key of each index, smaller keys come out first.
+     */
+    private final double[] keys;
+
+    /**
+     * Number of queued indices.
+     */
+    private int size;
+
+    /**
+     * Constructor for an empty heap.
+     *
+     * @param heap     holds the queued indices, as long as the number of indices.
+     * @param position receives the position of each index.
+     * @param keys     is the key of each index.
+     */
+    IndexedHeap(int[] heap, int[] position, double[] keys) {
+        this.heap = heap;
+        this.position = position;
+        this.keys = keys;
+    }
+
+    /**
+     * Checks if no index is queued.
+     *
+     * @return true if the heap is empty.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the smallest key of the queued indices.
+     *
+     * @return the smallest key, or positive infinity if the heap is empty.
+     */
+    double minKey() {
+        return size == 0 ? Double.POSITIVE_INFINITY : keys[heap[0]];
+    }
+
+    /**
+     * Checks if an index is queued.
+     *
+     * @param index is the index.
+     * @return true if the index is on the heap.
+     */
+    boolean contains(int index) {
+        return position[index] >= 0;
+    }
+
+    /**
+     * Queues an index whose key is set.
+     *
+     * @param index is the index.
+     */
+    void push(int index) {
+        heap[size] = index;
+        position[index] = size;
+        siftUp(size++);
+    }
+
+    /**
+     * Moves a queued index up after its key was lowered.
+     *
+     * @param index is the index.
+     */
+    void decreased(int index) {
+        siftUp(position[index]);
+    }
+
+    /**
+     * Takes the index with the smallest key off the heap and marks it settled.
+     *
+     * @return the index.
+     */
+    int poll() {
+        int min = heap[0];
+        position[min] = SETTLED;
+        int last = heap[--size];
+        if (size > 0) {
+            heap[0] = last;
+            position[last] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    /**
+     * Helper function that moves the index at a heap position up to its place.
+     *
+     * @param at is the heap position.
+     */
+    private void siftUp(int at) {
+        int index = heap[at];
+        double key = keys[index];
+        while (at > 0) {
+            int parent = (at - 1) >>> 1;
+            int above = heap[parent];
+            if (keys[above] <= key) {
+                break;
+            }
+            heap[at] = above;
+            position[above] = at;
+            at = parent;
+        }
+        heap[at] = index;
+        position[index] = at;
+    }
+
+    /**
+     * Helper function that moves the index at a heap position down to its place.
+     *
+     * @param at is the heap position.
+     */
+    private void siftDown(int at) {
+        int index = heap[at];
+        double key = keys[index];
+        int half = size >>> 1;
+        while (at < half) {
+            int child = 2 * at + 1;
+            int right = child + 1;
+            if (right < size && keys[heap[right]] < keys[heap[child]]) {
+                child = right;
+            }
+            int below = heap[child];
+            if (key <= keys[below]) {
+                break;
+            }
+            heap[at] = below;
+            position[below] = at;
+            at = child;
+        }
+        heap[at] = index;
+        position[index] = at;
+    }
+}
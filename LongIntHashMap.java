@@ -0,0 +1,340 @@
+import java.util.Arrays;
+
+/**
+ * This is an open-addressing hash map from primitive long keys to primitive int
+ * values. It uses linear probing and backward-shift deletion, so it keeps no
+ * tombstones and allocates nothing per entry.
+ *
+ * @author amandhillon
+ *
+ */
+public class LongIntHashMap {
+
+    /**
+     * Key that marks an empty slot.
+     */
+    private static final long FREE = Long.MIN_VALUE;
+
+    /**
+     * Fraction of the slots that may be used before the table grows.
+     */
+    private static final double LOAD_FACTOR = 0.5;
+
+    /**
+     * Value returned by get for keys that are not in the map.
+     */
+    private final int missingValue;
+
+    /**
+     * Keys of the slots, FREE if the slot is empty.
+     */
+    private long[] keys;
+
+    /**
+     * Values of the slots.
+     */
+    private int[] values;
+
+    /**
+     * Length of keys minus one, used to wrap slot positions.
+     */
+    private int mask;
+
+    /**
+     * Number of used slots.
+     */
+    private int size;
+
+    /**
+     * True if the map contains the key FREE itself.
+     */
+    private boolean hasFreeKey;
+
+    /**
+     * Value stored for the key FREE.
+     */
+    private int freeKeyValue;
+
+    /**
+     * Constructor for an empty map.
+     *
+     * @param missingValue is the value get returns for keys not in the map.
+     */
+    public LongIntHashMap(int missingValue) {
+        this(16, missingValue);
+    }
+
+    /**
+     * Constructor for an empty map with room for a number of entries.
+     *
+     * @param expectedSize is the number of entries to reserve room for.
+     * @param missingValue is the value get returns for keys not in the map.
+     */
+    public LongIntHashMap(int expectedSize, int missingValue) {
+        this.missingValue = missingValue;
+        int capacity = Integer.highestOneBit((int) Math.max(4, expectedSize / LOAD_FACTOR) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Gets the value of a key.
+     *
+     * @param key is the key to look up.
+     * @return the value of the key, or the missing value.
+     */
+    public int get(long key) {
+        if (key == FREE) {
+            return hasFreeKey ? freeKeyValue : missingValue;
+        }
+        int slot = slotOf(key);
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    /**
+     * Checks if the map contains a key.
+     *
+     * @param key is the key to look up.
+     * @return true if the key is in the map.
+     */
+    public boolean containsKey(long key) {
+        if (key == FREE) {
+            return hasFreeKey;
+        }
+        int slot = slotOf(key);
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Sets the value of a key.
+     *
+     * @param key   is the key to set.
+     * @param value is the new value.
+     * @return the previous value of the key, or the missing value.
+     */
+    public int put(long key, int value) {
+        if (key == FREE) {
+            int previous = hasFreeKey ? freeKeyValue : missingValue;
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                size++;
+            }
+            freeKeyValue = value;
+            return previous;
+        }
+        int slot = slotOf(key);
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key) {
+                int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > (mask + 1) * LOAD_FACTOR) {
+            rehash((mask + 1) * 2);
+        }
+        return missingValue;
+    }
+
+    /**
+     * Adds to the value of a key, treating a missing key as zero.
+     *
+     * @param key       is the key to update.
+     * @param increment is the amount to add.
+     * @return the new value of the key.
+     */
+    public int addTo(long key, int increment) {
+        if (key == FREE) {
+            int value = (hasFreeKey ? freeKeyValue : 0) + increment;
+            put(key, value);
+            return value;
+        }
+        int slot = slotOf(key);
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key) {
+                values[slot] += increment;
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        put(key, increment);
+        return increment;
+    }
+
+    /**
+     * Removes a key from the map.
+     *
+     * @param key is the key to remove.
+     * @return the value of the removed key, or the missing value.
+     */
+    public int remove(long key) {
+        if (key == FREE) {
+            int previous = hasFreeKey ? freeKeyValue : missingValue;
+            if (hasFreeKey) {
+                hasFreeKey = false;
+                size--;
+            }
+            return previous;
+        }
+        int slot = slotOf(key);
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key) {
+                int previous = values[slot];
+                shiftBack(slot);
+                size--;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    /**
+     * Gets the number of entries.
+     *
+     * @return number of keys in the map.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the map is empty.
+     *
+     * @return true if the map has no keys.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all keys from the map, keeping its capacity.
+     */
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+        hasFreeKey = false;
+    }
+
+    /**
+     * Gets the number of slots, which bounds the slot arguments of keyAt and
+     * valueAt.
+     *
+     * @return number of slots.
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Checks if a slot holds an entry. Together with keyAt and valueAt this walks
+     * the entries without allocating; the key Long.MIN_VALUE is not visited.
+     *
+     * @param slot is the slot to check.
+     * @return true if the slot is used.
+     */
+    public boolean isUsed(int slot) {
+        return keys[slot] != FREE;
+    }
+
+    /**
+     * Gets the key in a used slot.
+     *
+     * @param slot is the slot to read.
+     * @return the key in the slot.
+     */
+    public long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    /**
+     * Gets the value in a used slot.
+     *
+     * @param slot is the slot to read.
+     * @return the value in the slot.
+     */
+    public int valueAt(int slot) {
+        return values[slot];
+    }
+
+    /**
+     * Helper function that finds the home slot of a key.
+     *
+     * @param key is the key to place.
+     * @return the first slot to probe.
+     */
+    private int slotOf(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Helper function that empties a slot and moves later entries of the same
+     * probe run back so no lookup passes over a hole.
+     *
+     * @param slot is the slot to empty.
+     */
+    private void shiftBack(int slot) {
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (keys[next] != FREE) {
+            int home = slotOf(keys[next]);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = FREE;
+    }
+
+    /**
+     * Helper function that allocates empty slot arrays.
+     *
+     * @param capacity is the number of slots, a power of two.
+     */
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE);
+        mask = capacity - 1;
+    }
+
+    /**
+     * Helper function that moves all entries into a larger table.
+     *
+     * @param capacity is the new number of slots, a power of two.
+     */
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = slotOf(oldKeys[i]);
+                while (keys[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -1,25 +1,109 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * This class is the main class of the social networking app. It is a graph of
  * profiles that are connected together to create the social network of users.
- * Each user is represented by a profile object.
+ * Each user is represented by a profile object. The profiles and friendships
+ * are stored in a backing GraphInterface, which is a CompactGraph unless
+ * another implementation is given.
+ * 
+ * MasonConnect used to extend Graph and now implements GraphInterface instead.
+ * Code that calls it through GraphInterface, or through its own methods, is
+ * unaffected. Code that stores it in a Graph variable, or subclasses it and
+ * reads the protected vertices or numOfEdges fields of Graph, has to move to
+ * GraphInterface and the public methods. To keep the old vertex-object store,
+ * pass a new Graph to the constructor.
  * 
  * @author amandhillon
  *
  */
-public class MasonConnect extends Graph<Profile> {
+public class MasonConnect implements GraphInterface<Profile> {
+
+    /**
+     * Represents the graph of profiles that backs the social network.
+     */
+    protected GraphInterface<Profile> network;
+
+    /**
+     * Maps the user id of each profile in the network to the profile.
+     */
+    protected Map<Long, Profile> profilesById;
+
+    /**
+     * Snapshot that the read-only queries run against, null when they should
+     * read the live network.
+     */
+    protected volatile GraphSnapshot<Profile> frozen;
+
+    /**
+     * Log that records the mutations, null if they are not logged.
+     */
+    protected volatile MutationLog log;
+
+    /**
+     * the connected components of the network, null until they are first asked
+     * for.
+     */
+    protected volatile ConnectedComponents components;
+
+    /**
+     * cache of friendship distances and two-hop neighborhoods, null if caching is
+     * off.
+     */
+    protected volatile DistanceCache distances;
+
+    /**
+     * sorted friend ids of every user, null if the index is off.
+     */
+    protected volatile FriendIndex friendIndex;
+
+    /**
+     * last snapshot of the network for the whole-network analytics, kept until
+     * the next mutation.
+     */
+    private final SnapshotCache snapshots = new SnapshotCache();
 
     /**
      * initializes the social networking app.
      */
     public MasonConnect() {
-        super();
+        this(new CompactGraph<Profile>());
+    }
+
+    /**
+     * initializes the social networking app on top of the given graph. Profiles
+     * that are already in the graph become users of the app.
+     * 
+     * @param network is the graph that stores the profiles.
+     */
+    public MasonConnect(GraphInterface<Profile> network) {
+        this.network = network;
+        this.profilesById = new HashMap<Long, Profile>();
+        List<VertexInterface<Profile>> vertices = network.getVertices();
+        if (vertices != null) {
+            for (VertexInterface<Profile> vertex : vertices) {
+                this.profilesById.put(vertex.getLabel().getId(), vertex.getLabel());
+                vertex.getLabel().setNetwork(this);
+            }
+        }
     }
 
     /**
@@ -35,24 +119,26 @@ public class MasonConnect extends Graph<Profile> {
     }
 
     /**
-     * Removes an existing user from the social network. If the user does not exist,
-     * it returns null.
+     * Removes an existing user from the social network together with their
+     * friendships, in time proportional to their number of friends. If the user
+     * does not exist, nothing happens.
      * 
      * @param p is the user to be removed.
      */
     public void removeUser(Profile p) {
-        if (this.exists(p)) {
-
-            ArrayList<Profile> friendsOfP = p.getFriendProfiles();
-            for (int i = 0; i < friendsOfP.size(); i++) {
-                Profile friend = friendsOfP.get(i);
-                friend.unFriend(p);
-            }
-            p.getFriendProfiles().clear();
-
-            this.removeVertex(p);
+        this.removeVertex(p);
+    }
 
-        }
+    /**
+     * Removes a batch of users, for example for a purge, in one pass over their
+     * friendships. Friendships between two removed users are dropped together
+     * with them.
+     * 
+     * @param users are the users to remove.
+     * @return for each user in iteration order, true if the user was removed.
+     */
+    public boolean[] removeUsers(Collection<Profile> users) {
+        return this.removeVertices(new ArrayList<Profile>(users));
     }
 
     /**
@@ -66,17 +152,14 @@ public class MasonConnect extends Graph<Profile> {
         boolean created = false;
 
         if (exists(a) && exists(b)) {
-
             created = this.addEdge(a, b);
-
-            a.addFriend(b);
-            b.addFriend(a);
         }
         return created;
     }
 
     /**
-     * Removes a friendship between two users on MasonConnect.
+     * Removes a friendship between two users on MasonConnect, whatever its
+     * weight.
      * 
      * @param a is a user to be removed.
      * @param b is a user to be removed.
@@ -87,14 +170,47 @@ public class MasonConnect extends Graph<Profile> {
 
         if (exists(a) && exists(b)) {
             removed = this.removeEdge(a, b);
-            a.unFriend(b);
-            b.unFriend(a);
-
         }
 
         return removed;
     }
 
+    /**
+     * Creates a batch of friendships, with the same outcome as creating them one
+     * by one in order. The friendships are grouped by user, so the friends of
+     * each user are checked in one pass.
+     * 
+     * @param friendships are the friendships to create.
+     * @return for each friendship in iteration order, true if it was created.
+     */
+    public boolean[] createFriendships(Collection<Friendship> friendships) {
+        List<Profile> firsts = new ArrayList<Profile>(friendships.size());
+        List<Profile> seconds = new ArrayList<Profile>(friendships.size());
+        for (Friendship f : friendships) {
+            firsts.add(f.getFirst());
+            seconds.add(f.getSecond());
+        }
+        return this.addEdges(firsts, seconds);
+    }
+
+    /**
+     * Removes a batch of friendships, with the same outcome as removing them one
+     * by one in order. The friendships are grouped by user, so the friends of
+     * each user are updated in one pass.
+     * 
+     * @param friendships are the friendships to remove.
+     * @return for each friendship in iteration order, true if it was removed.
+     */
+    public boolean[] removeFriendships(Collection<Friendship> friendships) {
+        List<Profile> firsts = new ArrayList<Profile>(friendships.size());
+        List<Profile> seconds = new ArrayList<Profile>(friendships.size());
+        for (Friendship f : friendships) {
+            firsts.add(f.getFirst());
+            seconds.add(f.getSecond());
+        }
+        return this.removeEdges(firsts, seconds);
+    }
+
     /**
      * Checks if there is friendship between Profiles a and b.
      * 
@@ -114,75 +230,1276 @@ public class MasonConnect extends Graph<Profile> {
      * @param startPoint is the start of the path.
      */
     public void traverse(Profile startPoint) {
-        Queue<Profile> q = new LinkedList<Profile>();
-        q = getBreadthFirstTraversal(startPoint);
-        for (Profile p : q) {
-            p.display();
+        traverse(startPoint, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * This method displays the information and friends of the profiles near the
+     * startPoint profile, breadth first. Each profile is displayed as soon as it
+     * is reached, without collecting the traversal first.
+     * 
+     * @param startPoint is the start of the path.
+     * @param maxDepth   is the greatest friendship distance to display.
+     * @param maxResults is the greatest number of profiles to display.
+     */
+    public void traverse(Profile startPoint, int maxDepth, int maxResults) {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+        try {
+            traverse(startPoint, maxDepth, maxResults, out);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * This method writes the information and friends of the profiles near the
+     * startPoint profile, breadth first, into a character sink, as display prints
+     * them. Each profile is written as soon as it is reached. While a snapshot is
+     * published, both the order and the friends come from it.
+     * 
+     * @param startPoint is the start of the path.
+     * @param maxDepth   is the greatest friendship distance to write.
+     * @param maxResults is the greatest number of profiles to write.
+     * @param out        receives the profiles.
+     * @throws IOException if out cannot be written.
+     */
+    public void traverse(Profile startPoint, int maxDepth, int maxResults, Appendable out) throws IOException {
+        GraphSnapshot<Profile> snapshot = frozen;
+        Iterator<Profile> q = snapshot != null ? snapshot.breadthFirstIterator(startPoint, maxDepth, maxResults)
+                : breadthFirstIterator(startPoint, maxDepth, maxResults);
+        while (q.hasNext()) {
+            Profile user = q.next();
+            if (snapshot != null) {
+                user.render(out, friendsIn(snapshot, user));
+            } else {
+                user.render(out);
+            }
+        }
+    }
+
+    /**
+     * Helper function that lists the friends of a user in a snapshot.
+     * 
+     * @param snapshot is the snapshot.
+     * @param user     is a user in the snapshot.
+     * @return the friends of the user, in adjacency order.
+     */
+    private static List<Profile> friendsIn(GraphSnapshot<Profile> snapshot, Profile user) {
+        int index = snapshot.indexOf(user);
+        if (index < 0) {
+            return Collections.emptyList();
+        }
+        int[] adj = snapshot.adjacency(index);
+        int first = snapshot.adjacencyStart(index);
+        Profile[] friends = new Profile[snapshot.degree(index)];
+        for (int k = 0; k < friends.length; k++) {
+            friends[k] = snapshot.labelAt(adj[first + k]);
+        }
+        return Arrays.asList(friends);
+    }
 
+    /**
+     * Finds every user reachable from any of the seed users, level by level. On an
+     * indexed network the levels are expanded in parallel on the common fork-join
+     * pool; otherwise the seeds are traversed one after the other. Either way the
+     * same users are found, only the order within a level may differ.
+     * 
+     * @param seeds are the users to start from.
+     * @return the reachable users, including the seeds that are in the network.
+     */
+    public List<Profile> reachableUsers(Collection<Profile> seeds) {
+        IndexedGraph<Profile> view = indexedView();
+        if (view != null) {
+            return ParallelSearch.breadthFirstTraversal(view, seeds);
+        }
+        Set<Profile> reached = new LinkedHashSet<Profile>();
+        for (Profile seed : seeds) {
+            if (!reached.contains(seed)) {
+                reached.addAll(getBreadthFirstTraversal(seed));
+            }
         }
+        return new ArrayList<Profile>(reached);
     }
 
     /**
      * Outputs a list of Profiles, who are friends with one or more of the profile's
-     * friends.
+     * friends, ranked by the number of mutual friends. Each profile appears once,
+     * and the user and their friends are left out.
      * 
      * @param user of MasonConnect.
      * @return a list of Profiles, who are friends with one or more of the profile's
      *         friends. Else null.
      */
     public List<Profile> friendSuggestion(Profile user) {
+        return friendSuggestion(user, Integer.MAX_VALUE, FriendRecommender.MUTUAL_FRIENDS);
+    }
 
-        HashMap<Profile, Integer> map = new HashMap<>();
-        for (Profile p : user.getFriendProfiles()) {
-            map.put(p, 0);
+    /**
+     * Outputs the best ranked Profiles among the friends of the profile's friends.
+     * On a network that is not indexed and not frozen, the friend lists are read
+     * directly, so the query costs the friends of friends and no snapshot.
+     * 
+     * @param user    of MasonConnect.
+     * @param limit   is the largest number of profiles to return.
+     * @param scoring ranks the profiles, for example FriendRecommender.JACCARD.
+     * @return at most limit Profiles, best first. Else null.
+     * @throws IllegalArgumentException if limit is negative.
+     */
+    public List<Profile> friendSuggestion(Profile user, int limit, FriendRecommender.Scoring scoring) {
+        IndexedGraph<Profile> view = indexedView();
+        if (view != null) {
+            return FriendRecommender.recommend(view, user, limit, scoring);
         }
-
-        ArrayList<Profile> friendSuggestion = new ArrayList<Profile>();
-        if (!exists(user) && user.getFriendProfiles().isEmpty()) {
+        if (limit >= 0 && !exists(user)) {
             return null;
         }
+        return FriendRecommender.recommend(user, this::liveFriends, limit, scoring);
+    }
+
+    /**
+     * Determines the distance between two vertices.
+     * 
+     * @param a is a user of MasonConnect.
+     * @param b is a user of MasonConnect.
+     * @return Returns the friendship distance between two profiles.
+     */
+    public int friendshipDistance(Profile a, Profile b) {
+        return friendshipDistance(a, b, BidirectionalSearch.NO_LIMIT);
+    }
+
+    /**
+     * Determines the distance between two users if it is at most maxHops, for
+     * example 3 to tell 1st, 2nd and 3rd degree connections apart. On an indexed
+     * network this allocates nothing.
+     * 
+     * @param a       is a user of MasonConnect.
+     * @param b       is a user of MasonConnect.
+     * @param maxHops is the largest distance of interest.
+     * @return the friendship distance, or -1 if the users are further apart than
+     *         maxHops or not connected at all. Once the connected components are
+     *         known, users in different components get -1 without a search. With
+     *         the friend index on, distances up to two come from the index, and
+     *         with the distance cache on, distances up to three come from the
+     *         cache.
+     */
+    public int friendshipDistance(Profile a, Profile b, int maxHops) {
+        ConnectedComponents current = components;
+        if (current != null && frozen == null && !current.connected(a, b)) {
+            return -1;
+        }
+        FriendIndex index = friendIndex;
+        if (index != null && frozen == null && exists(a) && exists(b)) {
+            int hops = index.distanceWithinTwo(a.getId(), b.getId());
+            if (hops >= 0) {
+                return hops <= maxHops ? hops : -1;
+            }
+            if (maxHops <= 2) {
+                return -1;
+            }
+        }
+        DistanceCache cache = distances;
+        if (cache != null && frozen == null && !a.equals(b) && exists(a) && exists(b)) {
+            int hops = cache.distance(network, a, b);
+            if (hops != DistanceCache.BEYOND) {
+                return hops <= maxHops ? hops : -1;
+            }
+            if (maxHops <= DistanceCache.MAX_HOPS) {
+                return -1;
+            }
+        }
+        IndexedGraph<Profile> view = indexedView();
+        if (view != null) {
+            return BidirectionalSearch.distance(view, a, b, maxHops);
+        }
+        int result = this.getShortestPath(a, b, new Stack<Profile>());
+        return result != Integer.MAX_VALUE && result <= maxHops ? result : -1;
+    }
+
+    /**
+     * Finds a shortest chain of friendships between two users.
+     * 
+     * @param a is a user of MasonConnect.
+     * @param b is a user of MasonConnect.
+     * @return the distance and the user ids along the chain from a to b.
+     */
+    public FriendshipPath friendshipPath(Profile a, Profile b) {
+        Stack<Profile> stack = new Stack<>();
+        if (this.shortestPath(a, b, stack) == Integer.MAX_VALUE) {
+            return FriendshipPath.UNREACHABLE;
+        }
+        if (stack.isEmpty()) {
+            stack.push(a);
+        }
+        long[] userIds = new long[stack.size()];
+        for (int i = 0; i < userIds.length; i++) {
+            userIds[i] = stack.pop().getId();
+        }
+        return FriendshipPath.of(userIds);
+    }
+
+    /**
+     * Determines the total weight of the cheapest chain of friendships between two
+     * users, where the weight given to a friendship when it was created is its
+     * length. Both ends are searched towards each other.
+     * 
+     * @param a is a user of MasonConnect.
+     * @param b is a user of MasonConnect.
+     * @return the total weight, or positive infinity if the users are not
+     *         connected.
+     * @throws IllegalArgumentException if the search meets a negative weight.
+     */
+    public double weightedDistance(Profile a, Profile b) {
+        return cheapestPath(a, b, null);
+    }
+
+    /**
+     * Finds the cheapest chain of friendships between two users by weight.
+     * 
+     * @param a is a user of MasonConnect.
+     * @param b is a user of MasonConnect.
+     * @return the number of friendships and the user ids along the chain from a
+     *         to b.
+     * @throws IllegalArgumentException if the search meets a negative weight.
+     */
+    public FriendshipPath cheapestFriendshipPath(Profile a, Profile b) {
+        Stack<Profile> stack = new Stack<>();
+        if (this.cheapestPath(a, b, stack) == WeightedSearch.UNREACHABLE) {
+            return FriendshipPath.UNREACHABLE;
+        }
+        long[] userIds = new long[stack.size()];
+        for (int i = 0; i < userIds.length; i++) {
+            userIds[i] = stack.pop().getId();
+        }
+        return FriendshipPath.of(userIds);
+    }
 
-        for (Profile u : user.getFriendProfiles()) {
+    /**
+     * Checks if two users are at most two friendships apart, the question behind
+     * 2nd-degree connection badges. With the friend index on, this is one merge
+     * of two sorted friend arrays.
+     * 
+     * @param a is a user of MasonConnect.
+     * @param b is a user of MasonConnect.
+     * @return true if both users exist and are within two friendships.
+     */
+    public boolean withinTwoHops(Profile a, Profile b) {
+        return friendshipDistance(a, b, 2) >= 0;
+    }
 
-            for (Profile friendOfFriend : u.getFriendProfiles()) {
-                if (!map.containsKey(friendOfFriend)) {
-                    friendSuggestion.add(friendOfFriend);
-                    friendSuggestion.remove(user);
+    /**
+     * Finds the friends two users have in common. With the friend index on, or on
+     * a frozen network, this intersects two sorted id arrays, galloping through
+     * the longer one when the other is much shorter.
+     * 
+     * @param a is a user of MasonConnect.
+     * @param b is a user of MasonConnect.
+     * @return the mutual friends, empty if a user does not exist.
+     */
+    public List<Profile> mutualFriends(Profile a, Profile b) {
+        FriendIndex index = friendIndex;
+        if (index != null && frozen == null) {
+            long[] ids = index.mutualFriends(a.getId(), b.getId());
+            List<Profile> mutual = new ArrayList<Profile>(ids.length);
+            for (long id : ids) {
+                Profile friend = getUser(id);
+                if (friend != null) {
+                    mutual.add(friend);
                 }
+            }
+            return mutual;
+        }
+        IndexedGraph<Profile> view = indexedView();
+        if (view != null) {
+            return MutualFriends.of(view, a, b);
+        }
+        List<Profile> mutual = new ArrayList<Profile>();
+        Set<Profile> friends = new HashSet<Profile>(liveFriends(a));
+        for (Profile friend : liveFriends(b)) {
+            if (friends.contains(friend)) {
+                mutual.add(friend);
+            }
+        }
+        return mutual;
+    }
+
+    /**
+     * Counts the friends two users have in common, without listing them.
+     * 
+     * @param a is a user of MasonConnect.
+     * @param b is a user of MasonConnect.
+     * @return the number of mutual friends, 0 if a user does not exist.
+     */
+    public int mutualFriendCount(Profile a, Profile b) {
+        FriendIndex index = friendIndex;
+        if (index != null && frozen == null) {
+            return index.mutualFriendCount(a.getId(), b.getId());
+        }
+        IndexedGraph<Profile> view = indexedView();
+        if (view != null) {
+            return MutualFriends.count(view, a, b);
+        }
+        return countFriendsIn(new HashSet<Profile>(liveFriends(a)), b);
+    }
+
+    /**
+     * Counts the friends one user has in common with each of many users, as a
+     * list of profiles shown to the user needs. The friends of the viewer are
+     * gathered once for the whole batch.
+     * 
+     * @param viewer  is the user the counts are relative to.
+     * @param targets are the users to count for.
+     * @return the number of mutual friends of each target in order, 0 for users
+     *         that do not exist.
+     */
+    public int[] mutualFriendCounts(Profile viewer, List<Profile> targets) {
+        FriendIndex index = friendIndex;
+        if (index != null && frozen == null) {
+            long[] ids = new long[targets.size()];
+            for (int k = 0; k < ids.length; k++) {
+                ids[k] = targets.get(k).getId();
+            }
+            return index.mutualFriendCounts(viewer.getId(), ids);
+        }
+        IndexedGraph<Profile> view = indexedView();
+        if (view != null) {
+            return MutualFriends.counts(view, viewer, targets);
+        }
+        Set<Profile> friends = new HashSet<Profile>(liveFriends(viewer));
+        int[] counts = new int[targets.size()];
+        for (int k = 0; k < counts.length; k++) {
+            counts[k] = countFriendsIn(friends, targets.get(k));
+        }
+        return counts;
+    }
 
+    /**
+     * Helper function that counts the friends of a user that are in a set.
+     * 
+     * @param friends is the set.
+     * @param user    is the user.
+     * @return the number of friends of user in friends.
+     */
+    private int countFriendsIn(Set<Profile> friends, Profile user) {
+        int count = 0;
+        for (Profile friend : liveFriends(user)) {
+            if (friends.contains(friend)) {
+                count++;
             }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the triangles of the network, groups of three users who are all
+     * friends with each other.
+     *
+     * @return the number of triangles.
+     */
+    public long triangleCount() {
+        return TriangleAnalytics.countTriangles(analyzedView(), ForkJoinPool.commonPool());
+    }
 
+    /**
+     * Estimates the number of triangles of the network from a sample of pairs of
+     * friends of the same user, for networks too large to count exactly.
+     *
+     * @param samples is the number of pairs to sample, more give a closer
+     *                estimate.
+     * @return the estimated number of triangles.
+     */
+    public double estimateTriangleCount(int samples) {
+        return TriangleAnalytics.estimateTriangles(analyzedView(), samples, System.nanoTime(),
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Determines the local clustering coefficient of a user: the share of pairs
+     * of the user's friends that are friends with each other.
+     *
+     * @param user is a user of MasonConnect.
+     * @return the coefficient, 0 if the user has fewer than two friends.
+     */
+    public double clusteringCoefficient(Profile user) {
+        List<Profile> friends = new ArrayList<Profile>(getFriends(user));
+        long degree = friends.size();
+        if (degree < 2) {
+            return 0;
         }
-        return friendSuggestion;
+        long links = 0;
+        for (int count : mutualFriendCounts(user, friends)) {
+            links += count;
+        }
+        return (double) links / (degree * (degree - 1));
     }
 
     /**
-     * Determines the distance between two vertices.
+     * Determines the local clustering coefficient of every user at once.
+     *
+     * @return the coefficient of each user.
+     */
+    public Map<Profile, Double> clusteringCoefficients() {
+        IndexedGraph<Profile> graph = analyzedView();
+        return byUser(graph, TriangleAnalytics.localClustering(graph, ForkJoinPool.commonPool()));
+    }
+
+    /**
+     * Estimates the local clustering coefficient of every user from a sample of
+     * the pairs of their friends. Users with no more pairs than the sample size
+     * are counted exactly.
+     *
+     * @param samplesPerUser is the number of pairs to sample per user.
+     * @return the estimated coefficient of each user.
+     */
+    public Map<Profile, Double> estimateClusteringCoefficients(int samplesPerUser) {
+        IndexedGraph<Profile> graph = analyzedView();
+        return byUser(graph, TriangleAnalytics.estimateLocalClustering(graph, samplesPerUser, System.nanoTime(),
+                ForkJoinPool.commonPool()));
+    }
+
+    /**
+     * Helper function that finds the graph the whole-network analytics read: the
+     * indexed view if there is one, else a snapshot of the network that is taken
+     * again only once the network changes.
+     *
+     * @return the graph to analyze.
+     */
+    private IndexedGraph<Profile> analyzedView() {
+        IndexedGraph<Profile> view = indexedView();
+        return view != null ? view : snapshots.get(this::snapshot);
+    }
+
+    /**
+     * Helper function that maps the values of the indices of a graph to its users.
+     *
+     * @param graph  is the graph.
+     * @param values is the value of each index.
+     * @return the value of each user, skipping unused indices.
+     */
+    private static Map<Profile, Double> byUser(IndexedGraph<Profile> graph, double[] values) {
+        Map<Profile, Double> byUser = new HashMap<Profile, Double>(values.length * 2);
+        for (int v = 0; v < values.length; v++) {
+            Profile user = graph.labelAt(v);
+            if (user != null) {
+                byUser.put(user, values[v]);
+            }
+        }
+        return byUser;
+    }
+
+    /**
+     * Turns on an index of the sorted friend ids of every user, built from a
+     * snapshot and updated with every friendship that is created or removed
+     * from then on. Checks within two friendships and mutual friend counts then
+     * take one merge of two arrays.
+     */
+    public void enableFriendIndex() {
+        this.friendIndex = new FriendIndex(snapshot());
+    }
+
+    /**
+     * Turns off the friend index and drops it.
+     */
+    public void disableFriendIndex() {
+        this.friendIndex = null;
+    }
+
+    /**
+     * Finds the users within two friendships of a user: the friends first, then
+     * the friends of friends. With the distance cache on, the result is cached.
+     * 
+     * @param user is a user of MasonConnect.
+     * @return a read-only list of the users, not including the user, empty if the
+     *         user does not exist.
+     */
+    public List<Profile> twoHopNeighborhood(Profile user) {
+        if (!exists(user)) {
+            return Collections.emptyList();
+        }
+        DistanceCache cache = distances;
+        if (cache != null) {
+            return cache.twoHopNeighborhood(network, user);
+        }
+        List<Profile> near = new ArrayList<Profile>();
+        Iterator<Profile> traversal = network.breadthFirstIterator(user, 2, Integer.MAX_VALUE);
+        traversal.next();
+        while (traversal.hasNext()) {
+            near.add(traversal.next());
+        }
+        return Collections.unmodifiableList(near);
+    }
+
+    /**
+     * Turns on a cache of friendship distances up to three and of two-hop
+     * neighborhoods, replacing any cache that was on. Creating or removing a
+     * friendship, or removing a user, drops only the entries about users near
+     * them.
+     * 
+     * @param capacity is the greatest number of entries to cache.
+     * @throws IllegalArgumentException if capacity is not positive.
+     */
+    public void enableDistanceCache(int capacity) {
+        this.distances = new DistanceCache(capacity);
+    }
+
+    /**
+     * Turns off the distance cache and drops its entries.
+     */
+    public void disableDistanceCache() {
+        this.distances = null;
+    }
+
+    /**
+     * Reads the hit and miss counters of the distance cache, for sizing it.
+     * 
+     * @return the counters, or null if the cache is off.
+     */
+    public CacheStatistics distanceCacheStatistics() {
+        DistanceCache cache = distances;
+        return cache == null ? null : cache.statistics();
+    }
+
+    /**
+     * Checks if two users are connected by any chain of friendships. The first
+     * question about components labels the whole network in parallel; later
+     * ones are answered in near-constant time.
      * 
      * @param a is a user of MasonConnect.
      * @param b is a user of MasonConnect.
-     * @return Returns the friendship distance between two profiles.
+     * @return true if both users exist and are in the same component.
      */
-    public int friendshipDistance(Profile a, Profile b) {
-        
-        Stack<Profile> stack = new Stack<>();
-        int result = this.getShortestPath(a, b, stack);
-        if (this.getShortestPath(a, b, stack) == Integer.MAX_VALUE) {
-            result = -1;
-        } else {
-            result = this.getShortestPath(a, b, stack);
+    public boolean sameComponent(Profile a, Profile b) {
+        if (!exists(a) || !exists(b)) {
+            return false;
+        }
+        ConnectedComponents current = components;
+        if (current != null && !current.connected(a, b)) {
+            return false;
         }
-        return result;
+        return exactComponents().connected(a, b);
     }
 
     /**
-     * This method determines whether the user exists in the graph.
+     * Gets an id shared by all users in the component of a user: the user id of
+     * one of them. It can change when the network changes.
      * 
-     * @param user is the user of the social network.
-     * @return true is user exists, else false.
+     * @param user is a user of MasonConnect.
+     * @return the id of the component, or -1 if the user does not exist.
      */
-    public boolean exists(Profile user) {
-        return this.vertices.get(user) != null;
+    public long componentId(Profile user) {
+        return exists(user) ? exactComponents().componentId(user) : -1;
+    }
+
+    /**
+     * Gets the number of users connected to a user by any chain of friendships,
+     * the user included.
+     * 
+     * @param user is a user of MasonConnect.
+     * @return the size of the component, or 0 if the user does not exist.
+     */
+    public int componentSize(Profile user) {
+        return exists(user) ? exactComponents().componentSize(user) : 0;
+    }
+
+    /**
+     * Gets the number of connected components of the network.
+     * 
+     * @return the number of components.
+     */
+    public int numberOfComponents() {
+        ConnectedComponents current = exactComponents();
+        int friendless = profilesById.size() - current.numberOfUsers();
+        return current.numberOfComponents() + friendless;
+    }
+
+    /**
+     * Helper function that gets the connected components, building them again if
+     * they are missing or a removal may have split one.
+     * 
+     * @return the exact components.
+     */
+    private ConnectedComponents exactComponents() {
+        ConnectedComponents current = components;
+        if (current == null || !current.isExact()) {
+            rebuildComponents();
+            current = components;
+        }
+        return current;
+    }
+
+    /**
+     * Labels the connected components of the network in one parallel pass over a
+     * snapshot, and keeps them up to date with every new friendship from then on.
+     */
+    protected void rebuildComponents() {
+        this.components = new ConnectedComponents(snapshot(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Starts recording every mutation of the network in a log, including status
+     * changes of its profiles. Mutations made before are not recorded, so the
+     * log should start right after a snapshot or recovery.
+     * 
+     * @param mutationLog is the log, or null to stop logging.
+     */
+    public void setMutationLog(MutationLog mutationLog) {
+        this.log = mutationLog;
+    }
+
+    /**
+     * Compiles the current network into an immutable snapshot without publishing
+     * it.
+     * 
+     * @return the snapshot of the network.
+     */
+    public GraphSnapshot<Profile> snapshot() {
+        return GraphSnapshot.of(network);
+    }
+
+    /**
+     * Compiles the current network into an immutable snapshot and swaps it in, so
+     * that traverse, friendSuggestion and friendshipDistance read the snapshot
+     * without locks until the next freeze or thaw. Mutations keep going to the
+     * live network.
+     * 
+     * @return the published snapshot.
+     */
+    public GraphSnapshot<Profile> freeze() {
+        GraphSnapshot<Profile> snapshot = snapshot();
+        this.frozen = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * Drops the published snapshot, so the read-only queries read the live
+     * network again.
+     */
+    public void thaw() {
+        this.frozen = null;
+    }
+
+    /**
+     * Checks if the read-only queries currently run against a snapshot.
+     * 
+     * @return true if a snapshot is published.
+     */
+    public boolean isFrozen() {
+        return this.frozen != null;
+    }
+
+    /**
+     * Helper function that finds a shortest path in the published snapshot if
+     * there is one, else in the live network.
+     * 
+     * @param a     is a user of MasonConnect.
+     * @param b     is a user of MasonConnect.
+     * @param stack receives the path.
+     * @return the length of the path, or the maximum integer if there is none.
+     */
+    private int shortestPath(Profile a, Profile b, Stack<Profile> stack) {
+        IndexedGraph<Profile> view = indexedView();
+        if (view != null) {
+            int result = BidirectionalSearch.shortestPath(view, a, b, BidirectionalSearch.NO_LIMIT, stack);
+            return result < 0 ? Integer.MAX_VALUE : result;
+        }
+        return this.getShortestPath(a, b, stack);
+    }
+
+    /**
+     * Helper function that finds a cheapest path in the published snapshot if
+     * there is one, else in the live network.
+     * 
+     * @param a     is a user of MasonConnect.
+     * @param b     is a user of MasonConnect.
+     * @param stack receives the path, may be null.
+     * @return the total weight of the path, or positive infinity if there is none.
+     */
+    private double cheapestPath(Profile a, Profile b, Stack<Profile> stack) {
+        IndexedGraph<Profile> view = indexedView();
+        if (view != null) {
+            return WeightedSearch.bidirectionalShortestPath(view, a, b, stack);
+        }
+        return this.getCheapestPath(a, b, stack != null ? stack : new Stack<Profile>());
+    }
+
+    /**
+     * Gets an indexed view to run searches on: the published snapshot if there is
+     * one, else the live network if it is indexed. Queries that have no other way
+     * to read the network fall back to a fresh snapshot.
+     * 
+     * @return the view, or null if the network has to be searched through the
+     *         GraphInterface.
+     */
+    @SuppressWarnings("unchecked")
+    protected IndexedGraph<Profile> indexedView() {
+        GraphSnapshot<Profile> snapshot = frozen;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        return network instanceof IndexedGraph ? (IndexedGraph<Profile>) network : null;
+    }
+
+    /**
+     * Gets the friends of a user as a read-only view of the user's neighbors in
+     * the network, without copying them. On a network that is neither indexed nor
+     * made of vertex objects, the friends are copied from its neighbor traversal.
+     * 
+     * @param user is a user of MasonConnect.
+     * @return the friends of the user, empty if the user is not in the network.
+     */
+    public List<Profile> getFriends(Profile user) {
+        return liveFriends(user);
+    }
+
+    /**
+     * Helper function that gets the friends of a user as a read-only view of the
+     * user's neighbors in the network, for callers that keep the network from
+     * changing while they read it.
+     * 
+     * @param user is a user of MasonConnect.
+     * @return the friends of the user, empty if the user is not in the network.
+     */
+    @SuppressWarnings("unchecked")
+    protected List<Profile> liveFriends(Profile user) {
+        if (network instanceof IndexedGraph) {
+            return FriendList.of(network, (IndexedGraph<Profile>) network, user);
+        }
+        if (network instanceof Graph) {
+            return FriendList.of(network, (Vertex<Profile>) ((Graph<Profile>) network).getVertex(user));
+        }
+        List<Profile> friends = new ArrayList<Profile>();
+        Iterator<Profile> neighbors = network.breadthFirstIterator(user, 1, Integer.MAX_VALUE);
+        if (neighbors.hasNext()) {
+            neighbors.next();
+            while (neighbors.hasNext()) {
+                friends.add(neighbors.next());
+            }
+        }
+        return friends;
+    }
+
+    /**
+     * This method determines whether the user exists in the graph.
+     * 
+     * @param user is the user of the social network.
+     * @return true is user exists, else false.
+     */
+    public boolean exists(Profile user) {
+        return this.containsVertex(user);
+    }
+
+    /**
+     * This method determines whether a user with the given id exists in the graph.
+     * 
+     * @param id is the user id.
+     * @return true is user exists, else false.
+     */
+    public boolean exists(long id) {
+        return this.profilesById.containsKey(id);
+    }
+
+    /**
+     * Finds the profile of a user by user id.
+     * 
+     * @param id is the user id.
+     * @return the profile of the user, or null if no user has this id.
+     */
+    public Profile getUser(long id) {
+        return this.profilesById.get(id);
+    }
+
+    /**
+     * {@inheritDoc} The change is recorded in the mutation log, if there is one.
+     */
+    @Override
+    public boolean addVertex(Profile vertexLabel) {
+        snapshots.mutating();
+        boolean added = false;
+        try {
+            added = network.addVertex(vertexLabel);
+        } finally {
+            snapshots.mutated();
+        }
+        if (added) {
+            profilesById.put(vertexLabel.getId(), vertexLabel);
+            vertexLabel.setNetwork(this);
+            MutationLog current = this.log;
+            if (current != null) {
+                current.userAdded(vertexLabel);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * {@inheritDoc} The change is recorded in the mutation log, if there is one.
+     */
+    @Override
+    public VertexInterface<Profile> removeVertex(Profile vertexLabel) {
+        DistanceCache cache = mutating();
+        List<Profile> touched = cache == null ? null : withFriends(vertexLabel);
+        VertexInterface<Profile> removed = null;
+        try {
+            removed = network.removeVertex(vertexLabel);
+        } finally {
+            mutated(cache, touched);
+        }
+        if (removed != null) {
+            profilesById.remove(vertexLabel.getId());
+            vertexLabel.setNetwork(null);
+            userDropped(vertexLabel);
+            MutationLog current = this.log;
+            if (current != null) {
+                current.userRemoved(vertexLabel);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * {@inheritDoc} The change is recorded in the mutation log, if there is one.
+     */
+    @Override
+    public boolean[] removeVertices(List<Profile> vertexLabels) {
+        DistanceCache cache = mutating();
+        List<Profile> touched = new ArrayList<Profile>();
+        if (cache != null) {
+            for (Profile vertexLabel : vertexLabels) {
+                touched.addAll(withFriends(vertexLabel));
+            }
+        }
+        boolean[] removed = null;
+        try {
+            removed = network.removeVertices(vertexLabels);
+        } finally {
+            mutated(cache, touched);
+        }
+        MutationLog current = this.log;
+        for (int i = 0; i < removed.length; i++) {
+            if (removed[i]) {
+                profilesById.remove(vertexLabels.get(i).getId());
+                vertexLabels.get(i).setNetwork(null);
+                userDropped(vertexLabels.get(i));
+                if (current != null) {
+                    current.userRemoved(vertexLabels.get(i));
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * {@inheritDoc} The friendship and its weight are recorded in the mutation
+     * log, if there is one.
+     */
+    @Override
+    public boolean addEdge(Profile begin, Profile end, double edgeWeight) {
+        DistanceCache cache = mutating();
+        boolean added = false;
+        try {
+            added = network.addEdge(begin, end, edgeWeight);
+        } finally {
+            mutated(cache, added ? Arrays.asList(begin, end) : Collections.<Profile>emptyList());
+        }
+        if (added) {
+            friendshipAdded(begin, end);
+            MutationLog current = this.log;
+            if (current != null) {
+                current.friendshipCreated(begin, end, edgeWeight);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * {@inheritDoc} The change is recorded in the mutation log, if there is one.
+     */
+    @Override
+    public boolean addEdge(Profile begin, Profile end) {
+        DistanceCache cache = mutating();
+        boolean added = false;
+        try {
+            added = network.addEdge(begin, end);
+        } finally {
+            mutated(cache, added ? Arrays.asList(begin, end) : Collections.<Profile>emptyList());
+        }
+        if (added) {
+            friendshipAdded(begin, end);
+            MutationLog current = this.log;
+            if (current != null) {
+                current.friendshipCreated(begin, end);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * {@inheritDoc} The change is recorded in the mutation log, if there is one.
+     */
+    @Override
+    public boolean removeEdge(Profile begin, Profile end, double edgeWeight) {
+        DistanceCache cache = mutating();
+        boolean removed = false;
+        try {
+            removed = network.removeEdge(begin, end, edgeWeight);
+        } finally {
+            mutated(cache, removed ? Arrays.asList(begin, end) : Collections.<Profile>emptyList());
+        }
+        if (removed) {
+            friendshipDropped(begin, end);
+            MutationLog current = this.log;
+            if (current != null) {
+                current.friendshipRemoved(begin, end);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * {@inheritDoc} The change is recorded in the mutation log, if there is one.
+     */
+    @Override
+    public boolean removeEdge(Profile begin, Profile end) {
+        DistanceCache cache = mutating();
+        boolean removed = false;
+        try {
+            removed = network.removeEdge(begin, end);
+        } finally {
+            mutated(cache, removed ? Arrays.asList(begin, end) : Collections.<Profile>emptyList());
+        }
+        if (removed) {
+            friendshipDropped(begin, end);
+            MutationLog current = this.log;
+            if (current != null) {
+                current.friendshipRemoved(begin, end);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * {@inheritDoc} The change is recorded in the mutation log, if there is one.
+     */
+    @Override
+    public boolean[] addEdges(List<Profile> begins, List<Profile> ends) {
+        DistanceCache cache = mutating();
+        boolean[] added = null;
+        try {
+            added = network.addEdges(begins, ends);
+        } finally {
+            mutated(cache, ends(begins, ends, added));
+        }
+        MutationLog current = this.log;
+        for (int i = 0; i < added.length; i++) {
+            if (added[i]) {
+                friendshipAdded(begins.get(i), ends.get(i));
+                if (current != null) {
+                    current.friendshipCreated(begins.get(i), ends.get(i));
+                }
+            }
+        }
+        return added;
+    }
+
+    /**
+     * {@inheritDoc} The change is recorded in the mutation log, if there is one.
+     */
+    @Override
+    public boolean[] removeEdges(List<Profile> begins, List<Profile> ends) {
+        DistanceCache cache = mutating();
+        boolean[] removed = null;
+        try {
+            removed = network.removeEdges(begins, ends);
+        } finally {
+            mutated(cache, ends(begins, ends, removed));
+        }
+        MutationLog current = this.log;
+        for (int i = 0; i < removed.length; i++) {
+            if (removed[i]) {
+                friendshipDropped(begins.get(i), ends.get(i));
+                if (current != null) {
+                    current.friendshipRemoved(begins.get(i), ends.get(i));
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasEdge(Profile begin, Profile end) {
+        return network.hasEdge(begin, end);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsVertex(Profile vertexLabel) {
+        return network.containsVertex(vertexLabel);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNumberOfVertices() {
+        return network.getNumberOfVertices();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNumberOfEdges() {
+        return network.getNumberOfEdges();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty() {
+        return network.isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<VertexInterface<Profile>> getVertices() {
+        return network.getVertices();
+    }
+
+    /**
+     * {@inheritDoc} Each removed user is recorded in the mutation log, if there is
+     * one.
+     */
+    @Override
+    public void clear() {
+        for (Profile p : profilesById.values()) {
+            p.setNetwork(null);
+        }
+        DistanceCache cache = mutating();
+        try {
+            network.clear();
+        } finally {
+            snapshots.mutated();
+            if (cache != null) {
+                cache.cleared();
+            }
+        }
+        MutationLog current = this.log;
+        if (current != null) {
+            for (Profile p : profilesById.values()) {
+                current.userRemoved(p);
+            }
+        }
+        profilesById.clear();
+        if (components != null) {
+            rebuildComponents();
+        }
+        FriendIndex index = friendIndex;
+        if (index != null) {
+            index.clear();
+        }
+    }
+
+    /**
+     * Helper function that tells the snapshot cache, and the distance cache if it
+     * is on, that a mutation is about to start.
+     * 
+     * @return the distance cache to tell when the mutation is done, or null.
+     */
+    private DistanceCache mutating() {
+        snapshots.mutating();
+        DistanceCache cache = distances;
+        if (cache != null) {
+            cache.mutating();
+        }
+        return cache;
+    }
+
+    /**
+     * Helper function that tells the snapshot cache, and the distance cache if it
+     * is on, that a mutation is done.
+     * 
+     * @param cache   is the distance cache returned by mutating, or null.
+     * @param touched are the users whose friendships changed.
+     */
+    private void mutated(DistanceCache cache, List<Profile> touched) {
+        snapshots.mutated();
+        if (cache != null) {
+            cache.mutated(touched);
+        }
+    }
+
+    /**
+     * Gets the compact graph backing the network, for a replay of a mutation log
+     * that adds friendships straight into it by index. There is none if the
+     * network is backed by another graph, is a subclass that may add friendships
+     * its own way, or keeps state that every friendship must update: the
+     * components, the friend index, the distance cache or a mutation log.
+     * 
+     * @return the compact graph, or null.
+     */
+    @SuppressWarnings("unchecked")
+    CompactGraph<Profile> replayTarget() {
+        if (getClass() != MasonConnect.class || !(network instanceof CompactGraph) || components != null
+                || friendIndex != null || distances != null || log != null) {
+            return null;
+        }
+        return (CompactGraph<Profile>) network;
+    }
+
+    /**
+     * Adds a batch of friendships replayed from a mutation log to the graph
+     * returned by replayTarget, given by the indices of their users.
+     * 
+     * @param graph  is the graph returned by replayTarget.
+     * @param begins are the indices of the first users.
+     * @param ends   are the indices of the second users.
+     * @param count  is the number of friendships.
+     */
+    void addReplayedFriendships(CompactGraph<Profile> graph, int[] begins, int[] ends, int count) {
+        snapshots.mutating();
+        try {
+            graph.addEdgesAt(begins, ends, count);
+        } finally {
+            snapshots.mutated();
+        }
+    }
+
+    /**
+     * Helper function that lists a user and their friends, the users whose
+     * friendships change when the user is removed.
+     * 
+     * @param user is a user.
+     * @return the user and their friends, empty if the user does not exist.
+     */
+    private List<Profile> withFriends(Profile user) {
+        List<Profile> users = new ArrayList<Profile>();
+        if (exists(user)) {
+            users.add(user);
+            users.addAll(liveFriends(user));
+        }
+        return users;
+    }
+
+    /**
+     * Helper function that lists the ends of the friendships of a batch that
+     * changed.
+     * 
+     * @param begins  are the first ends of the batch.
+     * @param ends    are the second ends of the batch.
+     * @param changed tells which friendships changed, or is null if the batch
+     *                failed, in which case all ends are listed.
+     * @return the ends.
+     */
+    private static List<Profile> ends(List<Profile> begins, List<Profile> ends, boolean[] changed) {
+        List<Profile> touched = new ArrayList<Profile>();
+        for (int i = 0; i < begins.size(); i++) {
+            if (changed == null || changed[i]) {
+                touched.add(begins.get(i));
+                touched.add(ends.get(i));
+            }
+        }
+        return touched;
+    }
+
+    /**
+     * Helper function that merges the components of two users and adds them to
+     * each other's indexed friends after a friendship was created, if the
+     * components and the index are kept.
+     * 
+     * @param a is a user.
+     * @param b is a user.
+     */
+    private void friendshipAdded(Profile a, Profile b) {
+        ConnectedComponents current = components;
+        if (current != null) {
+            current.friendshipCreated(a, b);
+        }
+        FriendIndex index = friendIndex;
+        if (index != null) {
+            index.friendshipCreated(a, b);
+        }
+    }
+
+    /**
+     * Helper function that marks the components as inexact and removes two users
+     * from each other's indexed friends after a friendship was removed, if the
+     * components and the index are kept.
+     * 
+     * @param a is a user.
+     * @param b is a user.
+     */
+    private void friendshipDropped(Profile a, Profile b) {
+        componentsSplit();
+        FriendIndex index = friendIndex;
+        if (index != null) {
+            index.friendshipRemoved(a, b);
+        }
+    }
+
+    /**
+     * Helper function that marks the components as inexact and drops a user from
+     * the index after the user was removed, if the components and the index are
+     * kept.
+     * 
+     * @param user is the removed user.
+     */
+    private void userDropped(Profile user) {
+        componentsSplit();
+        FriendIndex index = friendIndex;
+        if (index != null) {
+            index.userRemoved(user);
+        }
+    }
+
+    /**
+     * Helper function that marks the components as inexact after a removal, if
+     * the components are kept.
+     */
+    private void componentsSplit() {
+        ConnectedComponents current = components;
+        if (current != null) {
+            current.invalidate();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Queue<Profile> getBreadthFirstTraversal(Profile origin) {
+        return network.getBreadthFirstTraversal(origin);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<Profile> breadthFirstIterator(Profile origin, int maxDepth, int maxResults) {
+        return network.breadthFirstIterator(origin, maxDepth, maxResults);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getShortestPath(Profile origin, Profile destination, Stack<Profile> path) {
+        return network.getShortestPath(origin, destination, path);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getCheapestPath(Profile origin, Profile destination, Stack<Profile> path) {
+        return network.getCheapestPath(origin, destination, path);
     }
 
 }
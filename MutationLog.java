@@ -0,0 +1,989 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+/**
+ * This class is an append-only write-ahead log of the mutations of a
+ * MasonConnect network. Every added or removed user, created or removed
+ * friendship and status change is appended as a compact binary record once it
+ * has been applied. Records are written in blocks by group commit: all records
+ * appended since the last commit go out with one write and one fsync, under a
+ * checksum that lets recovery drop a block torn by a crash.
+ *
+ * <pre>
+ * int magic, int version
+ * blocks: int byte length, int CRC32C, records
+ * records: byte type, then
+ *   ADD_USER:                   long id, string name, string status
+ *   REMOVE_USER:                long id
+ *   CREATE_FRIENDSHIP:          long id, long id
+ *   CREATE_WEIGHTED_FRIENDSHIP: long id, long id, double weight
+ *   REMOVE_FRIENDSHIP:          long id, long id
+ *   SET_STATUS:                 long id, string status
+ * strings: int UTF-8 byte length (-1 for null), UTF-8 bytes
+ * </pre>
+ *
+ * The commit interval trades latency for throughput. With an interval of 0 a
+ * mutation returns only once its record is durable, and mutations made at the
+ * same time from several threads share one fsync. With a longer interval a
+ * background thread commits that often, mutations never wait for the disk, and
+ * a crash loses at most the last interval. A caller that mutates under its own
+ * locks can defer the commit until it has released them, so that other writers
+ * waiting for those locks do not wait for the disk too. Recovery loads the last snapshot and
+ * replays the log on top of it. Replaying a record whose effect is already in
+ * the snapshot is harmless, since every record sets the state it describes.
+ *
+ * @author amandhillon
+ *
+ */
+public final class MutationLog implements AutoCloseable {
+
+    /**
+     * First four bytes of every log file, "MCWL".
+     */
+    private static final int MAGIC = 0x4D43574C;
+
+    /**
+     * Version of the file format.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Size of the file header.
+     */
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * Size of the header of each block.
+     */
+    private static final int BLOCK_HEADER_SIZE = 8;
+
+    /**
+     * Size of the buffer records are collected in before it grows.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Size of block at which an append commits right away instead of waiting
+     * for the interval.
+     */
+    private static final int MAX_BLOCK = 1 << 24;
+
+    /**
+     * Size of the buffer used for replaying.
+     */
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Record of an added user.
+     */
+    private static final byte ADD_USER = 1;
+
+    /**
+     * Record of a removed user.
+     */
+    private static final byte REMOVE_USER = 2;
+
+    /**
+     * Record of a created friendship.
+     */
+    private static final byte CREATE_FRIENDSHIP = 3;
+
+    /**
+     * Record of a removed friendship.
+     */
+    private static final byte REMOVE_FRIENDSHIP = 4;
+
+    /**
+     * Record of a changed status.
+     */
+    private static final byte SET_STATUS = 5;
+
+    /**
+     * Record of a created friendship with a weight other than 0.
+     */
+    private static final byte CREATE_WEIGHTED_FRIENDSHIP = 6;
+
+    /**
+     * The log file.
+     */
+    private final Path file;
+
+    /**
+     * Guards pending and appended.
+     */
+    private final Object appendLock;
+
+    /**
+     * Guards the channel and the commit of blocks, taken before appendLock.
+     */
+    private final ReentrantLock commitLock;
+
+    /**
+     * Records appended since the last commit.
+     */
+    private ByteBuffer pending;
+
+    /**
+     * Empty buffer that takes the place of pending at the next commit, only used
+     * under commitLock.
+     */
+    private ByteBuffer spare;
+
+    /**
+     * Number of records appended since the log was opened.
+     */
+    private long appended;
+
+    /**
+     * Number of records appended since the log was opened that are on disk.
+     */
+    private volatile long durable;
+
+    /**
+     * The open log file, only used under commitLock.
+     */
+    private FileChannel channel;
+
+    /**
+     * Size of the log file.
+     */
+    private long fileEnd;
+
+    /**
+     * Thread that commits every interval, null if every mutation commits.
+     */
+    private final ScheduledExecutorService committer;
+
+    /**
+     * Failure of a background commit, thrown by the next mutation.
+     */
+    private volatile IOException failure;
+
+    /**
+     * True once the log is closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * For each thread, the depth of the deferred sections it is in and the number
+     * of the last record it appended in them.
+     */
+    private final ThreadLocal<long[]> deferred;
+
+    /**
+     * Constructor for a log on an open file, use open() to get one.
+     *
+     * @param file                 is the log file.
+     * @param channel              is the open log file, positioned at its end.
+     * @param commitIntervalMicros is the time between commits.
+     * @throws IOException if the size of the file cannot be read.
+     */
+    private MutationLog(Path file, FileChannel channel, long commitIntervalMicros) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.fileEnd = channel.size();
+        this.appendLock = new Object();
+        this.commitLock = new ReentrantLock();
+        this.pending = ByteBuffer.allocate(BUFFER_SIZE);
+        this.spare = ByteBuffer.allocate(BUFFER_SIZE);
+        this.deferred = ThreadLocal.withInitial(() -> new long[2]);
+        if (commitIntervalMicros > 0) {
+            this.committer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "MutationLog commit " + file.getFileName());
+                thread.setDaemon(true);
+                return thread;
+            });
+            committer.scheduleWithFixedDelay(this::backgroundCommit, commitIntervalMicros, commitIntervalMicros,
+                    TimeUnit.MICROSECONDS);
+        } else {
+            this.committer = null;
+        }
+    }
+
+    /**
+     * Opens a log for appending, creating it if it does not exist. A block torn
+     * by a crash at the end of the file is cut off.
+     *
+     * @param file                 is the log file.
+     * @param commitIntervalMicros is the time between commits in microseconds, 0
+     *                             to make every mutation durable before it
+     *                             returns.
+     * @return the log.
+     * @throws IOException if the file cannot be opened or is not a log.
+     */
+    public static MutationLog open(Path file, long commitIntervalMicros) throws IOException {
+        if (commitIntervalMicros < 0) {
+            throw new IllegalArgumentException("negative commit interval " + commitIntervalMicros);
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                writeHeader(channel);
+                channel.force(true);
+            } else {
+                long end = scan(channel, file, null);
+                if (end < channel.size()) {
+                    channel.truncate(end);
+                    channel.force(true);
+                }
+            }
+            channel.position(channel.size());
+            return new MutationLog(file, channel, commitIntervalMicros);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Rebuilds a network from its last snapshot and the log written since.
+     *
+     * @param snapshot is the snapshot file, the network starts empty if it does
+     *                 not exist.
+     * @param log      is the log file, nothing is replayed if it does not exist.
+     * @return the network.
+     * @throws IOException if a file cannot be read or is corrupt.
+     */
+    public static MasonConnect recover(Path snapshot, Path log) throws IOException {
+        MasonConnect network = Files.exists(snapshot) ? SnapshotFile.load(snapshot) : new MasonConnect();
+        if (Files.exists(log)) {
+            replay(log, network);
+        }
+        return network;
+    }
+
+    /**
+     * Applies the records of a log to a network, stopping at a block torn by a
+     * crash. The network should not have a log attached, or the replayed
+     * mutations are logged again.
+     *
+     * @param log     is the log file.
+     * @param network is the network to apply the records to.
+     * @return the number of records replayed.
+     * @throws IOException if the file cannot be read or is not a log.
+     */
+    public static long replay(Path log, MasonConnect network) throws IOException {
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            Replayer replayer = new Replayer(network);
+            scan(channel, log, replayer);
+            replayer.flush();
+            return replayer.count;
+        }
+    }
+
+    /**
+     * Saves a snapshot of a network and drops the records it makes redundant.
+     * Mutations can go on while the snapshot is written, their records stay in
+     * the log.
+     *
+     * @param network  is the network this log belongs to.
+     * @param snapshot is the snapshot file to write.
+     * @throws IOException if a file cannot be written.
+     */
+    public void checkpoint(MasonConnect network, Path snapshot) throws IOException {
+        long mark;
+        commitLock.lock();
+        try {
+            commit(Long.MAX_VALUE);
+            mark = fileEnd;
+        } finally {
+            commitLock.unlock();
+        }
+
+        SnapshotFile.save(network, snapshot);
+
+        commitLock.lock();
+        try {
+            synchronized (appendLock) {
+                commit(Long.MAX_VALUE);
+                Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+                try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                    writeHeader(out);
+                    long position = mark;
+                    while (position < fileEnd) {
+                        position += channel.transferTo(position, fileEnd - position, out);
+                    }
+                    out.force(true);
+                }
+                channel.close();
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                fileEnd = channel.size();
+                channel.position(fileEnd);
+            }
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * Waits until every record appended so far is on disk.
+     *
+     * @throws IOException if the log cannot be written.
+     */
+    public void sync() throws IOException {
+        long target;
+        synchronized (appendLock) {
+            target = appended;
+        }
+        commitLock.lock();
+        try {
+            commit(target);
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * Commits the remaining records and closes the log.
+     *
+     * @throws IOException if the log cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (committer != null) {
+            committer.shutdown();
+        }
+        commitLock.lock();
+        try {
+            if (!closed) {
+                commit(Long.MAX_VALUE);
+                closed = true;
+                channel.close();
+            }
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * Records that a user was added.
+     *
+     * @param user is the added user.
+     */
+    void userAdded(Profile user) {
+        byte[] name = encode(user.getName());
+        byte[] status = encode(user.getStatus());
+        long sequence;
+        synchronized (appendLock) {
+            ByteBuffer out = reserve(1 + 8 + 4 + length(name) + 4 + length(status));
+            out.put(ADD_USER).putLong(user.getId());
+            putString(out, name);
+            putString(out, status);
+            sequence = ++appended;
+        }
+        appended(sequence);
+    }
+
+    /**
+     * Records that a user was removed.
+     *
+     * @param user is the removed user.
+     */
+    void userRemoved(Profile user) {
+        long sequence;
+        synchronized (appendLock) {
+            reserve(1 + 8).put(REMOVE_USER).putLong(user.getId());
+            sequence = ++appended;
+        }
+        appended(sequence);
+    }
+
+    /**
+     * Records that a friendship was created.
+     *
+     * @param a is a user of the friendship.
+     * @param b is a user of the friendship.
+     */
+    void friendshipCreated(Profile a, Profile b) {
+        long sequence;
+        synchronized (appendLock) {
+            reserve(1 + 8 + 8).put(CREATE_FRIENDSHIP).putLong(a.getId()).putLong(b.getId());
+            sequence = ++appended;
+        }
+        appended(sequence);
+    }
+
+    /**
+     * Records that a friendship with a weight was created.
+     *
+     * @param a      is a user of the friendship.
+     * @param b      is a user of the friendship.
+     * @param weight is the weight of the friendship.
+     */
+    void friendshipCreated(Profile a, Profile b, double weight) {
+        if (weight == 0.0) {
+            friendshipCreated(a, b);
+            return;
+        }
+        long sequence;
+        synchronized (appendLock) {
+            reserve(1 + 8 + 8 + 8).put(CREATE_WEIGHTED_FRIENDSHIP).putLong(a.getId()).putLong(b.getId())
+                    .putDouble(weight);
+            sequence = ++appended;
+        }
+        appended(sequence);
+    }
+
+    /**
+     * Records that a friendship was removed.
+     *
+     * @param a is a user of the friendship.
+     * @param b is a user of the friendship.
+     */
+    void friendshipRemoved(Profile a, Profile b) {
+        long sequence;
+        synchronized (appendLock) {
+            reserve(1 + 8 + 8).put(REMOVE_FRIENDSHIP).putLong(a.getId()).putLong(b.getId());
+            sequence = ++appended;
+        }
+        appended(sequence);
+    }
+
+    /**
+     * Records that the status of a user changed.
+     *
+     * @param user is the user, already holding the new status.
+     */
+    void statusChanged(Profile user) {
+        byte[] status = encode(user.getStatus());
+        long sequence;
+        synchronized (appendLock) {
+            ByteBuffer out = reserve(1 + 8 + 4 + length(status));
+            out.put(SET_STATUS).putLong(user.getId());
+            putString(out, status);
+            sequence = ++appended;
+        }
+        appended(sequence);
+    }
+
+    /**
+     * Runs a mutation whose records are appended as usual but committed only once
+     * it returns, in one commit. A caller that holds locks while it mutates
+     * releases them inside the mutation, so that the fsync happens after they are
+     * released. Deferred sections may be nested, the outermost one commits.
+     *
+     * @param <R>      is the result type of the mutation.
+     * @param mutation is the mutation to run.
+     * @return the result of the mutation.
+     * @throws UncheckedIOException if the log cannot be written.
+     */
+    <R> R deferringCommit(Supplier<R> mutation) {
+        long[] section = deferred.get();
+        section[0]++;
+        try {
+            return mutation.get();
+        } finally {
+            if (--section[0] == 0 && section[1] > 0) {
+                long sequence = section[1];
+                section[1] = 0;
+                appended(sequence);
+            }
+        }
+    }
+
+    /**
+     * Helper function that finishes an append, committing right away if the log
+     * commits on every mutation or the block is full. Inside a deferred section
+     * the commit is left to the end of the section.
+     *
+     * @param sequence is the number of the appended record.
+     * @throws UncheckedIOException if the log cannot be written.
+     */
+    private void appended(long sequence) {
+        IOException failed = failure;
+        if (failed != null) {
+            throw new UncheckedIOException("mutation log " + file + " failed", failed);
+        }
+        long[] section = deferred.get();
+        if (section[0] > 0) {
+            section[1] = Math.max(section[1], sequence);
+            return;
+        }
+        if (committer == null || pendingBytes() >= MAX_BLOCK) {
+            commitLock.lock();
+            try {
+                commit(sequence);
+            } catch (IOException e) {
+                throw new UncheckedIOException("cannot write mutation log " + file, e);
+            } finally {
+                commitLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Helper function that commits from the background thread, keeping the
+     * failure for the next mutation.
+     */
+    private void backgroundCommit() {
+        commitLock.lock();
+        try {
+            commit(Long.MAX_VALUE);
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * Helper function that writes the pending records as one block and forces
+     * them to disk, unless a commit that ran while this one waited for the lock
+     * already covered the given record. Must be called under commitLock.
+     *
+     * @param sequence is the number of the record that must become durable.
+     * @throws IOException if the log cannot be written.
+     */
+    private void commit(long sequence) throws IOException {
+        if (durable >= sequence) {
+            return;
+        }
+        if (closed) {
+            throw new IOException("mutation log " + file + " is closed");
+        }
+        ByteBuffer block;
+        long end;
+        synchronized (appendLock) {
+            block = pending;
+            pending = spare;
+            end = appended;
+        }
+        block.flip();
+        if (block.hasRemaining()) {
+            CRC32C crc = new CRC32C();
+            crc.update(block.duplicate());
+            ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+            header.putInt(block.remaining()).putInt((int) crc.getValue()).flip();
+            ByteBuffer[] parts = { header, block };
+            long size = BLOCK_HEADER_SIZE + block.remaining();
+            long written = 0;
+            while (written < size) {
+                written += channel.write(parts);
+            }
+            channel.force(false);
+            fileEnd += size;
+        }
+        block.clear();
+        spare = block.capacity() > MAX_BLOCK ? ByteBuffer.allocate(BUFFER_SIZE) : block;
+        durable = end;
+    }
+
+    /**
+     * Helper function that gets the size of the pending block.
+     *
+     * @return the number of pending bytes.
+     */
+    private int pendingBytes() {
+        synchronized (appendLock) {
+            return pending.position();
+        }
+    }
+
+    /**
+     * Helper function that makes room for a record in the pending block. Must be
+     * called under appendLock.
+     *
+     * @param bytes is the size of the record.
+     * @return the buffer to put the record in.
+     */
+    private ByteBuffer reserve(int bytes) {
+        if (pending.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        return pending;
+    }
+
+    /**
+     * Helper function that writes the file header at the current position.
+     *
+     * @param channel is the file to write to.
+     * @throws IOException if the file cannot be written.
+     */
+    private static void writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+
+    /**
+     * Helper function that reads the blocks of a log, checking each against its
+     * checksum, and hands their records to a consumer. Reading stops at the
+     * first block that is cut short or does not match its checksum.
+     *
+     * @param channel  is the log file.
+     * @param file     is the path of the log file, for messages.
+     * @param consumer receives each record positioned at its type, or null.
+     * @return the position in the file after the last intact block.
+     * @throws IOException if the file cannot be read or is not a log.
+     */
+    private static long scan(FileChannel channel, Path file, RecordConsumer consumer) throws IOException {
+        ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        in.flip();
+        long position = 0;
+        if (!fill(channel, in, HEADER_SIZE) || in.getInt() != MAGIC || in.getInt() != VERSION) {
+            throw new IOException(file + " is not a MasonConnect mutation log");
+        }
+        position += HEADER_SIZE;
+        CRC32C crc = new CRC32C();
+        while (fill(channel, in, BLOCK_HEADER_SIZE)) {
+            int length = in.getInt();
+            int checksum = in.getInt();
+            if (length <= 0 || length > MAX_BLOCK * 2) {
+                break;
+            }
+            if (length > in.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(length);
+                larger.put(in).flip();
+                in = larger;
+            }
+            if (!fill(channel, in, length)) {
+                break;
+            }
+            ByteBuffer block = in.slice();
+            block.limit(length);
+            crc.reset();
+            crc.update(block.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            if (consumer != null) {
+                try {
+                    while (block.hasRemaining()) {
+                        consumer.accept(block);
+                    }
+                } catch (RuntimeException e) {
+                    throw new IOException("corrupt record in " + file, e);
+                }
+            }
+            in.position(in.position() + length);
+            position += BLOCK_HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    /**
+     * Helper function that reads from the file until the buffer holds a number
+     * of bytes past its position.
+     *
+     * @param channel is the file to read.
+     * @param in      is the read buffer, ready for reading.
+     * @param bytes   is the number of bytes needed, at most the capacity.
+     * @return false if the file ends first.
+     * @throws IOException if the file cannot be read.
+     */
+    private static boolean fill(FileChannel channel, ByteBuffer in, int bytes) throws IOException {
+        if (in.remaining() >= bytes) {
+            return true;
+        }
+        in.compact();
+        try {
+            while (in.position() < bytes) {
+                if (channel.read(in) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            in.flip();
+        }
+    }
+
+    /**
+     * Helper function that applies one record to a network, skipping records
+     * about users that do not exist.
+     *
+     * @param record  is the record, positioned at its type.
+     * @param network is the network to apply it to.
+     */
+    private static void apply(ByteBuffer record, MasonConnect network) {
+        byte type = record.get();
+        long id = record.getLong();
+        Profile user = network.getUser(id);
+        switch (type) {
+        case ADD_USER:
+            String name = getString(record);
+            String status = getString(record);
+            if (user == null) {
+                network.addUser(new Profile(id, name, status));
+            }
+            break;
+        case REMOVE_USER:
+            if (user != null) {
+                network.removeUser(user);
+            }
+            break;
+        case CREATE_FRIENDSHIP:
+            Profile friend = network.getUser(record.getLong());
+            if (user != null && friend != null) {
+                network.createFriendship(user, friend);
+            }
+            break;
+        case CREATE_WEIGHTED_FRIENDSHIP:
+            Profile weighted = network.getUser(record.getLong());
+            double weight = record.getDouble();
+            if (user != null && weighted != null) {
+                network.addEdge(user, weighted, weight);
+            }
+            break;
+        case REMOVE_FRIENDSHIP:
+            Profile former = network.getUser(record.getLong());
+            if (user != null && former != null) {
+                network.removeFriendship(user, former);
+            }
+            break;
+        case SET_STATUS:
+            String newStatus = getString(record);
+            if (user != null) {
+                user.setStatus(newStatus);
+            }
+            break;
+        default:
+            throw new IllegalStateException("unknown record type " + type);
+        }
+    }
+
+    /**
+     * Helper function that encodes a string for a record.
+     *
+     * @param s is the string, may be null.
+     * @return the UTF-8 bytes, or null.
+     */
+    private static byte[] encode(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Helper function that gets the number of bytes of an encoded string.
+     *
+     * @param bytes is the encoded string, may be null.
+     * @return the number of bytes.
+     */
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    /**
+     * Helper function that puts an encoded string into a record.
+     *
+     * @param out   is the record.
+     * @param bytes is the encoded string, may be null.
+     */
+    private static void putString(ByteBuffer out, byte[] bytes) {
+        if (bytes == null) {
+            out.putInt(-1);
+        } else {
+            out.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    /**
+     * Helper function that reads a string from a record.
+     *
+     * @param in is the record.
+     * @return the string, may be null.
+     */
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String s = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return s;
+    }
+
+    /**
+     * This class applies the records of a log to a network. Runs of created
+     * friendships, the bulk of most logs, are collected and added as one batch,
+     * which checks the friends of each user in one pass instead of one lookup per
+     * friendship. A run ends at any other record, since users are only added or
+     * removed there. On a plain network backed by a CompactGraph, each user id is
+     * resolved to its index in the graph once, and the runs go straight into the
+     * graph by index, skipping the per-friendship bookkeeping that such a
+     * network does not need.
+     *
+     * @author amandhillon
+     *
+     */
+    private static final class Replayer implements RecordConsumer {
+
+        /**
+         * Largest number of friendships added in one batch.
+         */
+        private static final int RUN = 1 << 20;
+
+        /**
+         * The network the records are applied to.
+         */
+        private final MasonConnect network;
+
+        /**
+         * The graph the runs go into by index, null to add them as users.
+         */
+        private final CompactGraph<Profile> graph;
+
+        /**
+         * Index in the graph of each user id resolved so far.
+         */
+        private final LongIntHashMap indices;
+
+        /**
+         * First users of the friendships of the current run, if there is no graph.
+         */
+        private final List<Profile> begins;
+
+        /**
+         * Second users of the friendships of the current run, if there is no
+         * graph.
+         */
+        private final List<Profile> ends;
+
+        /**
+         * Indices of the first users of the friendships of the current run.
+         */
+        private final int[] beginIndices;
+
+        /**
+         * Indices of the second users of the friendships of the current run.
+         */
+        private final int[] endIndices;
+
+        /**
+         * Number of friendships in the current run.
+         */
+        private int run;
+
+        /**
+         * Number of records replayed.
+         */
+        private long count;
+
+        /**
+         * Constructor for a replayer on a network.
+         *
+         * @param network is the network to apply the records to.
+         */
+        private Replayer(MasonConnect network) {
+            this.network = network;
+            this.graph = network.replayTarget();
+            this.indices = new LongIntHashMap(Math.max(16, network.getNumberOfVertices()), -1);
+            this.begins = new ArrayList<Profile>();
+            this.ends = new ArrayList<Profile>();
+            this.beginIndices = graph == null ? null : new int[RUN];
+            this.endIndices = graph == null ? null : new int[RUN];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void accept(ByteBuffer record) {
+            count++;
+            byte type = record.get(record.position());
+            if (type != CREATE_FRIENDSHIP) {
+                flush();
+                if (type == REMOVE_USER) {
+                    indices.remove(record.getLong(record.position() + 1));
+                }
+                apply(record, network);
+                return;
+            }
+            record.get();
+            long a = record.getLong();
+            long b = record.getLong();
+            if (graph == null) {
+                Profile first = network.getUser(a);
+                Profile second = network.getUser(b);
+                if (first != null && second != null) {
+                    begins.add(first);
+                    ends.add(second);
+                    run++;
+                }
+            } else {
+                int first = indexOf(a);
+                int second = indexOf(b);
+                if (first >= 0 && second >= 0) {
+                    beginIndices[run] = first;
+                    endIndices[run] = second;
+                    run++;
+                }
+            }
+            if (run == RUN) {
+                flush();
+            }
+        }
+
+        /**
+         * Adds the friendships of the current run.
+         */
+        private void flush() {
+            if (run == 0) {
+                return;
+            }
+            if (graph == null) {
+                network.addEdges(begins, ends);
+                begins.clear();
+                ends.clear();
+            } else {
+                network.addReplayedFriendships(graph, beginIndices, endIndices, run);
+            }
+            run = 0;
+        }
+
+        /**
+         * Helper function that resolves a user id to the index of the user in the
+         * graph, looking it up in the network the first time.
+         *
+         * @param id is the user id.
+         * @return the index of the user, or -1 if there is no such user.
+         */
+        private int indexOf(long id) {
+            int index = indices.get(id);
+            if (index < 0) {
+                Profile user = network.getUser(id);
+                if (user != null) {
+                    index = graph.indexOf(user);
+                    indices.put(id, index);
+                }
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Receives the records of a block during a scan.
+     */
+    private interface RecordConsumer {
+
+        /**
+         * Consumes the record at the position of the block, leaving the position
+         * after it.
+         *
+         * @param block is the block.
+         */
+        void accept(ByteBuffer block);
+    }
+}
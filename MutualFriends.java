@@ -0,0 +1,166 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class finds the mutual friends of users in an indexed graph. If the
+ * rows of the graph are sorted, as in a GraphSnapshot, two rows are intersected
+ * directly with SortedIntersection. Otherwise the friends of one user are
+ * marked in the per-thread TraversalScratch and the row of the other user is
+ * checked against the marks. Either way nothing is looked up by label after
+ * the two users themselves.
+ *
+ * @author amandhillon
+ *
+ */
+public final class MutualFriends {
+
+    /**
+     * This class only has static methods.
+     */
+    private MutualFriends() {
+    }
+
+    /**
+     * Finds the mutual friends of two vertices.
+     *
+     * @param <T>   is type of vertex.
+     * @param graph is the graph.
+     * @param a     is a vertex.
+     * @param b     is a vertex.
+     * @return the vertices adjacent to both, empty if either is not in the graph.
+     */
+    public static <T> List<T> of(IndexedGraph<T> graph, T a, T b) {
+        int ia = graph.indexOf(a);
+        int ib = graph.indexOf(b);
+        if (ia < 0 || ib < 0) {
+            return Collections.emptyList();
+        }
+        int[] common = new int[Math.min(graph.degree(ia), graph.degree(ib))];
+        int count = common(graph, ia, ib, common);
+        List<T> mutual = new ArrayList<T>(count);
+        for (int i = 0; i < count; i++) {
+            mutual.add(graph.labelAt(common[i]));
+        }
+        return mutual;
+    }
+
+    /**
+     * Counts the mutual friends of two vertices.
+     *
+     * @param <T>   is type of vertex.
+     * @param graph is the graph.
+     * @param a     is a vertex.
+     * @param b     is a vertex.
+     * @return the number of vertices adjacent to both, 0 if either is not in the
+     *         graph.
+     */
+    public static <T> int count(IndexedGraph<T> graph, T a, T b) {
+        int ia = graph.indexOf(a);
+        int ib = graph.indexOf(b);
+        return ia < 0 || ib < 0 ? 0 : common(graph, ia, ib, null);
+    }
+
+    /**
+     * Counts the mutual friends of one viewer with each of many targets, as for a
+     * list of profiles shown to the viewer. The friends of the viewer are marked
+     * once, so each target costs its own number of friends, or less if its row is
+     * sorted and much longer than the viewer's.
+     *
+     * @param <T>     is type of vertex.
+     * @param graph   is the graph.
+     * @param viewer  is the vertex that the counts are relative to.
+     * @param targets are the vertices to count for.
+     * @return the count of each target in order, 0 for targets not in the graph.
+     */
+    public static <T> int[] counts(IndexedGraph<T> graph, T viewer, List<T> targets) {
+        int[] counts = new int[targets.size()];
+        int v = graph.indexOf(viewer);
+        if (v < 0) {
+            return counts;
+        }
+        int[] adj = graph.adjacency(v);
+        int from = graph.adjacencyStart(v);
+        int to = from + graph.degree(v);
+        TraversalScratch scratch = TraversalScratch.begin(graph.indexBound());
+        try {
+            for (int i = from; i < to; i++) {
+                scratch.visit(adj[i]);
+            }
+            for (int k = 0; k < counts.length; k++) {
+                int t = graph.indexOf(targets.get(k));
+                if (t < 0) {
+                    continue;
+                }
+                int[] row = graph.adjacency(t);
+                int start = graph.adjacencyStart(t);
+                int end = start + graph.degree(t);
+                if (graph.hasSortedAdjacency() && (long) (to - from) * SortedIntersection.GALLOP_RATIO < end - start) {
+                    counts[k] = SortedIntersection.intersect(adj, from, to, row, start, end, null);
+                    continue;
+                }
+                int count = 0;
+                for (int i = start; i < end; i++) {
+                    if (scratch.isVisited(row[i])) {
+                        count++;
+                    }
+                }
+                counts[k] = count;
+            }
+        } finally {
+            scratch.end();
+        }
+        return counts;
+    }
+
+    /**
+     * Helper function that finds the common neighbors of two vertices.
+     *
+     * @param <T>   is type of vertex.
+     * @param graph is the graph.
+     * @param a     is the index of a vertex.
+     * @param b     is the index of a vertex.
+     * @param out   receives the common neighbors, or is null to only count them.
+     * @return the number of common neighbors.
+     */
+    private static <T> int common(IndexedGraph<T> graph, int a, int b, int[] out) {
+        int[] adjA = graph.adjacency(a);
+        int fromA = graph.adjacencyStart(a);
+        int toA = fromA + graph.degree(a);
+        int[] adjB = graph.adjacency(b);
+        int fromB = graph.adjacencyStart(b);
+        int toB = fromB + graph.degree(b);
+        if (graph.hasSortedAdjacency()) {
+            return SortedIntersection.intersect(adjA, fromA, toA, adjB, fromB, toB, out);
+        }
+        if (toA - fromA > toB - fromB) {
+            int[] swap = adjA;
+            adjA = adjB;
+            adjB = swap;
+            int start = fromA;
+            fromA = fromB;
+            fromB = start;
+            int end = toA;
+            toA = toB;
+            toB = end;
+        }
+        int count = 0;
+        TraversalScratch scratch = TraversalScratch.begin(graph.indexBound());
+        try {
+            for (int i = fromA; i < toA; i++) {
+                scratch.visit(adjA[i]);
+            }
+            for (int i = fromB; i < toB; i++) {
+                if (scratch.isVisited(adjB[i])) {
+                    if (out != null) {
+                        out[count] = adjB[i];
+                    }
+                    count++;
+                }
+            }
+        } finally {
+            scratch.end();
+        }
+        return count;
+    }
+}
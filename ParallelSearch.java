@@ -0,0 +1,535 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class holds the parallel breadth-first search over an indexed graph, for
+ * traversals that walk a large part of the network. The search is level
+ * synchronous: each level is split into chunks that run on a fork-join pool and
+ * claim their vertices in a shared atomic bitmap, and the levels are appended
+ * one after the other, so the result is in breadth-first order by level. When
+ * the frontier grows large, a level is expanded bottom-up instead: every
+ * unvisited vertex looks for a neighbor in the frontier and stops at the first
+ * one, which skips most of the edges a top-down step would have to check.
+ *
+ * The graph must not change while the search runs.
+ *
+ * @author amandhillon
+ *
+ */
+public final class ParallelSearch {
+
+    /**
+     * A level is expanded bottom-up once the edges out of the frontier exceed
+     * this fraction of the edges out of the unvisited vertices.
+     */
+    private static final int TOP_DOWN_FACTOR = 14;
+
+    /**
+     * A level is expanded top-down again once the frontier falls below this
+     * fraction of the vertices.
+     */
+    private static final int BOTTOM_UP_FACTOR = 24;
+
+    /**
+     * Number of frontier vertices a top-down chunk expands at least.
+     */
+    private static final int FRONTIER_GRAIN = 1024;
+
+    /**
+     * Number of bitmap words, of 64 vertices each, a bottom-up chunk scans at
+     * least.
+     */
+    private static final int WORD_GRAIN = 64;
+
+    /**
+     * Atomic access to the words of a bitmap.
+     */
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /**
+     * This class only has static methods.
+     */
+    private ParallelSearch() {
+    }
+
+    /**
+     * Performs a parallel breadth-first traversal of a graph on the common
+     * fork-join pool.
+     *
+     * @param <T>     is type of vertex.
+     * @param graph   is the graph to traverse.
+     * @param origins are the vertices to start from.
+     * @return the reachable vertices, level by level.
+     */
+    public static <T> List<T> breadthFirstTraversal(IndexedGraph<T> graph, Collection<T> origins) {
+        return breadthFirstTraversal(graph, origins, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Performs a parallel breadth-first traversal of a graph and produces the
+     * vertices reachable from any of the origins. The set of vertices is the
+     * same as the one of a sequential traversal from the same origins; only the
+     * order within a level may differ.
+     *
+     * @param <T>     is type of vertex.
+     * @param graph   is the graph to traverse.
+     * @param origins are the vertices to start from. Origins that are not in the
+     *                graph are ignored.
+     * @param pool    is the pool that runs the chunks of each level.
+     * @return the reachable vertices, level by level, empty if no origin is in
+     *         the graph.
+     */
+    public static <T> List<T> breadthFirstTraversal(IndexedGraph<T> graph, Collection<T> origins,
+            ForkJoinPool pool) {
+        int bound = graph.indexBound();
+        long[] visited = new long[(bound + 63) >>> 6];
+        int[] order = new int[bound];
+        int size = 0;
+        for (T origin : origins) {
+            int start = graph.indexOf(origin);
+            if (start >= 0 && claim(visited, start)) {
+                order[size++] = start;
+            }
+        }
+        if (size > 0) {
+            size = search(graph, pool, visited, order, size);
+        }
+
+        Object[] labels = new Object[size];
+        int[] reached = order;
+        run(pool, chunks(size, FRONTIER_GRAIN, pool), size, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                labels[i] = graph.labelAt(reached[i]);
+            }
+        });
+        @SuppressWarnings("unchecked")
+        List<T> result = (List<T>) Arrays.asList(labels);
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Helper function that expands the levels of the search until the frontier
+     * is empty.
+     *
+     * @param graph   is the graph to traverse.
+     * @param pool    is the pool that runs the chunks.
+     * @param visited is the bitmap of claimed vertices, holding the origins.
+     * @param order   receives the vertices in the order they are reached, and
+     *                holds the origins.
+     * @param origins is the number of origins.
+     * @return the number of vertices reached.
+     */
+    private static int search(IndexedGraph<?> graph, ForkJoinPool pool, long[] visited, int[] order,
+            int origins) {
+        int bound = graph.indexBound();
+        long unexplored = totalDegree(graph, pool);
+        long frontierEdges = 0;
+        for (int i = 0; i < origins; i++) {
+            frontierEdges += graph.degree(order[i]);
+        }
+        unexplored -= frontierEdges;
+        long[] frontierBits = null;
+        long[] nextBits = null;
+        int levelStart = 0;
+        int levelEnd = origins;
+        boolean bottomUp = false;
+
+        while (levelStart < levelEnd) {
+            int frontier = levelEnd - levelStart;
+            if (!bottomUp && frontierEdges > unexplored / TOP_DOWN_FACTOR) {
+                bottomUp = true;
+                if (frontierBits == null) {
+                    frontierBits = new long[visited.length];
+                    nextBits = new long[visited.length];
+                }
+                markFrontier(pool, order, levelStart, levelEnd, frontierBits);
+            } else if (bottomUp && frontier < bound / BOTTOM_UP_FACTOR) {
+                bottomUp = false;
+            }
+
+            Level level;
+            if (bottomUp) {
+                Arrays.fill(nextBits, 0L);
+                level = bottomUpStep(graph, pool, visited, frontierBits, nextBits);
+                long[] swap = frontierBits;
+                frontierBits = nextBits;
+                nextBits = swap;
+            } else {
+                level = topDownStep(graph, pool, visited, order, levelStart, levelEnd);
+            }
+            levelStart = levelEnd;
+            levelEnd = level.appendTo(order, levelEnd);
+            frontierEdges = level.degrees();
+            unexplored -= frontierEdges;
+        }
+        return levelEnd;
+    }
+
+    /**
+     * Helper function that expands a level top-down: every frontier vertex
+     * claims its unvisited neighbors.
+     *
+     * @param graph   is the graph to traverse.
+     * @param pool    is the pool that runs the chunks.
+     * @param visited is the bitmap of claimed vertices.
+     * @param order   holds the frontier.
+     * @param from    is the position of the first frontier vertex in order.
+     * @param to      is the position after the last frontier vertex in order.
+     * @return the vertices of the next level.
+     */
+    private static Level topDownStep(IndexedGraph<?> graph, ForkJoinPool pool, long[] visited, int[] order,
+            int from, int to) {
+        int frontier = to - from;
+        Level level = new Level(chunks(frontier, FRONTIER_GRAIN, pool));
+        run(pool, level.parts.length, frontier, (chunk, start, end) -> {
+            Part part = new Part();
+            for (int i = from + start; i < from + end; i++) {
+                int v = order[i];
+                int[] adj = graph.adjacency(v);
+                int first = graph.adjacencyStart(v);
+                int last = first + graph.degree(v);
+                for (int e = first; e < last; e++) {
+                    int n = adj[e];
+                    if (claim(visited, n)) {
+                        part.add(n, graph.degree(n));
+                    }
+                }
+            }
+            level.parts[chunk] = part;
+        });
+        return level;
+    }
+
+    /**
+     * Helper function that expands a level bottom-up: every unvisited vertex
+     * joins the next level if one of its neighbors is in the frontier. Each
+     * chunk owns a range of bitmap words, so it writes them without contention.
+     *
+     * @param graph        is the graph to traverse.
+     * @param pool         is the pool that runs the chunks.
+     * @param visited      is the bitmap of claimed vertices.
+     * @param frontierBits is the bitmap of the frontier.
+     * @param nextBits     receives the bitmap of the next level, cleared.
+     * @return the vertices of the next level.
+     */
+    private static Level bottomUpStep(IndexedGraph<?> graph, ForkJoinPool pool, long[] visited,
+            long[] frontierBits, long[] nextBits) {
+        int bound = graph.indexBound();
+        Level level = new Level(chunks(visited.length, WORD_GRAIN, pool));
+        run(pool, level.parts.length, visited.length, (chunk, start, end) -> {
+            Part part = new Part();
+            for (int w = start; w < end; w++) {
+                long unvisited = ~visited[w];
+                if (w == visited.length - 1 && (bound & 63) != 0) {
+                    unvisited &= (1L << bound) - 1;
+                }
+                long found = 0;
+                while (unvisited != 0) {
+                    int v = (w << 6) + Long.numberOfTrailingZeros(unvisited);
+                    unvisited &= unvisited - 1;
+                    int[] adj = graph.adjacency(v);
+                    int first = graph.adjacencyStart(v);
+                    int last = first + graph.degree(v);
+                    for (int e = first; e < last; e++) {
+                        int n = adj[e];
+                        if ((frontierBits[n >>> 6] & (1L << n)) != 0) {
+                            found |= 1L << v;
+                            part.add(v, last - first);
+                            break;
+                        }
+                    }
+                }
+                visited[w] |= found;
+                nextBits[w] = found;
+            }
+            level.parts[chunk] = part;
+        });
+        return level;
+    }
+
+    /**
+     * Helper function that sets the bits of the frontier vertices in a cleared
+     * bitmap.
+     *
+     * @param pool  is the pool that runs the chunks.
+     * @param order holds the frontier.
+     * @param from  is the position of the first frontier vertex in order.
+     * @param to    is the position after the last frontier vertex in order.
+     * @param bits  is the bitmap.
+     */
+    private static void markFrontier(ForkJoinPool pool, int[] order, int from, int to, long[] bits) {
+        Arrays.fill(bits, 0L);
+        int frontier = to - from;
+        run(pool, chunks(frontier, FRONTIER_GRAIN, pool), frontier, (start, end) -> {
+            for (int i = from + start; i < from + end; i++) {
+                claim(bits, order[i]);
+            }
+        });
+    }
+
+    /**
+     * Helper function that sums the degrees of all vertices of a graph.
+     *
+     * @param graph is the graph.
+     * @param pool  is the pool that runs the chunks.
+     * @return twice the number of edges.
+     */
+    private static long totalDegree(IndexedGraph<?> graph, ForkJoinPool pool) {
+        int bound = graph.indexBound();
+        int chunks = chunks(bound, FRONTIER_GRAIN * 64, pool);
+        long[] sums = new long[chunks];
+        run(pool, chunks, bound, (chunk, start, end) -> {
+            long sum = 0;
+            for (int v = start; v < end; v++) {
+                sum += graph.degree(v);
+            }
+            sums[chunk] = sum;
+        });
+        long total = 0;
+        for (long sum : sums) {
+            total += sum;
+        }
+        return total;
+    }
+
+    /**
+     * Helper function that atomically sets the bit of a vertex.
+     *
+     * @param bits   is the bitmap.
+     * @param vertex is the index of the vertex.
+     * @return true if the bit was not set before.
+     */
+    private static boolean claim(long[] bits, int vertex) {
+        int word = vertex >>> 6;
+        long bit = 1L << vertex;
+        if ((bits[word] & bit) != 0) {
+            return false;
+        }
+        return ((long) WORDS.getAndBitwiseOr(bits, word, bit) & bit) == 0;
+    }
+
+    /**
+     * Helper function that picks the number of chunks to split some work into.
+     *
+     * @param items is the number of items of work.
+     * @param grain is the least number of items worth a chunk of its own.
+     * @param pool  is the pool that runs the chunks.
+     * @return the number of chunks, at least one.
+     */
+    static int chunks(int items, int grain, ForkJoinPool pool) {
+        int wanted = (int) ((items + (long) grain - 1) / grain);
+        return Math.max(1, Math.min(wanted, pool.getParallelism() * 4));
+    }
+
+    /**
+     * Helper function that splits a range of items into chunks of about equal
+     * size and runs them on the pool, or right here if there is only one.
+     *
+     * @param pool   is the pool that runs the chunks.
+     * @param chunks is the number of chunks.
+     * @param items  is the number of items.
+     * @param step   runs one chunk.
+     */
+    static void run(ForkJoinPool pool, int chunks, int items, ChunkStep step) {
+        if (chunks == 1) {
+            step.run(0, 0, items);
+        } else {
+            pool.invoke(new Chunks(step, chunks, items, 0, chunks));
+        }
+    }
+
+    /**
+     * Helper function that runs a step on a range of items split into chunks,
+     * when the step does not need to know its chunk.
+     *
+     * @param pool   is the pool that runs the chunks.
+     * @param chunks is the number of chunks.
+     * @param items  is the number of items.
+     * @param step   runs one range of items.
+     */
+    static void run(ForkJoinPool pool, int chunks, int items, RangeStep step) {
+        run(pool, chunks, items, (chunk, start, end) -> step.run(start, end));
+    }
+
+    /**
+     * Runs one chunk of some work.
+     */
+    interface ChunkStep {
+
+        /**
+         * Runs a chunk.
+         *
+         * @param chunk is the number of the chunk.
+         * @param start is the first item of the chunk.
+         * @param end   is the item after the last item of the chunk.
+         */
+        void run(int chunk, int start, int end);
+    }
+
+    /**
+     * Runs one range of items.
+     */
+    interface RangeStep {
+
+        /**
+         * Runs a range.
+         *
+         * @param start is the first item of the range.
+         * @param end   is the item after the last item of the range.
+         */
+        void run(int start, int end);
+    }
+
+    /**
+     * This class splits a range of chunks in half until a single chunk is left
+     * and runs it.
+     */
+    private static final class Chunks extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The step to run on each chunk.
+         */
+        private final transient ChunkStep step;
+
+        /**
+         * The total number of chunks.
+         */
+        private final int chunks;
+
+        /**
+         * The total number of items.
+         */
+        private final int items;
+
+        /**
+         * The first chunk of this task.
+         */
+        private final int low;
+
+        /**
+         * The chunk after the last chunk of this task.
+         */
+        private final int high;
+
+        /**
+         * Constructor for the task of a range of chunks.
+         *
+         * @param step   is the step to run on each chunk.
+         * @param chunks is the total number of chunks.
+         * @param items  is the total number of items.
+         * @param low    is the first chunk of the task.
+         * @param high   is the chunk after the last chunk of the task.
+         */
+        private Chunks(ChunkStep step, int chunks, int items, int low, int high) {
+            this.step = step;
+            this.chunks = chunks;
+            this.items = items;
+            this.low = low;
+            this.high = high;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void compute() {
+            if (high - low == 1) {
+                step.run(low, (int) ((long) items * low / chunks), (int) ((long) items * high / chunks));
+            } else {
+                int middle = (low + high) >>> 1;
+                invokeAll(new Chunks(step, chunks, items, low, middle), new Chunks(step, chunks, items, middle, high));
+            }
+        }
+    }
+
+    /**
+     * This class collects the vertices one chunk adds to the next level.
+     */
+    private static final class Part {
+
+        /**
+         * The vertices, in the order they were claimed.
+         */
+        private int[] vertices = new int[16];
+
+        /**
+         * Number of vertices.
+         */
+        private int size;
+
+        /**
+         * Sum of the degrees of the vertices.
+         */
+        private long degrees;
+
+        /**
+         * Adds a vertex.
+         *
+         * @param vertex is the index of the vertex.
+         * @param degree is the degree of the vertex.
+         */
+        private void add(int vertex, int degree) {
+            if (size == vertices.length) {
+                vertices = Arrays.copyOf(vertices, size * 2);
+            }
+            vertices[size++] = vertex;
+            degrees += degree;
+        }
+    }
+
+    /**
+     * This class holds the parts of the next level, one per chunk.
+     */
+    private static final class Level {
+
+        /**
+         * The part of each chunk.
+         */
+        private final Part[] parts;
+
+        /**
+         * Constructor for a level split into chunks.
+         *
+         * @param chunks is the number of chunks.
+         */
+        private Level(int chunks) {
+            this.parts = new Part[chunks];
+        }
+
+        /**
+         * Appends the vertices of the level in chunk order.
+         *
+         * @param order is the array to append to.
+         * @param at    is the position to append at.
+         * @return the position after the last appended vertex.
+         */
+        private int appendTo(int[] order, int at) {
+            for (Part part : parts) {
+                System.arraycopy(part.vertices, 0, order, at, part.size);
+                at += part.size;
+            }
+            return at;
+        }
+
+        /**
+         * Sums the degrees of the vertices of the level.
+         *
+         * @return the sum of the degrees.
+         */
+        private long degrees() {
+            long sum = 0;
+            for (Part part : parts) {
+                sum += part.degrees;
+            }
+            return sum;
+        }
+    }
+}
@@ -1,4 +1,9 @@
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class represents the profiles of the users of the MasonConnect.
@@ -8,57 +13,92 @@ import java.util.ArrayList;
  */
 public class Profile {
 
+    /**
+     * the next user id handed out to a profile created without one.
+     */
+    private static final AtomicLong NEXT_ID = new AtomicLong(1);
+
+    /**
+     * the immutable id of the user, which alone decides equality.
+     */
+    private final long id;
+
     /**
      * String representation of name of user.
      */
     private String name;
 
+    /**
+     * the name of user as shown in friend lists, without brackets and commas.
+     */
+    private String displayName;
+
     /**
      * a String that the user uses to specify their status.
      */
     private String status;
 
     /**
-     * an arraylist of profiles that stores friends of the user.
+     * the network the user belongs to, which holds the friendships, null if the
+     * user is in none.
      */
-    private ArrayList<Profile> friendProfiles;
+    private volatile MasonConnect network;
 
     /**
-     * initializes all the String attributes to empty strings and a default
-     * arraylist.
+     * initializes all the String attributes to empty strings.
      */
     public Profile() {
+        this.id = nextId();
         this.name = "";
+        this.displayName = "";
         this.status = "";
-        this.friendProfiles = new ArrayList<>();
     }
 
     /**
      * initializes the attributes with the accepted valued.
      * 
-     * @param name           is the name of user.
-     * @param status         is the status of user.
-     * @param friendProfiles is the list of friends of user.
+     * @param name   is name of user.
+     * @param status is status of user.
      */
-    public Profile(String name, String status, ArrayList<Profile> friendProfiles) {
-        super();
-        this.name = name;
-        this.status = status;
-        this.friendProfiles = friendProfiles;
+    public Profile(String name, String status) {
+        this(nextId(), name, status);
     }
 
     /**
-     * initializes the attributes with the accepted valued and the last attribute
-     * with a default arraylist object.
+     * initializes the attributes with the accepted valued, using the given user id
+     * instead of handing out a new one. Ids handed out later are larger than it.
      * 
+     * @param id     is the user id of user.
      * @param name   is name of user.
      * @param status is status of user.
+     * @throws IllegalArgumentException if id is Long.MAX_VALUE, which leaves no
+     *                                  larger id to hand out.
      */
-    public Profile(String name, String status) {
+    public Profile(long id, String name, String status) {
         super();
+        if (id == Long.MAX_VALUE) {
+            throw new IllegalArgumentException("id " + id);
+        }
+        this.id = id;
         this.name = name;
+        this.displayName = sanitize(name);
         this.status = status;
-        this.friendProfiles = new ArrayList<>();
+        NEXT_ID.accumulateAndGet(id + 1, Math::max);
+    }
+
+    /**
+     * Helper function that hands out the next user id.
+     * 
+     * @return the user id.
+     * @throws IllegalStateException if every user id was handed out.
+     */
+    private static long nextId() {
+        return NEXT_ID.getAndUpdate(next -> {
+            if (next == Long.MAX_VALUE) {
+                throw new IllegalStateException("no user ids left");
+            }
+            return next + 1;
+        });
     }
 
     /**
@@ -67,25 +107,33 @@ public class Profile {
     @Override
     public boolean equals(Object obj) {
 
-        boolean isEqual;
-
         if (this == obj) {
             return true;
         }
 
-        if (obj == null) {
-            isEqual = false;
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
         }
 
-        if (getClass() != obj.getClass()) {
-            isEqual = false;
-        } else {
-            Profile otherObj = (Profile) obj;
-            isEqual = ((this.getName().equals(otherObj.getName()) && (this.getStatus().equals(otherObj.getStatus()))
-                    && (this.friendProfiles.equals(otherObj.getFriendProfiles()))));
-        }
-        return isEqual;
+        return this.id == ((Profile) obj).id;
+
+    }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return Long.hashCode(this.id);
+    }
+
+    /**
+     * getter method for user id.
+     * 
+     * @return the user id.
+     */
+    public long getId() {
+        return this.id;
     }
 
     /**
@@ -105,6 +153,17 @@ public class Profile {
      */
     public void setName(String firstName, String lastName) {
         this.name = firstName + " " + lastName;
+        this.displayName = sanitize(this.name);
+    }
+
+    /**
+     * getter method for the name shown in friend lists, which is the name without
+     * brackets and commas.
+     * 
+     * @return the display name of user.
+     */
+    public String getDisplayName() {
+        return this.displayName;
     }
 
     /**
@@ -123,20 +182,46 @@ public class Profile {
      */
     public void setStatus(String status) {
         this.status = status;
+        MasonConnect current = this.network;
+        MutationLog log = current == null ? null : current.log;
+        if (log != null) {
+            log.statusChanged(this);
+        }
+    }
+
+    /**
+     * Sets the network the user belongs to, called by the network when the user
+     * is added or removed.
+     * 
+     * @param owner is the network, or null if the user is in none.
+     */
+    void setNetwork(MasonConnect owner) {
+        this.network = owner;
+    }
+
+    /**
+     * Gets the network the user belongs to.
+     * 
+     * @return the network, or null if the user is in none.
+     */
+    MasonConnect getNetwork() {
+        return this.network;
     }
 
     /**
      * Helper function to represent a user profile.
      * 
-     * @return string builder that represents a user profile.
+     * @param out     receives the representation of the user profile.
+     * @param friends is the number of friends of the user.
+     * @throws IOException if out cannot be written.
      */
-    private String stringDisplay() {
+    private void stringDisplay(Appendable out, int friends) throws IOException {
 
-        StringBuilder sb = new StringBuilder();
-        sb.append("Name: " + this.name);
-        sb.append("\n\tStatus: " + this.status);
-        sb.append("\n\tNumber of friend profiles: " + this.friendProfiles.size() + "\n");
-        return sb.toString();
+        out.append("Name: ").append(this.name);
+        out.append("\n\tStatus: ").append(this.status);
+        out.append("\n\tNumber of friend profiles: ");
+        appendCount(out, friends);
+        out.append('\n');
 
     }
 
@@ -147,7 +232,13 @@ public class Profile {
      */
     public String toString() {
 
-        return this.stringDisplay();
+        StringBuilder sb = new StringBuilder();
+        try {
+            this.stringDisplay(sb, this.getFriendProfiles().size());
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return sb.toString();
 
     }
 
@@ -157,53 +248,229 @@ public class Profile {
     public void display() {
 
         StringBuilder sb = new StringBuilder();
+        try {
+            this.render(sb);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        System.out.print(sb);
+
+    }
+
+    /**
+     * Writes the profile and the display names of the friends, as display prints
+     * them, straight into a character sink. No strings are built on the way.
+     * 
+     * @param out receives the profile.
+     * @throws IOException if out cannot be written.
+     */
+    public void render(Appendable out) throws IOException {
+
+        this.render(out, getFriendProfiles());
+
+    }
+
+    /**
+     * Writes the profile and the display names of the given friends, as display
+     * prints them, for callers that read the friends from a snapshot rather than
+     * from the live network.
+     * 
+     * @param out     receives the profile.
+     * @param friends are the friends of the user.
+     * @throws IOException if out cannot be written.
+     */
+    void render(Appendable out, List<Profile> friends) throws IOException {
 
-        sb.append(this.toString());
-        sb.append("\nFriends: ");
-        for (Profile friend : friendProfiles) {
-            sb.append("\n\t" + friend.getName().toString().replace("[", "").replace("]", "").replace(",", ""));
+        this.stringDisplay(out, friends.size());
+        out.append("\nFriends: ");
+        for (Profile friend : friends) {
+            out.append("\n\t").append(friend.displayName);
         }
-        System.out.println(sb);
+        out.append('\n');
 
     }
 
     /**
-     * Returns a list of the users friends.
+     * Writes the profile and the display names of the friends, as display prints
+     * them, into a buffer as UTF-8.
      * 
-     * @return the friendProfiles
+     * @param out receives the profile.
+     * @throws BufferOverflowException if the profile does not fit in the remaining
+     *                                 space of out, which is then left as it was.
      */
-    public ArrayList<Profile> getFriendProfiles() {
-        return this.friendProfiles;
+    public void render(ByteBuffer out) {
+
+        this.render(out, getFriendProfiles());
+
     }
 
     /**
-     * This method adds a friend to the users list.
+     * Writes the profile and the display names of the given friends, as display
+     * prints them, into a buffer as UTF-8, for callers that read the friends from
+     * a snapshot rather than from the live network.
      * 
-     * @param user is user that gets a user added to their friends list.
+     * @param out     receives the profile.
+     * @param friends are the friends of the user.
+     * @throws BufferOverflowException if the profile does not fit in the remaining
+     *                                 space of out, which is then left as it was.
      */
-    public void addFriend(Profile user) {// issue here
-        for (Profile u : friendProfiles) {
-            if (u.equals(user)) {
-                return;
+    void render(ByteBuffer out, List<Profile> friends) {
+
+        int start = out.position();
+        try {
+            putUtf8(out, "Name: ");
+            putUtf8(out, this.name);
+            putUtf8(out, "\n\tStatus: ");
+            putUtf8(out, this.status);
+            putUtf8(out, "\n\tNumber of friend profiles: ");
+            putCount(out, friends.size());
+            putUtf8(out, "\n\nFriends: ");
+            for (Profile friend : friends) {
+                putUtf8(out, "\n\t");
+                putUtf8(out, friend.displayName);
             }
+            out.put((byte) '\n');
+        } catch (BufferOverflowException e) {
+            out.position(start);
+            throw e;
+        }
+
+    }
 
+    /**
+     * Helper function that removes the brackets and commas from a name.
+     * 
+     * @param name is the name.
+     * @return the name without brackets and commas.
+     */
+    private static String sanitize(String name) {
+        if (name == null) {
+            return "null";
+        }
+        StringBuilder sb = null;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '[' || c == ']' || c == ',') {
+                if (sb == null) {
+                    sb = new StringBuilder(name.length()).append(name, 0, i);
+                }
+            } else if (sb != null) {
+                sb.append(c);
+            }
         }
-        friendProfiles.add(user);
+        return sb == null ? name : sb.toString();
+    }
 
+    /**
+     * Helper function that writes a count in decimal digits.
+     * 
+     * @param out   receives the digits.
+     * @param count is the count, not negative.
+     * @throws IOException if out cannot be written.
+     */
+    private static void appendCount(Appendable out, int count) throws IOException {
+        int divisor = 1;
+        while (divisor <= count / 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            out.append((char) ('0' + count / divisor % 10));
+        }
     }
 
     /**
-     * Removes an existing friend from the list of friends.
+     * Helper function that puts a count in decimal digits.
+     * 
+     * @param out   receives the digits.
+     * @param count is the count, not negative.
+     */
+    private static void putCount(ByteBuffer out, int count) {
+        int divisor = 1;
+        while (divisor <= count / 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            out.put((byte) ('0' + count / divisor % 10));
+        }
+    }
+
+    /**
+     * Helper function that puts the UTF-8 encoding of a string.
+     * 
+     * @param out  receives the bytes.
+     * @param text is the string, written as "null" if it is null.
+     */
+    private static void putUtf8(ByteBuffer out, String text) {
+        if (text == null) {
+            text = "null";
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, text.charAt(++i));
+                out.put((byte) (0xF0 | cp >> 18)).put((byte) (0x80 | cp >> 12 & 0x3F));
+                out.put((byte) (0x80 | cp >> 6 & 0x3F)).put((byte) (0x80 | cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                out.put((byte) '?');
+            } else {
+                out.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * Returns a list of the users friends. The list is a read-only view of the
+     * friendships in the user's network, so it never needs to be kept in sync and
+     * always reflects the latest changes. In a ConcurrentMasonConnect it is a copy
+     * taken under the user's lock instead, safe to read while the network changes.
+     * 
+     * @return the friends of the user.
+     */
+    public List<Profile> getFriendProfiles() {
+        MasonConnect current = this.network;
+        return current == null ? Collections.<Profile>emptyList() : current.getFriends(this);
+    }
+
+    /**
+     * Returns the friends this user has in common with another user, as found by
+     * the user's network.
+     * 
+     * @param other is another user.
+     * @return the mutual friends, empty if the user is not in a network.
+     */
+    public List<Profile> getMutualFriends(Profile other) {
+        MasonConnect current = this.network;
+        return current == null ? Collections.<Profile>emptyList() : current.mutualFriends(this, other);
+    }
+
+    /**
+     * This method adds a friend to the users list, by creating the friendship in
+     * the user's network.
+     * 
+     * @param user is user that gets a user added to their friends list.
+     */
+    public void addFriend(Profile user) {
+        MasonConnect current = this.network;
+        if (current != null) {
+            current.createFriendship(this, user);
+        }
+    }
+
+    /**
+     * Removes an existing friend from the list of friends, by removing the
+     * friendship from the user's network.
      * 
      * @param user to be removed from friends list.
      * @return true if removed, else false.
      */
     public boolean unFriend(Profile user) {
-        boolean removed = false;
-
-        removed = friendProfiles.remove(user);
-
-        return removed;
+        MasonConnect current = this.network;
+        return current != null && current.removeFriendship(this, user);
     }
 
 }
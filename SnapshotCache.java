@@ -0,0 +1,75 @@
+import java.util.function.Supplier;
+
+/**
+ * This class keeps the last snapshot of a network for the queries that read
+ * the whole network at once, such as counting triangles, so that a network
+ * without an indexed view is compiled once per change instead of once per
+ * query. Mutations report when they start and when they are done. A snapshot
+ * is dropped when a mutation starts, and a snapshot that overlapped a mutation
+ * is answered but not kept.
+ *
+ * All methods may be called from several threads. The monitor of the cache is
+ * only held for bookkeeping, never while the snapshot is taken, so it can be
+ * taken under any lock of the network.
+ *
+ * @author amandhillon
+ *
+ */
+final class SnapshotCache {
+
+    /**
+     * Number of mutations that started.
+     */
+    private long started;
+
+    /**
+     * Number of mutations that are done.
+     */
+    private long finished;
+
+    /**
+     * The kept snapshot, null if there is none.
+     */
+    private GraphSnapshot<Profile> snapshot;
+
+    /**
+     * Gets the kept snapshot, or takes a new one and keeps it if no mutation
+     * ran while it was taken.
+     *
+     * @param take takes a snapshot of the network.
+     * @return a snapshot of the network.
+     */
+    GraphSnapshot<Profile> get(Supplier<GraphSnapshot<Profile>> take) {
+        long stamp;
+        boolean quiet;
+        synchronized (this) {
+            if (snapshot != null) {
+                return snapshot;
+            }
+            stamp = started;
+            quiet = started == finished;
+        }
+        GraphSnapshot<Profile> taken = take.get();
+        synchronized (this) {
+            if (quiet && started == stamp && snapshot == null) {
+                snapshot = taken;
+            }
+        }
+        return taken;
+    }
+
+    /**
+     * Drops the kept snapshot as a mutation starts.
+     */
+    synchronized void mutating() {
+        started++;
+        snapshot = null;
+    }
+
+    /**
+     * Notes that a mutation is done.
+     */
+    synchronized void mutated() {
+        finished++;
+    }
+}
@@ -0,0 +1,467 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class saves a MasonConnect network to a binary file and loads it back.
+ * The file holds a header, a pool of the distinct names and statuses, a table
+ * of the profiles that refer into the pool, and the friendships as
+ * compressed-sparse-row adjacency with sorted rows. The weights of the
+ * friendships follow only if some friendship has a weight other than 0:
+ *
+ * <pre>
+ * int magic, int version, int users, int strings, long adjacency entries,
+ * int weighted (1 if the weights section is present, else 0)
+ * strings:  int byte length, UTF-8 bytes
+ * profiles: long id, int name string, int status string (-1 for null)
+ * offsets:  users + 1 ints
+ * targets:  adjacency entries ints, two per friendship
+ * weights:  adjacency entries doubles, parallel to targets
+ * </pre>
+ *
+ * Saving streams the network out row by row and replaces the file atomically.
+ * Loading maps the file into memory and copies the sections in bulk, so no edge
+ * is parsed, hashed or inserted one at a time. The rows are then checked to be
+ * strictly increasing, free of self-loops and symmetric with equal weights, the
+ * last with a binary search per entry, so a corrupt file is rejected instead of
+ * loaded.
+ *
+ * @author amandhillon
+ *
+ */
+public final class SnapshotFile {
+
+    /**
+     * First four bytes of every snapshot file, "MCSN".
+     */
+    private static final int MAGIC = 0x4D43534E;
+
+    /**
+     * Version of the file format.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Size of the buffer used for saving.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Largest part of the file mapped at once.
+     */
+    private static final int WINDOW_SIZE = 1 << 30;
+
+    /**
+     * This class only has static methods.
+     */
+    private SnapshotFile() {
+    }
+
+    /**
+     * Saves the users and friendships of a network. The live network is compiled
+     * even if a snapshot of it is published, so mutations made after a freeze are
+     * saved too. The network must not change while it is compiled unless it is
+     * concurrent.
+     *
+     * @param network is the network to save.
+     * @param file    is the file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void save(MasonConnect network, Path file) throws IOException {
+        GraphSnapshot<Profile> graph = network.snapshot();
+        int bound = graph.indexBound();
+        int[] dense = new int[bound];
+        int users = 0;
+        long entries = 0;
+        boolean weighted = false;
+        Map<String, Integer> pool = new HashMap<String, Integer>();
+        List<String> strings = new ArrayList<String>();
+        for (int i = 0; i < bound; i++) {
+            Profile user = graph.labelAt(i);
+            if (user == null) {
+                dense[i] = -1;
+            } else {
+                dense[i] = users++;
+                entries += graph.degree(i);
+                weighted = weighted || hasWeights(graph, i);
+                intern(user.getName(), pool, strings);
+                intern(user.getStatus(), pool, strings);
+            }
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            out.putInt(MAGIC).putInt(VERSION).putInt(users).putInt(strings.size()).putLong(entries)
+                    .putInt(weighted ? 1 : 0);
+            for (String s : strings) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                out = reserve(channel, out, 4 + bytes.length);
+                out.putInt(bytes.length).put(bytes);
+            }
+            for (int i = 0; i < bound; i++) {
+                Profile user = graph.labelAt(i);
+                if (user != null) {
+                    out = reserve(channel, out, 16);
+                    out.putLong(user.getId()).putInt(ref(user.getName(), pool)).putInt(ref(user.getStatus(), pool));
+                }
+            }
+            int offset = 0;
+            for (int i = 0; i < bound; i++) {
+                if (dense[i] >= 0) {
+                    out = reserve(channel, out, 4);
+                    out.putInt(offset);
+                    offset += graph.degree(i);
+                }
+            }
+            out = reserve(channel, out, 4);
+            out.putInt(offset);
+            // The rows of a snapshot are sorted by index, and the dense numbering
+            // keeps that order, so the weights stay parallel to the targets.
+            int[] row = new int[16];
+            for (int i = 0; i < bound; i++) {
+                if (dense[i] >= 0) {
+                    int degree = graph.degree(i);
+                    if (degree > row.length) {
+                        row = new int[Math.max(degree, row.length * 2)];
+                    }
+                    int[] adj = graph.adjacency(i);
+                    int from = graph.adjacencyStart(i);
+                    for (int k = 0; k < degree; k++) {
+                        row[k] = dense[adj[from + k]];
+                    }
+                    out = reserve(channel, out, 4 * degree);
+                    out.asIntBuffer().put(row, 0, degree);
+                    out.position(out.position() + 4 * degree);
+                }
+            }
+            if (weighted) {
+                for (int i = 0; i < bound; i++) {
+                    if (dense[i] >= 0) {
+                        int degree = graph.degree(i);
+                        out = reserve(channel, out, 8 * degree);
+                        out.asDoubleBuffer().put(graph.adjacencyWeights(i), graph.adjacencyStart(i), degree);
+                        out.position(out.position() + 8 * degree);
+                    }
+                }
+            }
+            flush(channel, out);
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads a network saved by save into a new MasonConnect backed by a
+     * CompactGraph.
+     *
+     * @param file is the file to read.
+     * @return the network.
+     * @throws IOException if the file cannot be read or is not a valid snapshot.
+     */
+    public static MasonConnect load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Reader in = new Reader(channel);
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is not a MasonConnect snapshot");
+            }
+            int users = in.readInt();
+            int stringCount = in.readInt();
+            long entries = in.readLong();
+            int weighted = in.readInt();
+            if (users < 0 || stringCount < 0 || entries < 0 || entries > Integer.MAX_VALUE - 8
+                    || (weighted != 0 && weighted != 1)) {
+                throw new IOException("corrupt snapshot header in " + file);
+            }
+
+            String[] strings = new String[stringCount];
+            for (int i = 0; i < stringCount; i++) {
+                strings[i] = in.readString();
+            }
+            Profile[] profiles = new Profile[users];
+            for (int i = 0; i < users; i++) {
+                long id = in.readLong();
+                int name = in.readInt();
+                int status = in.readInt();
+                if (name < -1 || name >= stringCount || status < -1 || status >= stringCount) {
+                    throw new IOException("corrupt profile table in " + file);
+                }
+                profiles[i] = new Profile(id, name < 0 ? null : strings[name], status < 0 ? null : strings[status]);
+            }
+            int[] offsets = new int[users + 1];
+            in.readInts(offsets);
+            int[] targets = new int[(int) entries];
+            in.readInts(targets);
+            double[] weights = null;
+            if (weighted == 1) {
+                weights = new double[(int) entries];
+                in.readDoubles(weights);
+            }
+
+            if (offsets[0] != 0 || offsets[users] != targets.length) {
+                throw new IOException("corrupt adjacency in " + file);
+            }
+            for (int i = 0; i < users; i++) {
+                if (offsets[i + 1] < offsets[i]) {
+                    throw new IOException("corrupt adjacency in " + file);
+                }
+                for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                    if (targets[k] < 0 || targets[k] >= users || targets[k] == i
+                            || (k > offsets[i] && targets[k] <= targets[k - 1])) {
+                        throw new IOException("corrupt adjacency in " + file);
+                    }
+                }
+            }
+            for (int i = 0; i < users; i++) {
+                for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                    int friend = targets[k];
+                    int back = Arrays.binarySearch(targets, offsets[friend], offsets[friend + 1], i);
+                    if (back < 0) {
+                        throw new IOException("one-sided friendship in " + file);
+                    }
+                    if (weights != null && Double.compare(weights[k], weights[back]) != 0) {
+                        throw new IOException("friendship with two weights in " + file);
+                    }
+                }
+            }
+            try {
+                return new MasonConnect(CompactGraph.fromAdjacency(profiles, offsets, targets, weights));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("corrupt profile table in " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Helper function that checks if a user has a friendship with a weight other
+     * than 0.
+     *
+     * @param graph is the snapshot of the network.
+     * @param index is the index of the user.
+     * @return true if some friendship of the user is weighted.
+     */
+    private static boolean hasWeights(IndexedGraph<Profile> graph, int index) {
+        double[] weights = graph.adjacencyWeights(index);
+        int from = graph.adjacencyStart(index);
+        for (int k = from; k < from + graph.degree(index); k++) {
+            if (weights[k] != 0.0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Helper function that adds a string to the pool if it is not there yet.
+     *
+     * @param s       is the string, may be null.
+     * @param pool    maps each pooled string to its number.
+     * @param strings are the pooled strings in order.
+     */
+    private static void intern(String s, Map<String, Integer> pool, List<String> strings) {
+        if (s != null && !pool.containsKey(s)) {
+            pool.put(s, strings.size());
+            strings.add(s);
+        }
+    }
+
+    /**
+     * Helper function that finds the number of a pooled string.
+     *
+     * @param s    is the string, may be null.
+     * @param pool maps each pooled string to its number.
+     * @return the number of the string, or -1 for null.
+     */
+    private static int ref(String s, Map<String, Integer> pool) {
+        return s == null ? -1 : pool.get(s);
+    }
+
+    /**
+     * Helper function that makes room for a number of bytes in the save buffer,
+     * writing it out or replacing it with a larger one.
+     *
+     * @param channel is the file to write to.
+     * @param out     is the save buffer.
+     * @param bytes   is the number of bytes needed.
+     * @return the buffer to put the bytes in.
+     * @throws IOException if the file cannot be written.
+     */
+    private static ByteBuffer reserve(FileChannel channel, ByteBuffer out, int bytes) throws IOException {
+        if (out.remaining() >= bytes) {
+            return out;
+        }
+        flush(channel, out);
+        return bytes <= out.capacity() ? out : ByteBuffer.allocate(bytes);
+    }
+
+    /**
+     * Helper function that writes out and empties the save buffer.
+     *
+     * @param channel is the file to write to.
+     * @param out     is the save buffer.
+     * @throws IOException if the file cannot be written.
+     */
+    private static void flush(FileChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * This class reads a snapshot file through memory-mapped windows, mapping
+     * the next window whenever a read would cross the end of the current one.
+     *
+     * @author amandhillon
+     *
+     */
+    private static final class Reader {
+
+        /**
+         * The file being read.
+         */
+        private final FileChannel channel;
+
+        /**
+         * Size of the file.
+         */
+        private final long size;
+
+        /**
+         * Position in the file where the current window starts.
+         */
+        private long windowStart;
+
+        /**
+         * The currently mapped window.
+         */
+        private MappedByteBuffer window;
+
+        /**
+         * Constructor for a reader at the start of a file.
+         *
+         * @param channel is the file to read.
+         * @throws IOException if the file cannot be mapped.
+         */
+        private Reader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            map(0);
+        }
+
+        /**
+         * Reads a big-endian int.
+         *
+         * @return the int.
+         * @throws IOException if the file ends.
+         */
+        private int readInt() throws IOException {
+            require(4);
+            return window.getInt();
+        }
+
+        /**
+         * Reads a big-endian long.
+         *
+         * @return the long.
+         * @throws IOException if the file ends.
+         */
+        private long readLong() throws IOException {
+            require(8);
+            return window.getLong();
+        }
+
+        /**
+         * Reads a string written as its UTF-8 length and bytes.
+         *
+         * @return the string.
+         * @throws IOException if the file ends or the length is invalid.
+         */
+        private String readString() throws IOException {
+            int length = readInt();
+            if (length < 0 || length > WINDOW_SIZE) {
+                throw new IOException("corrupt string pool");
+            }
+            require(length);
+            byte[] bytes = new byte[length];
+            window.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Fills an array with big-endian ints, copying a window at a time.
+         *
+         * @param values is the array to fill.
+         * @throws IOException if the file ends.
+         */
+        private void readInts(int[] values) throws IOException {
+            int done = 0;
+            while (done < values.length) {
+                require(4);
+                int count = Math.min(values.length - done, window.remaining() / 4);
+                window.asIntBuffer().get(values, done, count);
+                window.position(window.position() + count * 4);
+                done += count;
+            }
+        }
+
+        /**
+         * Fills an array with big-endian doubles, copying a window at a time.
+         *
+         * @param values is the array to fill.
+         * @throws IOException if the file ends.
+         */
+        private void readDoubles(double[] values) throws IOException {
+            int done = 0;
+            while (done < values.length) {
+                require(8);
+                int count = Math.min(values.length - done, window.remaining() / 8);
+                window.asDoubleBuffer().get(values, done, count);
+                window.position(window.position() + count * 8);
+                done += count;
+            }
+        }
+
+        /**
+         * Helper function that makes sure the current window holds a number of
+         * bytes, mapping a new window at the current position if needed.
+         *
+         * @param bytes is the number of bytes needed.
+         * @throws IOException if the file ends.
+         */
+        private void require(int bytes) throws IOException {
+            if (window.remaining() < bytes) {
+                long position = windowStart + window.position();
+                if (size - position < bytes) {
+                    throw new IOException("snapshot file ends early");
+                }
+                map(position);
+            }
+        }
+
+        /**
+         * Helper function that maps the window starting at a position.
+         *
+         * @param position is the position in the file.
+         * @throws IOException if the file cannot be mapped.
+         */
+        private void map(long position) throws IOException {
+            this.windowStart = position;
+            this.window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(WINDOW_SIZE, size - position));
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * This class intersects sorted arrays of ids without duplicates. Rows of similar
+ * length are merged in one linear pass. When one row is much longer than the
+ * other, each id of the shorter row is found in the longer one by a galloping
+ * search that doubles its step from the last match and then halves back, so
+ * the cost grows with the shorter row times the log of the gap between matches
+ * instead of with the longer row.
+ *
+ * @author amandhillon
+ *
+ */
+final class SortedIntersection {
+
+    /**
+     * Length ratio from which the longer row is galloped through instead of
+     * merged.
+     */
+    static final int GALLOP_RATIO = 8;
+
+    /**
+     * This class only has static methods.
+     */
+    private SortedIntersection() {
+    }
+
+    /**
+     * Intersects two sorted ranges of ints.
+     *
+     * @param a     is a sorted array.
+     * @param aFrom is the start of the range in a.
+     * @param aTo   is the end of the range in a, exclusive.
+     * @param b     is a sorted array.
+     * @param bFrom is the start of the range in b.
+     * @param bTo   is the end of the range in b, exclusive.
+     * @param out   receives the common ids in order, or is null to only count
+     *              them. It must hold the shorter range.
+     * @return the number of common ids.
+     */
+    static int intersect(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo, int[] out) {
+        if (aTo - aFrom > bTo - bFrom) {
+            return intersect(b, bFrom, bTo, a, aFrom, aTo, out);
+        }
+        if (aFrom == aTo || a[aTo - 1] < b[bFrom] || b[bTo - 1] < a[aFrom]) {
+            return 0;
+        }
+        int count = 0;
+        int i = aFrom;
+        int j = bFrom;
+        if ((long) (aTo - aFrom) * GALLOP_RATIO < bTo - bFrom) {
+            for (; i < aTo && j < bTo; i++) {
+                int step = 1;
+                int low = j;
+                while (low + step < bTo && b[low + step] < a[i]) {
+                    low += step;
+                    step <<= 1;
+                }
+                int high = Math.min(low + step, bTo - 1);
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if (b[mid] < a[i]) {
+                        low = mid + 1;
+                    } else {
+                        high = mid;
+                    }
+                }
+                j = low;
+                if (b[j] == a[i]) {
+                    if (out != null) {
+                        out[count] = a[i];
+                    }
+                    count++;
+                    j++;
+                }
+            }
+            return count;
+        }
+        while (i < aTo && j < bTo) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                if (out != null) {
+                    out[count] = a[i];
+                }
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Intersects two sorted arrays of longs.
+     *
+     * @param a   is a sorted array.
+     * @param b   is a sorted array.
+     * @param out receives the common ids in order, or is null to only count them.
+     *            It must hold the shorter array.
+     * @return the number of common ids.
+     */
+    static int intersect(long[] a, long[] b, long[] out) {
+        if (a.length > b.length) {
+            return intersect(b, a, out);
+        }
+        if (a.length == 0 || a[a.length - 1] < b[0] || b[b.length - 1] < a[0]) {
+            return 0;
+        }
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        if ((long) a.length * GALLOP_RATIO < b.length) {
+            for (; i < a.length && j < b.length; i++) {
+                int step = 1;
+                int low = j;
+                while (low + step < b.length && b[low + step] < a[i]) {
+                    low += step;
+                    step <<= 1;
+                }
+                int high = Math.min(low + step, b.length - 1);
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if (b[mid] < a[i]) {
+                        low = mid + 1;
+                    } else {
+                        high = mid;
+                    }
+                }
+                j = low;
+                if (b[j] == a[i]) {
+                    if (out != null) {
+                        out[count] = a[i];
+                    }
+                    count++;
+                    j++;
+                }
+            }
+            return count;
+        }
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                if (out != null) {
+                    out[count] = a[i];
+                }
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,233 @@
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+
+/**
+ * This class holds the per-query state of a graph search, keyed by dense vertex
+ * index. A vertex counts as visited only if its stamp equals the epoch of the
+ * current search, so starting a search just increments the epoch instead of
+ * clearing anything. Each thread reuses its own instance, which lets any number
+ * of searches run at the same time without touching the shared vertices.
+ *
+ * The instance of a thread is only softly held, so the collector can take back
+ * the scratch of idle threads in a pool when memory runs low, and arrays much
+ * larger than the graph being searched are dropped for smaller ones.
+ *
+ * @author amandhillon
+ *
+ */
+final class TraversalScratch {
+
+    /**
+     * Least length worth shrinking the arrays from.
+     */
+    private static final int SHRINK_THRESHOLD = 1 << 16;
+
+    /**
+     * Factor by which the arrays must exceed the bound of a search to be
+     * shrunk.
+     */
+    private static final int SHRINK_FACTOR = 4;
+
+    /**
+     * Number of searches in a row with a small bound after which the arrays are
+     * shrunk, so a thread that switches between a large and a small graph does
+     * not keep reallocating.
+     */
+    private static final int SHRINK_AFTER = 64;
+
+    /**
+     * The reusable scratch of each thread.
+     */
+    private static final ThreadLocal<SoftReference<TraversalScratch>> LOCAL =
+            new ThreadLocal<SoftReference<TraversalScratch>>();
+
+    /**
+     * Epoch of the search that last visited each index.
+     */
+    private int[] stamps;
+
+    /**
+     * Epoch of the current search.
+     */
+    private int epoch;
+
+    /**
+     * True while a search is using this scratch.
+     */
+    private boolean inUse;
+
+    /**
+     * Number of searches in a row whose bound was much smaller than the arrays.
+     */
+    private int smallSearches;
+
+    /**
+     * Queue of vertex indices for the search.
+     */
+    int[] queue;
+
+    /**
+     * Second queue, for searches that grow from both ends.
+     */
+    int[] backwardQueue;
+
+    /**
+     * Distance of each visited index from the origin.
+     */
+    int[] distance;
+
+    /**
+     * Accumulated weight of each visited index.
+     */
+    double[] weight;
+
+    /**
+     * Predecessor index of each visited index.
+     */
+    int[] predecessor;
+
+    /**
+     * Accumulated weight of each visited index, for the second end of a search
+     * that grows from both ends.
+     */
+    double[] backwardWeight;
+
+    /**
+     * Predecessor index of each visited index, for the second end of a search
+     * that grows from both ends.
+     */
+    int[] backwardPredecessor;
+
+    /**
+     * Position of each visited index in the heap of the second end of a search
+     * that grows from both ends.
+     */
+    int[] backwardPosition;
+
+    /**
+     * Queue of vertex objects, for graphs that walk vertex objects instead of
+     * indices.
+     */
+    Object[] vertexQueue;
+
+    /**
+     * Constructor for an empty scratch.
+     */
+    private TraversalScratch() {
+        this.stamps = new int[0];
+        this.queue = new int[0];
+        this.backwardQueue = new int[0];
+        this.distance = new int[0];
+        this.weight = new double[0];
+        this.predecessor = new int[0];
+        this.backwardWeight = new double[0];
+        this.backwardPredecessor = new int[0];
+        this.backwardPosition = new int[0];
+        this.vertexQueue = new Object[0];
+    }
+
+    /**
+     * Starts a search over indices below a bound. If the thread is already in a
+     * search, the nested one gets a fresh scratch of its own.
+     *
+     * @param bound is one past the largest index the search can visit.
+     * @return the scratch to use, which must be given back with end.
+     */
+    static TraversalScratch begin(int bound) {
+        SoftReference<TraversalScratch> held = LOCAL.get();
+        TraversalScratch scratch = held == null ? null : held.get();
+        if (scratch != null && scratch.inUse) {
+            scratch = new TraversalScratch();
+        } else if (scratch == null || scratch.oversized(bound)) {
+            scratch = new TraversalScratch();
+            LOCAL.set(new SoftReference<TraversalScratch>(scratch));
+        }
+        scratch.inUse = true;
+        scratch.ensureCapacity(bound);
+        if (++scratch.epoch == Integer.MAX_VALUE) {
+            Arrays.fill(scratch.stamps, 0);
+            scratch.epoch = 1;
+        }
+        return scratch;
+    }
+
+    /**
+     * Ends the search, so the thread can reuse this scratch.
+     */
+    void end() {
+        end(0);
+    }
+
+    /**
+     * Ends a search that used the vertex queue, dropping the references it holds.
+     *
+     * @param used is the number of vertex queue slots the search filled.
+     */
+    void end(int used) {
+        Arrays.fill(vertexQueue, 0, used, null);
+        inUse = false;
+    }
+
+    /**
+     * Marks an index as visited.
+     *
+     * @param index is the index to mark.
+     * @return true if the index was not visited before in this search.
+     */
+    boolean visit(int index) {
+        if (index >= stamps.length) {
+            ensureCapacity(index + 1);
+        }
+        if (stamps[index] == epoch) {
+            return false;
+        }
+        stamps[index] = epoch;
+        return true;
+    }
+
+    /**
+     * Checks if an index was visited in this search.
+     *
+     * @param index is the index to check.
+     * @return true if visited.
+     */
+    boolean isVisited(int index) {
+        return index < stamps.length && stamps[index] == epoch;
+    }
+
+    /**
+     * Helper function that checks if the arrays have been much larger than the
+     * bounds of enough searches in a row to be worth dropping.
+     *
+     * @param bound is the bound of the next search.
+     * @return true if the arrays should be dropped.
+     */
+    private boolean oversized(int bound) {
+        if (stamps.length <= SHRINK_THRESHOLD || stamps.length / SHRINK_FACTOR <= bound) {
+            smallSearches = 0;
+            return false;
+        }
+        return ++smallSearches >= SHRINK_AFTER;
+    }
+
+    /**
+     * Makes sure all arrays can hold a number of indices.
+     *
+     * @param bound is the number of indices.
+     */
+    void ensureCapacity(int bound) {
+        if (bound > stamps.length) {
+            int length = Math.max(bound, stamps.length + (stamps.length >> 1));
+            stamps = Arrays.copyOf(stamps, length);
+            queue = Arrays.copyOf(queue, length);
+            backwardQueue = Arrays.copyOf(backwardQueue, length);
+            distance = Arrays.copyOf(distance, length);
+            weight = Arrays.copyOf(weight, length);
+            predecessor = Arrays.copyOf(predecessor, length);
+            backwardWeight = Arrays.copyOf(backwardWeight, length);
+            backwardPredecessor = Arrays.copyOf(backwardPredecessor, length);
+            backwardPosition = Arrays.copyOf(backwardPosition, length);
+            vertexQueue = Arrays.copyOf(vertexQueue, length);
+        }
+    }
+}
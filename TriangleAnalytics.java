@@ -0,0 +1,438 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class counts the triangles of an indexed graph and the local clustering
+ * coefficient of its vertices: the share of pairs of friends of a user that
+ * are friends with each other. Rings of fake accounts that all befriend each
+ * other stand out with coefficients close to one.
+ *
+ * The exact count orients every edge from the vertex of lower degree to the
+ * one of higher degree, ties broken by index. For each vertex, its oriented row
+ * is marked in the per-thread TraversalScratch and the oriented rows of the
+ * vertices in it are checked against the marks. Every triangle is then found
+ * exactly once, at its lowest vertex, and no oriented row is longer than about
+ * the square root of twice the number of edges, so hubs cost little. Vertices
+ * are split into chunks that run in parallel on a fork-join pool.
+ *
+ * For graphs too large to count exactly, the estimates sample wedges, pairs of
+ * edges that share a vertex, and check how many of them are closed by a third
+ * edge.
+ *
+ * @author amandhillon
+ *
+ */
+public final class TriangleAnalytics {
+
+    /**
+     * Number of vertices or samples a chunk handles at least.
+     */
+    private static final int GRAIN = 4096;
+
+    /**
+     * This class only has static methods.
+     */
+    private TriangleAnalytics() {
+    }
+
+    /**
+     * Counts the triangles of a graph exactly on the common fork-join pool.
+     *
+     * @param <T>   is type of vertex.
+     * @param graph is the graph.
+     * @return the number of triangles.
+     */
+    public static <T> long countTriangles(IndexedGraph<T> graph) {
+        return countTriangles(graph, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Counts the triangles of a graph exactly.
+     *
+     * @param <T>   is type of vertex.
+     * @param graph is the graph.
+     * @param pool  is the pool that runs the chunks.
+     * @return the number of triangles.
+     */
+    public static <T> long countTriangles(IndexedGraph<T> graph, ForkJoinPool pool) {
+        int[][] oriented = orient(graph, pool);
+        int bound = graph.indexBound();
+        int chunks = ParallelSearch.chunks(bound, GRAIN, pool);
+        long[] partial = new long[chunks];
+        ParallelSearch.run(pool, chunks, bound, (chunk, from, to) -> {
+            int[] offsets = oriented[0];
+            int[] targets = oriented[1];
+            long sum = 0;
+            for (int v = from; v < to; v++) {
+                TraversalScratch scratch = mark(offsets, targets, v, bound);
+                try {
+                    for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                        int u = targets[e];
+                        for (int f = offsets[u]; f < offsets[u + 1]; f++) {
+                            if (scratch.isVisited(targets[f])) {
+                                sum++;
+                            }
+                        }
+                    }
+                } finally {
+                    scratch.end();
+                }
+            }
+            partial[chunk] = sum;
+        });
+        long total = 0;
+        for (long sum : partial) {
+            total += sum;
+        }
+        return total;
+    }
+
+    /**
+     * Counts the triangles every vertex of a graph is part of, exactly.
+     *
+     * @param <T>   is type of vertex.
+     * @param graph is the graph.
+     * @param pool  is the pool that runs the chunks.
+     * @return the number of triangles of each index.
+     */
+    public static <T> long[] trianglesPerVertex(IndexedGraph<T> graph, ForkJoinPool pool) {
+        int[][] oriented = orient(graph, pool);
+        int bound = graph.indexBound();
+        AtomicLongArray counts = new AtomicLongArray(bound);
+        int chunks = ParallelSearch.chunks(bound, GRAIN, pool);
+        ParallelSearch.run(pool, chunks, bound, (from, to) -> {
+            int[] offsets = oriented[0];
+            int[] targets = oriented[1];
+            for (int v = from; v < to; v++) {
+                long atV = 0;
+                TraversalScratch scratch = mark(offsets, targets, v, bound);
+                try {
+                    for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                        int u = targets[e];
+                        long atU = 0;
+                        for (int f = offsets[u]; f < offsets[u + 1]; f++) {
+                            if (scratch.isVisited(targets[f])) {
+                                atU++;
+                                counts.incrementAndGet(targets[f]);
+                            }
+                        }
+                        if (atU > 0) {
+                            atV += atU;
+                            counts.addAndGet(u, atU);
+                        }
+                    }
+                } finally {
+                    scratch.end();
+                }
+                if (atV > 0) {
+                    counts.addAndGet(v, atV);
+                }
+            }
+        });
+        long[] result = new long[bound];
+        for (int v = 0; v < bound; v++) {
+            result[v] = counts.get(v);
+        }
+        return result;
+    }
+
+    /**
+     * Determines the local clustering coefficient of every vertex of a graph
+     * exactly: the number of edges among its neighbors over the number of pairs
+     * of neighbors.
+     *
+     * @param <T>   is type of vertex.
+     * @param graph is the graph.
+     * @param pool  is the pool that runs the chunks.
+     * @return the coefficient of each index, 0 for vertices with fewer than two
+     *         neighbors.
+     */
+    public static <T> double[] localClustering(IndexedGraph<T> graph, ForkJoinPool pool) {
+        long[] triangles = trianglesPerVertex(graph, pool);
+        double[] coefficients = new double[triangles.length];
+        for (int v = 0; v < triangles.length; v++) {
+            long pairs = pairs(graph.degree(v));
+            coefficients[v] = pairs == 0 ? 0 : (double) triangles[v] / pairs;
+        }
+        return coefficients;
+    }
+
+    /**
+     * Estimates the number of triangles of a graph from wedges sampled in
+     * proportion to how many wedges each vertex is the middle of. The share of
+     * closed wedges times the number of wedges is three times the number of
+     * triangles.
+     *
+     * @param <T>     is type of vertex.
+     * @param graph   is the graph.
+     * @param samples is the number of wedges to sample, more give a closer
+     *                estimate.
+     * @param seed    seeds the sampling, so the same seed gives the same estimate.
+     * @param pool    is the pool that runs the chunks.
+     * @return the estimated number of triangles.
+     * @throws IllegalArgumentException if samples is not positive.
+     */
+    public static <T> double estimateTriangles(IndexedGraph<T> graph, int samples, long seed, ForkJoinPool pool) {
+        if (samples <= 0) {
+            throw new IllegalArgumentException("samples " + samples);
+        }
+        int bound = graph.indexBound();
+        long[] wedges = new long[bound + 1];
+        for (int v = 0; v < bound; v++) {
+            wedges[v + 1] = wedges[v] + pairs(graph.degree(v));
+        }
+        long total = wedges[bound];
+        if (total == 0) {
+            return 0;
+        }
+        int chunks = ParallelSearch.chunks(samples, GRAIN, pool);
+        long[] closed = new long[chunks];
+        ParallelSearch.run(pool, chunks, samples, (chunk, from, to) -> {
+            SplittableRandom random = new SplittableRandom(seed + chunk * 0x9E3779B97F4A7C15L);
+            long found = 0;
+            for (int s = from; s < to; s++) {
+                int v = middle(wedges, random.nextLong(total));
+                if (closedWedge(graph, v, random)) {
+                    found++;
+                }
+            }
+            closed[chunk] = found;
+        });
+        long sum = 0;
+        for (long found : closed) {
+            sum += found;
+        }
+        return (double) sum / samples * total / 3;
+    }
+
+    /**
+     * Estimates the local clustering coefficient of every vertex of a graph from
+     * a sample of the pairs of its neighbors. Vertices with no more pairs than
+     * the sample size are counted exactly.
+     *
+     * @param <T>     is type of vertex.
+     * @param graph   is the graph.
+     * @param samples is the number of pairs to sample per vertex.
+     * @param seed    seeds the sampling, so the same seed gives the same
+     *                estimates.
+     * @param pool    is the pool that runs the chunks.
+     * @return the estimated coefficient of each index, 0 for vertices with fewer
+     *         than two neighbors.
+     * @throws IllegalArgumentException if samples is not positive.
+     */
+    public static <T> double[] estimateLocalClustering(IndexedGraph<T> graph, int samples, long seed,
+            ForkJoinPool pool) {
+        if (samples <= 0) {
+            throw new IllegalArgumentException("samples " + samples);
+        }
+        int bound = graph.indexBound();
+        double[] coefficients = new double[bound];
+        int chunks = ParallelSearch.chunks(bound, GRAIN, pool);
+        ParallelSearch.run(pool, chunks, bound, (chunk, from, to) -> {
+            SplittableRandom random = new SplittableRandom(seed + chunk * 0x9E3779B97F4A7C15L);
+            for (int v = from; v < to; v++) {
+                long pairs = pairs(graph.degree(v));
+                if (pairs == 0) {
+                    continue;
+                }
+                long found = 0;
+                if (pairs <= samples) {
+                    found = closedPairs(graph, v);
+                } else {
+                    for (int s = 0; s < samples; s++) {
+                        if (closedWedge(graph, v, random)) {
+                            found++;
+                        }
+                    }
+                }
+                coefficients[v] = (double) found / Math.min(pairs, samples);
+            }
+        });
+        return coefficients;
+    }
+
+    /**
+     * Helper function that orients every edge from its lower ranked end to its
+     * higher ranked end, by degree and then by index.
+     *
+     * @param graph is the graph.
+     * @param pool  is the pool that runs the chunks.
+     * @return the offsets and the targets of the oriented rows.
+     */
+    private static int[][] orient(IndexedGraph<?> graph, ForkJoinPool pool) {
+        int bound = graph.indexBound();
+        int[] offsets = new int[bound + 1];
+        int chunks = ParallelSearch.chunks(bound, GRAIN, pool);
+        ParallelSearch.run(pool, chunks, bound, (from, to) -> {
+            for (int v = from; v < to; v++) {
+                int[] adj = graph.adjacency(v);
+                int start = graph.adjacencyStart(v);
+                int out = 0;
+                for (int e = start; e < start + graph.degree(v); e++) {
+                    if (ranksBelow(graph, v, adj[e])) {
+                        out++;
+                    }
+                }
+                offsets[v + 1] = out;
+            }
+        });
+        for (int v = 0; v < bound; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] targets = new int[offsets[bound]];
+        ParallelSearch.run(pool, chunks, bound, (from, to) -> {
+            for (int v = from; v < to; v++) {
+                int[] adj = graph.adjacency(v);
+                int start = graph.adjacencyStart(v);
+                int position = offsets[v];
+                for (int e = start; e < start + graph.degree(v); e++) {
+                    if (ranksBelow(graph, v, adj[e])) {
+                        targets[position++] = adj[e];
+                    }
+                }
+            }
+        });
+        return new int[][] { offsets, targets };
+    }
+
+    /**
+     * Helper function that marks the oriented row of a vertex in the scratch of
+     * the current thread.
+     *
+     * @param offsets are the offsets of the oriented rows.
+     * @param targets are the targets of the oriented rows.
+     * @param v       is the vertex.
+     * @param bound   is the index bound of the graph.
+     * @return the scratch, which must be given back with end.
+     */
+    private static TraversalScratch mark(int[] offsets, int[] targets, int v, int bound) {
+        TraversalScratch scratch = TraversalScratch.begin(bound);
+        for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+            scratch.visit(targets[e]);
+        }
+        return scratch;
+    }
+
+    /**
+     * Helper function that checks if a vertex ranks below another one, by degree
+     * and then by index.
+     *
+     * @param graph is the graph.
+     * @param v     is a vertex.
+     * @param u     is another vertex.
+     * @return true if v ranks below u.
+     */
+    private static boolean ranksBelow(IndexedGraph<?> graph, int v, int u) {
+        int dv = graph.degree(v);
+        int du = graph.degree(u);
+        return dv < du || (dv == du && v < u);
+    }
+
+    /**
+     * Helper function that gets the number of pairs among a number of neighbors.
+     *
+     * @param degree is the number of neighbors.
+     * @return the number of pairs.
+     */
+    private static long pairs(int degree) {
+        return (long) degree * (degree - 1) / 2;
+    }
+
+    /**
+     * Helper function that finds the vertex a wedge belongs to, given its
+     * position among all wedges.
+     *
+     * @param wedges is the number of wedges before each vertex, with one extra
+     *               entry.
+     * @param wedge  is the position of the wedge.
+     * @return the vertex in the middle of the wedge.
+     */
+    private static int middle(long[] wedges, long wedge) {
+        int low = 0;
+        int high = wedges.length - 2;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (wedges[mid] <= wedge) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Helper function that samples a pair of different neighbors of a vertex and
+     * checks if they are adjacent.
+     *
+     * @param graph  is the graph.
+     * @param v      is a vertex with at least two neighbors.
+     * @param random is the source of randomness.
+     * @return true if the pair is adjacent.
+     */
+    private static boolean closedWedge(IndexedGraph<?> graph, int v, SplittableRandom random) {
+        int degree = graph.degree(v);
+        int first = random.nextInt(degree);
+        int second = random.nextInt(degree - 1);
+        if (second >= first) {
+            second++;
+        }
+        int[] adj = graph.adjacency(v);
+        int start = graph.adjacencyStart(v);
+        return adjacent(graph, adj[start + first], adj[start + second]);
+    }
+
+    /**
+     * Helper function that counts the pairs of neighbors of a vertex that are
+     * adjacent.
+     *
+     * @param graph is the graph.
+     * @param v     is a vertex.
+     * @return the number of adjacent pairs.
+     */
+    private static long closedPairs(IndexedGraph<?> graph, int v) {
+        int[] adj = graph.adjacency(v);
+        int start = graph.adjacencyStart(v);
+        int end = start + graph.degree(v);
+        long found = 0;
+        for (int i = start; i < end; i++) {
+            for (int j = i + 1; j < end; j++) {
+                if (adjacent(graph, adj[i], adj[j])) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Helper function that checks if two vertices are adjacent by looking through
+     * the row of the one with fewer neighbors, by binary search if it is sorted.
+     *
+     * @param graph is the graph.
+     * @param a     is a vertex.
+     * @param b     is a vertex.
+     * @return true if there is an edge between a and b.
+     */
+    private static boolean adjacent(IndexedGraph<?> graph, int a, int b) {
+        if (graph.degree(a) > graph.degree(b)) {
+            int swap = a;
+            a = b;
+            b = swap;
+        }
+        int[] adj = graph.adjacency(a);
+        int start = graph.adjacencyStart(a);
+        int end = start + graph.degree(a);
+        if (graph.hasSortedAdjacency()) {
+            return Arrays.binarySearch(adj, start, end, b) >= 0;
+        }
+        for (int e = start; e < end; e++) {
+            if (adj[e] == b) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
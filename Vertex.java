@@ -1,5 +1,5 @@
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.NoSuchElementException;
 
 /**
@@ -16,6 +16,11 @@ public class Vertex<T> implements VertexInterface<T> {
      */
     private T label;
 
+    /**
+     * dense index given by the graph, -1 until the vertex is added to one.
+     */
+    private int index;
+
     /**
      * Stores if the vertex is visited or not, true if visited.
      */
@@ -32,9 +37,16 @@ public class Vertex<T> implements VertexInterface<T> {
     private double cost;
 
     /**
-     * list of edges to neighbors.
+     * edges to neighbors, keyed by the neighbor's label so that finding,
+     * adding and removing an edge take constant expected time.
+     */
+    protected LinkedHashMap<T, Edge> edgeList;
+
+    /**
+     * number of times an edge was added to or removed from the vertex, so that
+     * copies of the neighbors can tell when they are out of date.
      */
-    protected LinkedList<Edge> edgeList;
+    private int modifications;
 
     /**
      * This is a helper class that instantiates edges.
@@ -91,10 +103,11 @@ public class Vertex<T> implements VertexInterface<T> {
      */
     public Vertex(T vertexLabel) {
         label = vertexLabel;
+        this.index = -1;
         this.visited = false;
         this.cost = 0.0;
         this.previousVertex = null;
-        this.edgeList = new LinkedList<>();
+        this.edgeList = new LinkedHashMap<>();
     }
 
     /**
@@ -113,7 +126,7 @@ public class Vertex<T> implements VertexInterface<T> {
          * This method gets a neighbor Iterator.
          */
         private NeighborIterator() {
-            this.walker = edgeList.listIterator();
+            this.walker = edgeList.values().iterator();
         }
 
         /**
@@ -157,7 +170,7 @@ public class Vertex<T> implements VertexInterface<T> {
          * weight iterator constructor.
          */
         private WeightIterator() {
-            this.walker = edgeList.iterator();
+            this.walker = edgeList.values().iterator();
         }
 
         /**
@@ -216,6 +229,14 @@ public class Vertex<T> implements VertexInterface<T> {
 
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return label == null ? 0 : label.hashCode();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -228,17 +249,34 @@ public class Vertex<T> implements VertexInterface<T> {
      * {@inheritDoc}
      */
     @Override
-    public int getNumberOfNeighbors() {
-        int n = 0;
-        Iterator<VertexInterface<T>> adjacent = getNeighborIterator();
+    public int getIndex() {
+        return this.index;
+    }
 
-        while (adjacent.hasNext()) {
-            VertexInterface<T> nextAdjacent = adjacent.next();
-            if (!nextAdjacent.isVisited()) {
-                n++;
-            }
-        }
-        return n;
+    /**
+     * Sets the dense index of this vertex, called by the graph that holds it.
+     * 
+     * @param vertexIndex is the index of this vertex.
+     */
+    void setIndex(int vertexIndex) {
+        this.index = vertexIndex;
+    }
+
+    /**
+     * Gets the number of times an edge was added to or removed from the vertex.
+     * 
+     * @return the number of edge changes.
+     */
+    int getModifications() {
+        return this.modifications;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNumberOfNeighbors() {
+        return edgeList.size();
     }
 
     /**
@@ -271,23 +309,10 @@ public class Vertex<T> implements VertexInterface<T> {
     @Override
     public boolean connect(VertexInterface<T> endVertex, double edgeWeight) {
         boolean connected = false;
-        boolean seenBefore = false;
-        if (!this.equals(endVertex)) {
-            Iterator<VertexInterface<T>> adj = this.getNeighborIterator();
-
-            while (adj.hasNext() && !seenBefore) {
-                VertexInterface<T> curr = adj.next();
-
-                if (endVertex.equals(curr)) {
-                    seenBefore = true;
-                }
-
-            }
-
-            if (!seenBefore) {
-                edgeList.add(new Edge(edgeWeight, endVertex));
-                connected = true;
-            }
+        if (!this.equals(endVertex) && !edgeList.containsKey(endVertex.getLabel())) {
+            edgeList.put(endVertex.getLabel(), new Edge(edgeWeight, endVertex));
+            modifications++;
+            connected = true;
         }
 
         return connected;
@@ -306,10 +331,11 @@ public class Vertex<T> implements VertexInterface<T> {
      */
     @Override
     public boolean disconnect(VertexInterface<T> endVertex, double edgeWeight) {
-        for (Edge edge : this.edgeList) {
-            if (endVertex.equals(edge.getEdgeVertex()) && edgeWeight == edge.getWeight()) {
-                return edgeList.remove(edge);
-            }
+        Edge edge = edgeList.get(endVertex.getLabel());
+        if (edge != null && edgeWeight == edge.getWeight()) {
+            edgeList.remove(endVertex.getLabel());
+            modifications++;
+            return true;
         }
         return false;
     }
@@ -319,7 +345,11 @@ public class Vertex<T> implements VertexInterface<T> {
      */
     @Override
     public boolean disconnect(VertexInterface<T> endVertex) {
-        return disconnect(endVertex, 0.0);
+        if (edgeList.remove(endVertex.getLabel()) != null) {
+            modifications++;
+            return true;
+        }
+        return false;
     }
 
     /**
@@ -346,6 +376,23 @@ public class Vertex<T> implements VertexInterface<T> {
         return !edgeList.isEmpty();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNeighbor(VertexInterface<T> endVertex) {
+        return edgeList.containsKey(endVertex.getLabel());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getEdgeWeight(VertexInterface<T> endVertex) {
+        Edge edge = edgeList.get(endVertex.getLabel());
+        return edge == null ? Double.NaN : edge.getWeight();
+    }
+
     /**
      * {@inheritDoc}
      */
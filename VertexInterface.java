@@ -15,6 +15,14 @@ public interface VertexInterface<T> {
      */
     T getLabel();
 
+    /**
+     * Gets the dense index the graph gave this vertex, which searches use to keep
+     * their own per-query state.
+     * 
+     * @return the index of this vertex, or -1 if it has none.
+     */
+    int getIndex();
+
     /**
      * Gets the number of neighbors of this vertex.
      * 
@@ -71,8 +79,8 @@ public interface VertexInterface<T> {
     boolean disconnect(VertexInterface<T> endVertex, double edgeWeight);
 
     /**
-     * Disconnects this vertex from a given vertex with an unweighted edge. The Edge
-     * should exist in order to be disconnected.
+     * Disconnects this vertex from a given vertex, whatever the weight of the edge
+     * between them. The Edge should exist in order to be disconnected.
      * 
      * @param endVertex is the end vertex.
      * @return true if the disconnection is successful.
@@ -102,6 +110,22 @@ public interface VertexInterface<T> {
      */
     boolean hasNeighbor();
 
+    /**
+     * Sees whether this vertex has an edge to the given vertex.
+     * 
+     * @param endVertex is the other vertex of the edge.
+     * @return true if the edge exists.
+     */
+    boolean hasNeighbor(VertexInterface<T> endVertex);
+
+    /**
+     * Gets the weight of the edge between this vertex and the given vertex.
+     * 
+     * @param endVertex is the other vertex of the edge.
+     * @return the weight of the edge, or NaN if there is no such edge.
+     */
+    double getEdgeWeight(VertexInterface<T> endVertex);
+
     /**
      * Gets an unvisited neighbor, if any, of this vertex.
      * 
@@ -0,0 +1,296 @@
+import java.util.Arrays;
+import java.util.Stack;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * This class finds the cheapest paths of an indexed graph by edge weight, where
+ * the weight of an edge is its length: a friendship weighted by how weak the
+ * tie is makes the cheapest path the closest chain of introductions. The
+ * searches settle vertices from an IndexedHeap and keep their distances,
+ * predecessors and heap positions in the TraversalScratch of the calling
+ * thread, so the vertices of the graph are never written to.
+ *
+ * Edge weights must not be negative.
+ *
+ * @author amandhillon
+ *
+ */
+public final class WeightedSearch {
+
+    /**
+     * Cost of a path that does not exist.
+     */
+    public static final double UNREACHABLE = Double.POSITIVE_INFINITY;
+
+    /**
+     * This class only has static methods.
+     */
+    private WeightedSearch() {
+    }
+
+    /**
+     * Determines the total weight of a cheapest path between two vertices with
+     * Dijkstra's algorithm, or A* if an estimate is given, and pushes the path so
+     * that the origin is on top.
+     *
+     * @param <T>         is type of vertex.
+     * @param graph       is the graph to search.
+     * @param origin      is the beginning vertex.
+     * @param destination is the ending vertex.
+     * @param estimate    gives a lower bound of the cost from a vertex to the
+     *                    destination that never drops by more than the weight of
+     *                    an edge along it, or is null for none.
+     * @param path        receives the vertices of the path, may be null.
+     * @return the cost of the path, or UNREACHABLE if there is none.
+     * @throws IllegalArgumentException if the search meets a negative weight.
+     */
+    public static <T> double shortestPath(IndexedGraph<T> graph, T origin, T destination,
+            ToDoubleFunction<T> estimate, Stack<T> path) {
+        int start = graph.indexOf(origin);
+        int target = graph.indexOf(destination);
+        if (start < 0 || target < 0) {
+            return UNREACHABLE;
+        }
+        if (start == target) {
+            if (path != null) {
+                path.push(origin);
+            }
+            return 0;
+        }
+
+        TraversalScratch scratch = TraversalScratch.begin(graph.indexBound());
+        try {
+            double[] cost = scratch.weight;
+            double[] priority = scratch.backwardWeight;
+            int[] predecessor = scratch.predecessor;
+            IndexedHeap heap = new IndexedHeap(scratch.queue, scratch.distance, priority);
+
+            scratch.visit(start);
+            cost[start] = 0;
+            predecessor[start] = -1;
+            priority[start] = estimate == null ? 0 : estimate.applyAsDouble(origin);
+            heap.push(start);
+
+            while (!heap.isEmpty()) {
+                int v = heap.poll();
+                if (v == target) {
+                    if (path != null) {
+                        pushPath(graph, predecessor, v, null, -1, path);
+                    }
+                    return cost[v];
+                }
+                int[] adj = graph.adjacency(v);
+                double[] weights = graph.adjacencyWeights(v);
+                int from = graph.adjacencyStart(v);
+                int to = from + graph.degree(v);
+                for (int i = from; i < to; i++) {
+                    int n = adj[i];
+                    double next = cost[v] + checked(weights[i]);
+                    if (scratch.visit(n)) {
+                        cost[n] = next;
+                        predecessor[n] = v;
+                        priority[n] = next + (estimate == null ? 0 : estimate.applyAsDouble(graph.labelAt(n)));
+                        heap.push(n);
+                    } else if (heap.contains(n) && next < cost[n]) {
+                        priority[n] += next - cost[n];
+                        cost[n] = next;
+                        predecessor[n] = v;
+                        heap.decreased(n);
+                    }
+                }
+            }
+            return UNREACHABLE;
+        } finally {
+            scratch.end();
+        }
+    }
+
+    /**
+     * Determines the total weight of a cheapest path between two vertices with a
+     * Dijkstra search that grows from both ends, and pushes the path so that the
+     * origin is on top. Each step settles a vertex on the side whose next vertex
+     * is closer, and the search stops once the two closest unsettled vertices are
+     * together at least as far as the best path through an edge between the
+     * sides.
+     *
+     * @param <T>         is type of vertex.
+     * @param graph       is the graph to search.
+     * @param origin      is the beginning vertex.
+     * @param destination is the ending vertex.
+     * @param path        receives the vertices of the path, may be null.
+     * @return the cost of the path, or UNREACHABLE if there is none.
+     * @throws IllegalArgumentException if the search meets a negative weight.
+     */
+    public static <T> double bidirectionalShortestPath(IndexedGraph<T> graph, T origin, T destination,
+            Stack<T> path) {
+        int start = graph.indexOf(origin);
+        int target = graph.indexOf(destination);
+        if (start < 0 || target < 0) {
+            return UNREACHABLE;
+        }
+        if (start == target) {
+            if (path != null) {
+                path.push(origin);
+            }
+            return 0;
+        }
+
+        TraversalScratch scratch = TraversalScratch.begin(graph.indexBound());
+        try {
+            double[] forwardCost = scratch.weight;
+            double[] backwardCost = scratch.backwardWeight;
+            int[] forwardPredecessor = scratch.predecessor;
+            int[] backwardPredecessor = scratch.backwardPredecessor;
+            int[] forwardPosition = scratch.distance;
+            int[] backwardPosition = scratch.backwardPosition;
+            IndexedHeap forward = new IndexedHeap(scratch.queue, forwardPosition, forwardCost);
+            IndexedHeap backward = new IndexedHeap(scratch.backwardQueue, backwardPosition, backwardCost);
+
+            reach(scratch, start, forwardCost, backwardCost, forwardPosition, backwardPosition);
+            forwardCost[start] = 0;
+            forwardPredecessor[start] = -1;
+            forward.push(start);
+            reach(scratch, target, forwardCost, backwardCost, forwardPosition, backwardPosition);
+            backwardCost[target] = 0;
+            backwardPredecessor[target] = -1;
+            backward.push(target);
+
+            double best = UNREACHABLE;
+            int forwardEnd = -1;
+            int backwardEnd = -1;
+            while (!forward.isEmpty() && !backward.isEmpty()
+                    && forward.minKey() + backward.minKey() < best) {
+                boolean growForward = forward.minKey() <= backward.minKey();
+                IndexedHeap heap = growForward ? forward : backward;
+                double[] cost = growForward ? forwardCost : backwardCost;
+                double[] otherCost = growForward ? backwardCost : forwardCost;
+                int[] predecessor = growForward ? forwardPredecessor : backwardPredecessor;
+                int[] position = growForward ? forwardPosition : backwardPosition;
+
+                int v = heap.poll();
+                int[] adj = graph.adjacency(v);
+                double[] weights = graph.adjacencyWeights(v);
+                int from = graph.adjacencyStart(v);
+                int to = from + graph.degree(v);
+                for (int i = from; i < to; i++) {
+                    int n = adj[i];
+                    double next = cost[v] + checked(weights[i]);
+                    reach(scratch, n, forwardCost, backwardCost, forwardPosition, backwardPosition);
+                    if (position[n] == IndexedHeap.UNSEEN) {
+                        cost[n] = next;
+                        predecessor[n] = v;
+                        heap.push(n);
+                    } else if (heap.contains(n) && next < cost[n]) {
+                        cost[n] = next;
+                        predecessor[n] = v;
+                        heap.decreased(n);
+                    }
+                    if (next + otherCost[n] < best) {
+                        best = next + otherCost[n];
+                        forwardEnd = growForward ? v : n;
+                        backwardEnd = growForward ? n : v;
+                    }
+                }
+            }
+
+            if (best < UNREACHABLE && path != null) {
+                pushPath(graph, forwardPredecessor, forwardEnd, backwardPredecessor, backwardEnd, path);
+            }
+            return best;
+        } finally {
+            scratch.end();
+        }
+    }
+
+    /**
+     * Helper function that sets up a vertex the first time either side of a
+     * search reaches it.
+     *
+     * @param scratch          is the scratch of the search.
+     * @param v                is the vertex.
+     * @param forwardCost      is the cost from the origin of each vertex.
+     * @param backwardCost     is the cost to the destination of each vertex.
+     * @param forwardPosition  is the forward heap position of each vertex.
+     * @param backwardPosition is the backward heap position of each vertex.
+     */
+    private static void reach(TraversalScratch scratch, int v, double[] forwardCost, double[] backwardCost,
+            int[] forwardPosition, int[] backwardPosition) {
+        if (scratch.visit(v)) {
+            forwardCost[v] = UNREACHABLE;
+            backwardCost[v] = UNREACHABLE;
+            forwardPosition[v] = IndexedHeap.UNSEEN;
+            backwardPosition[v] = IndexedHeap.UNSEEN;
+        }
+    }
+
+    /**
+     * Helper function that checks that an edge weight can be used as a length.
+     *
+     * @param weight is the weight.
+     * @return the weight.
+     * @throws IllegalArgumentException if the weight is negative or not a number.
+     */
+    private static double checked(double weight) {
+        if (!(weight >= 0)) {
+            throw new IllegalArgumentException("negative edge weight " + weight);
+        }
+        return weight;
+    }
+
+    /**
+     * Helper function that pushes a path made of a chain back to the origin and
+     * a chain on to the destination, so that the origin ends up on top. A loop
+     * where the two chains cross, which edges of weight zero can cause, is cut
+     * out.
+     *
+     * @param <T>                 is type of vertex.
+     * @param graph               is the graph searched.
+     * @param forwardPredecessor  leads each vertex back towards the origin.
+     * @param forwardEnd          is the last vertex of the chain from the origin.
+     * @param backwardPredecessor leads each vertex on towards the destination, or
+     *                            is null if the first chain reaches it.
+     * @param backwardEnd         is the first vertex of the chain to the
+     *                            destination, or -1.
+     * @param path                receives the vertices of the path.
+     */
+    private static <T> void pushPath(IndexedGraph<T> graph, int[] forwardPredecessor, int forwardEnd,
+            int[] backwardPredecessor, int backwardEnd, Stack<T> path) {
+        int[] vertices = new int[16];
+        int count = 0;
+        for (int v = forwardEnd; v >= 0; v = forwardPredecessor[v]) {
+            if (count == vertices.length) {
+                vertices = Arrays.copyOf(vertices, count * 2);
+            }
+            vertices[count++] = v;
+        }
+        for (int i = 0, j = count - 1; i < j; i++, j--) {
+            int swap = vertices[i];
+            vertices[i] = vertices[j];
+            vertices[j] = swap;
+        }
+        for (int v = backwardEnd; v >= 0; v = backwardPredecessor[v]) {
+            if (count == vertices.length) {
+                vertices = Arrays.copyOf(vertices, count * 2);
+            }
+            vertices[count++] = v;
+        }
+
+        LongIntHashMap seen = new LongIntHashMap(count, -1);
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int earlier = seen.get(vertices[i]);
+            if (earlier >= 0) {
+                for (int k = earlier + 1; k < kept; k++) {
+                    seen.remove(vertices[k]);
+                }
+                kept = earlier + 1;
+            } else {
+                seen.put(vertices[i], kept);
+                vertices[kept++] = vertices[i];
+            }
+        }
+        for (int i = kept - 1; i >= 0; i--) {
+            path.push(graph.labelAt(vertices[i]));
+        }
+    }
+}
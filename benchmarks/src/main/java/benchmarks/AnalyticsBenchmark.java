@@ -0,0 +1,99 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import masonconnect.Graph;
+import masonconnect.MasonConnect;
+import masonconnect.Profile;
+
+/**
+ * This class measures the whole-network analytics of MasonConnect: exact and
+ * sampled triangle counts and the local clustering coefficients of all users,
+ * on a Barabási–Albert network for both backings.
+ *
+ * @author amandhillon
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyticsBenchmark {
+
+    /**
+     * Number of wedges sampled by the estimate.
+     */
+    private static final int SAMPLES = 100_000;
+
+    /**
+     * Number of users in the network.
+     */
+    @Param({ "10000", "100000" })
+    public int users;
+
+    /**
+     * Graph that backs the network, "compact" or "graph".
+     */
+    @Param({ "compact", "graph" })
+    public String backing;
+
+    /**
+     * The network under measurement.
+     */
+    private MasonConnect network;
+
+    /**
+     * Builds the network.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        network = "compact".equals(backing) ? new MasonConnect() : new MasonConnect(new Graph<Profile>());
+        SocialGraphGenerator.populate(network, users, SocialGraphGenerator.generate("barabasi-albert", users,
+                MasonConnectBenchmark.AVERAGE_DEGREE, MasonConnectBenchmark.SEED));
+    }
+
+    /**
+     * Measures counting the triangles exactly.
+     *
+     * @return the number of triangles.
+     */
+    @Benchmark
+    public long triangleCount() {
+        return network.triangleCount();
+    }
+
+    /**
+     * Measures estimating the number of triangles from sampled wedges.
+     *
+     * @return the estimate.
+     */
+    @Benchmark
+    public double estimateTriangleCount() {
+        return network.estimateTriangleCount(SAMPLES);
+    }
+
+    /**
+     * Measures the local clustering coefficients of all users.
+     *
+     * @return the number of users.
+     */
+    @Benchmark
+    public int clusteringCoefficients() {
+        return network.clusteringCoefficients().size();
+    }
+}
@@ -0,0 +1,146 @@
+package benchmarks;
+
+import java.util.Iterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import masonconnect.ConcurrentMasonConnect;
+import masonconnect.MasonConnect;
+import masonconnect.Profile;
+import masonconnect.VertexInterface;
+
+/**
+ * This class hammers one ConcurrentMasonConnect with friendship updates from
+ * several threads and measures their throughput. After every iteration, while
+ * no thread runs, it checks that every friendship is still stored on both
+ * sides, that the friend lists of the profiles agree with the graph, and that
+ * the edge count matches, and fails the run if not. Use "-t" to change the
+ * number of threads and "-foe true" to stop at the first failed check.
+ *
+ * @author amandhillon
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class ConcurrencyBenchmark {
+
+    /**
+     * Number of users in the network.
+     */
+    @Param({ "2000" })
+    public int users;
+
+    /**
+     * The network under measurement, shared by all threads.
+     */
+    private ConcurrentMasonConnect network;
+
+    /**
+     * The users of the network.
+     */
+    private Profile[] profiles;
+
+    /**
+     * Builds a network of users without friendships.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        network = new ConcurrentMasonConnect();
+        profiles = new Profile[users];
+        for (int i = 0; i < users; i++) {
+            profiles[i] = new Profile("User", String.valueOf(i));
+            network.addUser(profiles[i]);
+        }
+    }
+
+    /**
+     * Measures a mix of updates on random users: 60% create a friendship, 35%
+     * remove one, 4% check for one and 1% remove a user and add them back.
+     *
+     * @return whether the update changed the network.
+     */
+    @Benchmark
+    public boolean mixedUpdates() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Profile a = profiles[random.nextInt(users)];
+        Profile b = profiles[random.nextInt(users)];
+        int choice = random.nextInt(100);
+        if (choice < 60) {
+            return network.createFriendship(a, b);
+        } else if (choice < 95) {
+            return network.removeFriendship(a, b);
+        } else if (choice < 99) {
+            return network.hasFriendship(a, b);
+        }
+        network.removeUser(a);
+        return network.addUser(a);
+    }
+
+    /**
+     * Checks the network after an iteration.
+     *
+     * @throws IllegalStateException if a friendship is broken.
+     */
+    @TearDown(Level.Iteration)
+    public void verify() {
+        String problem = check(network);
+        if (problem != null) {
+            throw new IllegalStateException(problem);
+        }
+    }
+
+    /**
+     * Helper function that checks that every friendship is stored on both
+     * sides.
+     *
+     * @param network is the network to check.
+     * @return a description of the first problem found, or null.
+     */
+    private static String check(MasonConnect network) {
+        long halfEdges = 0;
+        for (VertexInterface<Profile> vertex : network.getVertices()) {
+            Profile user = vertex.getLabel();
+            Iterator<VertexInterface<Profile>> adj = vertex.getNeighborIterator();
+            int degree = 0;
+            while (adj.hasNext()) {
+                Profile friend = adj.next().getLabel();
+                degree++;
+                if (!network.hasFriendship(friend, user)) {
+                    return "edge " + user.getId() + "-" + friend.getId() + " is one-sided";
+                }
+                if (!user.getFriendProfiles().contains(friend)) {
+                    return "profile " + user.getId() + " misses friend " + friend.getId();
+                }
+            }
+            if (degree != user.getFriendProfiles().size()) {
+                return "profile " + user.getId() + " has " + user.getFriendProfiles().size()
+                        + " friends but " + degree + " edges";
+            }
+            halfEdges += degree;
+        }
+        if (halfEdges != network.getNumberOfEdges()) {
+            return "edge count " + network.getNumberOfEdges() + " but " + halfEdges + " edge ends";
+        }
+        return null;
+    }
+}
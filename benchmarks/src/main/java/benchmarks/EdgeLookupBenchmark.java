@@ -0,0 +1,163 @@
+package benchmarks;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import masonconnect.CompactGraph;
+import masonconnect.Graph;
+import masonconnect.GraphInterface;
+import masonconnect.VertexInterface;
+
+/**
+ * This class measures edge lookups and updates on a celebrity vertex with a
+ * large number of friends, in a Graph and in a CompactGraph. The linear scan
+ * repeats the neighbor walk that hasEdge and addEdge used to do, as the
+ * baseline for the edge index.
+ *
+ * @author amandhillon
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EdgeLookupBenchmark {
+
+    /**
+     * Number of friends of the celebrity.
+     */
+    @Param({ "50000" })
+    public int degree;
+
+    /**
+     * Graph that holds the celebrity, "compact" or "graph".
+     */
+    @Param({ "compact", "graph" })
+    public String backing;
+
+    /**
+     * The graph under measurement.
+     */
+    private GraphInterface<Integer> graph;
+
+    /**
+     * Label of the celebrity.
+     */
+    private Integer celebrity;
+
+    /**
+     * The vertex of the celebrity, for the linear scan.
+     */
+    private VertexInterface<Integer> celebrityVertex;
+
+    /**
+     * Randomly drawn friends of the celebrity.
+     */
+    private Integer[] friends;
+
+    /**
+     * Number of the next friend.
+     */
+    private int input;
+
+    /**
+     * Builds the celebrity star and draws the friends.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        graph = "compact".equals(backing) ? new CompactGraph<Integer>(degree + 1) : new Graph<Integer>();
+        Integer[] labels = new Integer[degree + 1];
+        for (int i = 0; i <= degree; i++) {
+            labels[i] = i;
+            graph.addVertex(labels[i]);
+        }
+        celebrity = labels[0];
+        for (int i = 1; i <= degree; i++) {
+            graph.addEdge(celebrity, labels[i]);
+        }
+        for (VertexInterface<Integer> v : graph.getVertices()) {
+            if (v.getLabel().equals(celebrity)) {
+                celebrityVertex = v;
+            }
+        }
+        Random random = new Random(MasonConnectBenchmark.SEED);
+        friends = new Integer[MasonConnectBenchmark.INPUTS];
+        for (int i = 0; i < friends.length; i++) {
+            friends[i] = labels[1 + random.nextInt(degree)];
+        }
+    }
+
+    /**
+     * Measures looking for a friend by walking the neighbor iterator.
+     *
+     * @return whether the friend was found.
+     */
+    @Benchmark
+    public boolean linearScan() {
+        Integer friend = friends[next()];
+        Iterator<VertexInterface<Integer>> adj = celebrityVertex.getNeighborIterator();
+        while (adj.hasNext()) {
+            if (adj.next().getLabel().equals(friend)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Measures checking for an edge.
+     *
+     * @return whether the edge exists.
+     */
+    @Benchmark
+    public boolean hasEdge() {
+        return graph.hasEdge(celebrity, friends[next()]);
+    }
+
+    /**
+     * Measures adding an edge that already exists.
+     *
+     * @return whether the edge was added.
+     */
+    @Benchmark
+    public boolean duplicateAddEdge() {
+        return graph.addEdge(celebrity, friends[next()]);
+    }
+
+    /**
+     * Measures removing an edge and adding it again.
+     *
+     * @return whether the edge was added back.
+     */
+    @Benchmark
+    public boolean removeAndAddEdge() {
+        Integer friend = friends[next()];
+        graph.removeEdge(celebrity, friend);
+        return graph.addEdge(celebrity, friend);
+    }
+
+    /**
+     * Helper function that gets the number of the next friend.
+     *
+     * @return the friend number.
+     */
+    private int next() {
+        return input++ & (MasonConnectBenchmark.INPUTS - 1);
+    }
+}
@@ -0,0 +1,153 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import masonconnect.CompactGraph;
+import masonconnect.Graph;
+import masonconnect.GraphInterface;
+
+/**
+ * This class measures building the same random network in a Graph and in a
+ * CompactGraph, and reports the heap the built graph retains as the secondary
+ * result "retainedMB". JMH adds such a result up over the measured iterations,
+ * so there is one measured build after the warmup; the footprint is the same
+ * every time anyway. Give the fork enough heap for the largest size, for
+ * example with "-jvmArgs -Xmx4g".
+ *
+ * @author amandhillon
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 1)
+@Fork(1)
+public class FootprintBenchmark {
+
+    /**
+     * Number of users in the network.
+     */
+    @Param({ "100000", "1000000" })
+    public int users;
+
+    /**
+     * Graph that stores the network, "compact" or "graph".
+     */
+    @Param({ "compact", "graph" })
+    public String backing;
+
+    /**
+     * Vertex labels, allocated outside the measurement.
+     */
+    private Integer[] labels;
+
+    /**
+     * This class holds the heap retained by the graph built in an invocation,
+     * which JMH reports next to the time.
+     *
+     * @author amandhillon
+     *
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+
+        /**
+         * Megabytes retained by the graph built in the last invocation.
+         */
+        public double retainedMB;
+
+        /**
+         * The graph built by the last invocation.
+         */
+        private GraphInterface<Integer> graph;
+
+        /**
+         * Used heap before the last invocation.
+         */
+        private long before;
+
+        /**
+         * Drops the last graph and notes the used heap.
+         */
+        @Setup(Level.Invocation)
+        public void settle() {
+            graph = null;
+            before = usedHeap();
+        }
+
+        /**
+         * Measures the heap the graph retains.
+         */
+        @TearDown(Level.Invocation)
+        public void measure() {
+            retainedMB = (usedHeap() - before) / 1e6;
+        }
+    }
+
+    /**
+     * Allocates the labels.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        labels = new Integer[users];
+        for (int i = 0; i < users; i++) {
+            labels[i] = i;
+        }
+    }
+
+    /**
+     * Measures filling a graph with the random network.
+     *
+     * @param footprint keeps the graph until its heap is measured.
+     * @return the graph.
+     */
+    @Benchmark
+    public GraphInterface<Integer> build(Footprint footprint) {
+        GraphInterface<Integer> graph = "compact".equals(backing) ? new CompactGraph<Integer>(users)
+                : new Graph<Integer>();
+        for (Integer label : labels) {
+            graph.addVertex(label);
+        }
+        Random random = new Random(MasonConnectBenchmark.SEED);
+        long edges = (long) users * MasonConnectBenchmark.AVERAGE_DEGREE / 2;
+        for (long i = 0; i < edges; i++) {
+            graph.addEdge(labels[random.nextInt(users)], labels[random.nextInt(users)]);
+        }
+        footprint.graph = graph;
+        return graph;
+    }
+
+    /**
+     * Helper function that measures the used heap after letting the garbage
+     * collector settle.
+     *
+     * @return number of bytes in use.
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,213 @@
+package benchmarks;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.Stack;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import masonconnect.FriendRecommender;
+import masonconnect.Graph;
+import masonconnect.MasonConnect;
+import masonconnect.Profile;
+
+/**
+ * This class measures the public operations of MasonConnect on generated
+ * social networks of several shapes and sizes, for the default CompactGraph
+ * backing and for the original Graph. Each operation runs on a random pair of
+ * users drawn from a fixed set, so runs compare. Add "-prof gc" to the JMH
+ * options for the bytes allocated per operation.
+ *
+ * @author amandhillon
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MasonConnectBenchmark {
+
+    /**
+     * Average number of friends per user in the generated networks.
+     */
+    static final int AVERAGE_DEGREE = 10;
+
+    /**
+     * Seed of the generated networks. The inputs use its complement, so that
+     * they are not the generated edges.
+     */
+    static final long SEED = 42;
+
+    /**
+     * Number of random inputs drawn for the operations, a power of two.
+     */
+    static final int INPUTS = 1 << 12;
+
+    /**
+     * Number of users in the network.
+     */
+    @Param({ "10000", "100000" })
+    public int users;
+
+    /**
+     * Shape of the network, as named by SocialGraphGenerator.generate.
+     */
+    @Param({ "erdos-renyi", "barabasi-albert", "small-world" })
+    public String shape;
+
+    /**
+     * Graph that backs the network, "compact" or "graph".
+     */
+    @Param({ "compact", "graph" })
+    public String backing;
+
+    /**
+     * The network under measurement.
+     */
+    private MasonConnect network;
+
+    /**
+     * First users of the inputs.
+     */
+    private Profile[] from;
+
+    /**
+     * Second users of the inputs.
+     */
+    private Profile[] to;
+
+    /**
+     * Number of the next input.
+     */
+    private int input;
+
+    /**
+     * Builds the network and draws the inputs.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        network = "compact".equals(backing) ? new MasonConnect() : new MasonConnect(new Graph<Profile>());
+        Profile[] profiles = SocialGraphGenerator.populate(network, users,
+                SocialGraphGenerator.generate(shape, users, AVERAGE_DEGREE, SEED));
+        Random random = new Random(~SEED);
+        from = new Profile[INPUTS];
+        to = new Profile[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            from[i] = profiles[random.nextInt(users)];
+            to[i] = profiles[random.nextInt(users)];
+        }
+    }
+
+    /**
+     * Measures checking for a friendship.
+     *
+     * @return whether the users are friends.
+     */
+    @Benchmark
+    public boolean hasFriendship() {
+        int i = next();
+        return network.hasFriendship(from[i], to[i]);
+    }
+
+    /**
+     * Measures creating a friendship and removing it again.
+     *
+     * @return whether the friendship was new.
+     */
+    @Benchmark
+    public boolean createAndRemoveFriendship() {
+        int i = next();
+        Profile a = from[i];
+        Profile b = to[(i + 1) & (INPUTS - 1)];
+        if (network.createFriendship(a, b)) {
+            return network.removeFriendship(a, b);
+        }
+        return false;
+    }
+
+    /**
+     * Measures the friendship distance between two users.
+     *
+     * @return the distance.
+     */
+    @Benchmark
+    public int friendshipDistance() {
+        int i = next();
+        return network.friendshipDistance(from[i], to[i]);
+    }
+
+    /**
+     * Measures finding a shortest chain of friendships.
+     *
+     * @return the length of the chain.
+     */
+    @Benchmark
+    public int friendshipPath() {
+        int i = next();
+        return network.friendshipPath(from[i], to[i]).length();
+    }
+
+    /**
+     * Measures the shortest path of the GraphInterface.
+     *
+     * @return the length of the path.
+     */
+    @Benchmark
+    public int getShortestPath() {
+        int i = next();
+        return network.getShortestPath(from[i], to[i], new Stack<Profile>());
+    }
+
+    /**
+     * Measures the ten best friend suggestions for a user.
+     *
+     * @return the number of suggestions.
+     */
+    @Benchmark
+    public int friendSuggestion() {
+        return network.friendSuggestion(from[next()], 10, FriendRecommender.MUTUAL_FRIENDS).size();
+    }
+
+    /**
+     * Measures a full breadth-first traversal from a user.
+     *
+     * @return the number of users reached.
+     */
+    @Benchmark
+    public int breadthFirst() {
+        return network.getBreadthFirstTraversal(from[next()]).size();
+    }
+
+    /**
+     * Measures finding every user reachable from a user.
+     *
+     * @return the number of users reached.
+     */
+    @Benchmark
+    public int reachableUsers() {
+        return network.reachableUsers(Collections.singletonList(from[next()])).size();
+    }
+
+    /**
+     * Helper function that gets the number of the next input.
+     *
+     * @return the input number.
+     */
+    private int next() {
+        return input++ & (INPUTS - 1);
+    }
+}
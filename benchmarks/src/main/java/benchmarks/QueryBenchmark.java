@@ -0,0 +1,181 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import masonconnect.MasonConnect;
+import masonconnect.Profile;
+
+/**
+ * This class measures the per-user queries of MasonConnect on a Barabási–Albert
+ * network with each of the ways to speed them up: none, the distance cache, the
+ * friend index, or a frozen snapshot. The inputs are drawn from a fixed set, so
+ * the cache sees the repeated pairs a profile page would.
+ *
+ * @author amandhillon
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+
+    /**
+     * Number of profiles in a batch of mutual friend counts.
+     */
+    private static final int BATCH = 50;
+
+    /**
+     * Number of users in the network.
+     */
+    @Param({ "100000" })
+    public int users;
+
+    /**
+     * How the queries are sped up: "live", "cached", "indexed" or "frozen".
+     */
+    @Param({ "live", "cached", "indexed", "frozen" })
+    public String mode;
+
+    /**
+     * The network under measurement.
+     */
+    private MasonConnect network;
+
+    /**
+     * First users of the inputs.
+     */
+    private Profile[] from;
+
+    /**
+     * Second users of the inputs.
+     */
+    private Profile[] to;
+
+    /**
+     * Profiles shown to a viewer, for the batched counts.
+     */
+    private List<Profile> batch;
+
+    /**
+     * Number of the next input.
+     */
+    private int input;
+
+    /**
+     * Builds the network, turns on the speedup and draws the inputs.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        network = new MasonConnect();
+        Profile[] profiles = SocialGraphGenerator.populate(network, users, SocialGraphGenerator
+                .generate("barabasi-albert", users, MasonConnectBenchmark.AVERAGE_DEGREE, MasonConnectBenchmark.SEED));
+        switch (mode) {
+        case "live":
+            break;
+        case "cached":
+            network.enableDistanceCache(4 * MasonConnectBenchmark.INPUTS);
+            break;
+        case "indexed":
+            network.enableFriendIndex();
+            break;
+        case "frozen":
+            network.freeze();
+            break;
+        default:
+            throw new IllegalArgumentException("mode " + mode);
+        }
+        Random random = new Random(~MasonConnectBenchmark.SEED);
+        from = new Profile[MasonConnectBenchmark.INPUTS];
+        to = new Profile[MasonConnectBenchmark.INPUTS];
+        for (int i = 0; i < MasonConnectBenchmark.INPUTS; i++) {
+            from[i] = profiles[random.nextInt(users)];
+            to[i] = profiles[random.nextInt(users)];
+        }
+        batch = new ArrayList<Profile>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            batch.add(profiles[random.nextInt(users)]);
+        }
+    }
+
+    /**
+     * Measures telling 1st, 2nd and 3rd degree connections apart.
+     *
+     * @return the distance, or -1 beyond three.
+     */
+    @Benchmark
+    public int friendshipDistanceUpToThree() {
+        int i = next();
+        return network.friendshipDistance(from[i], to[i], 3);
+    }
+
+    /**
+     * Measures the check behind 2nd-degree connection badges.
+     *
+     * @return whether the users are within two friendships.
+     */
+    @Benchmark
+    public boolean withinTwoHops() {
+        int i = next();
+        return network.withinTwoHops(from[i], to[i]);
+    }
+
+    /**
+     * Measures counting the mutual friends of two users.
+     *
+     * @return the count.
+     */
+    @Benchmark
+    public int mutualFriendCount() {
+        int i = next();
+        return network.mutualFriendCount(from[i], to[i]);
+    }
+
+    /**
+     * Measures counting the mutual friends of one viewer with a page of
+     * profiles.
+     *
+     * @return the count of the first profile.
+     */
+    @Benchmark
+    public int mutualFriendCounts() {
+        return network.mutualFriendCounts(from[next()], batch)[0];
+    }
+
+    /**
+     * Measures finding the users within two friendships of a user.
+     *
+     * @return the number of users found.
+     */
+    @Benchmark
+    public int twoHopNeighborhood() {
+        return network.twoHopNeighborhood(from[next()]).size();
+    }
+
+    /**
+     * Helper function that gets the number of the next input.
+     *
+     * @return the input number.
+     */
+    private int next() {
+        return input++ & (MasonConnectBenchmark.INPUTS - 1);
+    }
+}
@@ -0,0 +1,104 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import masonconnect.MasonConnect;
+import masonconnect.MutationLog;
+
+/**
+ * This class measures replaying a mutation log into an empty network, the part
+ * of recovery that grows with the time since the last checkpoint. The log adds
+ * the users of an Erdős–Rényi network and then creates its friendships, about
+ * users * (1 + AVERAGE_DEGREE / 2) records, 2.2 million for 200,000 users, so
+ * the replay rate in records per second is that count divided by the measured
+ * time.
+ *
+ * @author amandhillon
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecoveryBenchmark {
+
+    /**
+     * Average number of friends per user.
+     */
+    private static final int AVERAGE_DEGREE = 20;
+
+    /**
+     * Number of users in the network.
+     */
+    @Param({ "200000" })
+    public int users;
+
+    /**
+     * Directory holding the log.
+     */
+    private Path directory;
+
+    /**
+     * The log under measurement.
+     */
+    private Path log;
+
+    /**
+     * Writes the log.
+     *
+     * @throws IOException if the log cannot be written.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("recovery");
+        log = directory.resolve("mutations.log");
+        MasonConnect network = new MasonConnect();
+        try (MutationLog mutations = MutationLog.open(log, TimeUnit.MILLISECONDS.toMicros(10))) {
+            network.setMutationLog(mutations);
+            SocialGraphGenerator.populate(network, users, SocialGraphGenerator.generate("erdos-renyi", users,
+                    AVERAGE_DEGREE, MasonConnectBenchmark.SEED));
+            network.setMutationLog(null);
+        }
+    }
+
+    /**
+     * Deletes the log.
+     *
+     * @throws IOException if the log cannot be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(log);
+        Files.deleteIfExists(directory);
+    }
+
+    /**
+     * Measures replaying the whole log into an empty network.
+     *
+     * @return the number of records replayed.
+     * @throws IOException if the log cannot be read.
+     */
+    @Benchmark
+    public long replay() throws IOException {
+        return MutationLog.replay(log, new MasonConnect());
+    }
+}
@@ -0,0 +1,136 @@
+package benchmarks;
+
+import java.util.Random;
+
+import masonconnect.MasonConnect;
+import masonconnect.Profile;
+
+/**
+ * This class generates synthetic friendship networks for benchmarks. Each
+ * generator returns the edges as a flat array of user numbers, {a0, b0, a1, b1,
+ * ...}, which populate then turns into friendships between profiles.
+ *
+ * @author amandhillon
+ *
+ */
+public final class SocialGraphGenerator {
+
+    /**
+     * This class only has static methods.
+     */
+    private SocialGraphGenerator() {
+    }
+
+    /**
+     * Generates an Erdős–Rényi network where every pair of users is equally
+     * likely to be friends.
+     *
+     * @param users         is the number of users.
+     * @param averageDegree is the average number of friends per user.
+     * @param seed          is the seed of the random generator.
+     * @return the edges of the network.
+     */
+    public static int[] erdosRenyi(int users, int averageDegree, long seed) {
+        Random random = new Random(seed);
+        int[] edges = new int[users * averageDegree];
+        for (int i = 0; i < edges.length; i += 2) {
+            edges[i] = random.nextInt(users);
+            edges[i + 1] = random.nextInt(users);
+        }
+        return edges;
+    }
+
+    /**
+     * Generates a Barabási–Albert network, where each new user befriends
+     * existing users with a probability proportional to their number of friends.
+     * The degrees follow a power law, so a few users become celebrities.
+     *
+     * @param users          is the number of users.
+     * @param friendsPerUser is the number of friends each new user makes.
+     * @param seed           is the seed of the random generator.
+     * @return the edges of the network.
+     */
+    public static int[] barabasiAlbert(int users, int friendsPerUser, long seed) {
+        Random random = new Random(seed);
+        int m = Math.max(1, Math.min(friendsPerUser, users - 1));
+        int[] edges = new int[2 * m * Math.max(0, users - m)];
+        int size = 0;
+        for (int user = m; user < users; user++) {
+            for (int k = 0; k < m; k++) {
+                int friend = size == 0 ? random.nextInt(user) : edges[random.nextInt(size)];
+                edges[size++] = user;
+                edges[size++] = friend;
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * Generates a Watts–Strogatz small-world network: a ring where each user
+     * knows their nearest neighbors, with some friendships rewired at random.
+     *
+     * @param users         is the number of users.
+     * @param averageDegree is the average number of friends per user, even.
+     * @param rewiring      is the probability of rewiring each friendship.
+     * @param seed          is the seed of the random generator.
+     * @return the edges of the network.
+     */
+    public static int[] smallWorld(int users, int averageDegree, double rewiring, long seed) {
+        Random random = new Random(seed);
+        int half = Math.max(1, averageDegree / 2);
+        int[] edges = new int[2 * half * users];
+        int size = 0;
+        for (int user = 0; user < users; user++) {
+            for (int k = 1; k <= half; k++) {
+                edges[size++] = user;
+                edges[size++] = random.nextDouble() < rewiring ? random.nextInt(users) : (user + k) % users;
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * Generates a network of a shape given by name, with the same average number
+     * of friends per user whatever the shape.
+     *
+     * @param shape         is "erdos-renyi", "barabasi-albert" or "small-world".
+     * @param users         is the number of users.
+     * @param averageDegree is the average number of friends per user.
+     * @param seed          is the seed of the random generator.
+     * @return the edges of the network.
+     * @throws IllegalArgumentException if the shape is unknown.
+     */
+    public static int[] generate(String shape, int users, int averageDegree, long seed) {
+        switch (shape) {
+        case "erdos-renyi":
+            return erdosRenyi(users, averageDegree, seed);
+        case "barabasi-albert":
+            return barabasiAlbert(users, averageDegree / 2, seed);
+        case "small-world":
+            return smallWorld(users, averageDegree, 0.1, seed);
+        default:
+            throw new IllegalArgumentException("shape " + shape);
+        }
+    }
+
+    /**
+     * Creates one profile per user and adds the generated friendships to a
+     * network. Self-friendships and duplicates are skipped by the network.
+     *
+     * @param network is the network to populate.
+     * @param users   is the number of users.
+     * @param edges   are the generated edges.
+     * @return the profiles, indexed by user number.
+     */
+    public static Profile[] populate(MasonConnect network, int users, int[] edges) {
+        Profile[] profiles = new Profile[users];
+        for (int i = 0; i < users; i++) {
+            profiles[i] = new Profile("User", String.valueOf(i));
+            network.addUser(profiles[i]);
+        }
+        for (int i = 0; i < edges.length; i += 2) {
+            network.createFriendship(profiles[edges[i]], profiles[edges[i + 1]]);
+        }
+        return profiles;
+    }
+}
@@ -0,0 +1,138 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import masonconnect.FriendRecommender;
+import masonconnect.MasonConnect;
+import masonconnect.Profile;
+
+/**
+ * This class samples the latency of friend suggestions for a user with 5,000
+ * friends in an Erdős–Rényi network, so that the percentiles JMH reports can
+ * be held against the target of a p99 under 5 ms. The user reaches about
+ * 5,000 * AVERAGE_DEGREE friends of friends, which is the work a suggestion
+ * grows with.
+ *
+ * @author amandhillon
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SuggestionLatencyBenchmark {
+
+    /**
+     * Number of suggestions asked for.
+     */
+    private static final int LIMIT = 10;
+
+    /**
+     * Number of users in the network.
+     */
+    @Param({ "100000" })
+    public int users;
+
+    /**
+     * Number of friends of the user asking for suggestions.
+     */
+    @Param({ "5000" })
+    public int friends;
+
+    /**
+     * How the friends are read: "live" or "indexed".
+     */
+    @Param({ "live", "indexed" })
+    public String mode;
+
+    /**
+     * How the suggestions are ranked: "mutual-friends", "adamic-adar" or
+     * "jaccard".
+     */
+    @Param({ "mutual-friends", "adamic-adar", "jaccard" })
+    public String scoring;
+
+    /**
+     * The network under measurement.
+     */
+    private MasonConnect network;
+
+    /**
+     * The user asking for suggestions.
+     */
+    private Profile user;
+
+    /**
+     * The ranking of the suggestions.
+     */
+    private FriendRecommender.Scoring ranking;
+
+    /**
+     * Builds the network, befriends the user with randomly drawn users and
+     * turns on the index.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        network = new MasonConnect();
+        Profile[] profiles = SocialGraphGenerator.populate(network, users, SocialGraphGenerator
+                .generate("erdos-renyi", users, MasonConnectBenchmark.AVERAGE_DEGREE, MasonConnectBenchmark.SEED));
+        user = new Profile("Popular", "User");
+        network.addUser(user);
+        Random random = new Random(~MasonConnectBenchmark.SEED);
+        int befriended = 0;
+        while (befriended < friends) {
+            if (network.createFriendship(user, profiles[random.nextInt(users)])) {
+                befriended++;
+            }
+        }
+        switch (mode) {
+        case "live":
+            break;
+        case "indexed":
+            network.enableFriendIndex();
+            break;
+        default:
+            throw new IllegalArgumentException("mode " + mode);
+        }
+        switch (scoring) {
+        case "mutual-friends":
+            ranking = FriendRecommender.MUTUAL_FRIENDS;
+            break;
+        case "adamic-adar":
+            ranking = FriendRecommender.ADAMIC_ADAR;
+            break;
+        case "jaccard":
+            ranking = FriendRecommender.JACCARD;
+            break;
+        default:
+            throw new IllegalArgumentException("scoring " + scoring);
+        }
+    }
+
+    /**
+     * Measures asking for the best ranked suggestions.
+     *
+     * @return the suggestions.
+     */
+    @Benchmark
+    public List<Profile> friendSuggestion() {
+        return network.friendSuggestion(user, LIMIT, ranking);
+    }
+}